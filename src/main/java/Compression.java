@@ -0,0 +1,158 @@
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Chunked Deflate stage applied to a message before the encrypt-then-MAC modes, so
+ * compressible payloads need proportionally less keystream, MAC input, I/O and storage.
+ *
+ *   stream = chunk_0 || chunk_1 || ...
+ *   chunk  = STORED   || rawLen (4 bytes) || raw bytes
+ *          | DEFLATED || rawLen (4 bytes) || dataLen (4 bytes) || deflated bytes
+ *
+ * The message is cut into CHUNK_SIZE pieces and each is deflated on its own with one
+ * reused Deflater; a chunk that does not shrink is stored instead, so incompressible
+ * input costs one bounded deflate attempt and 5 bytes per chunk. If the whole stream is
+ * not shorter than the message, compress() returns null and the caller encrypts the
+ * raw message with the compression flag clear. The flag (FLAG_COMPRESSED in the mode
+ * byte) is covered by the tag, and the stream is only inflated after the tag matched.
+ *
+ * Compression leaks through length. The size of a compressed cryptogram depends on how
+ * well the message compresses, so it reveals something about the content, not only its
+ * length. If an attacker can get chosen text compressed next to a secret in the same
+ * message and watch the sizes (CRIME, BREACH), they can recover the secret byte by byte.
+ * Only compress when no attacker-influenced input shares a message with secrets, and
+ * leave it off by default.
+ *
+ * Only the whole-message encrypt-then-MAC modes (Symmetric.symmetricEncryptEtM,
+ * symmetricEncryptEtM128, CryptEC.encryptEtM) compress. SegmentedCipher does not, because
+ * random access relies on every segment but the last holding exactly segmentSize
+ * plaintext bytes. The Flow processors do not either: they release plaintext before the
+ * tag is checked, and unauthenticated data must not be inflated.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public final class Compression {
+
+    /** Bit set in the mode byte of a cryptogram whose payload is a compressed stream */
+    public static final byte FLAG_COMPRESSED = (byte) 0x80;
+
+    /** Message bytes per chunk: 64 KiB */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+
+    private Compression() { }
+
+    /**
+     * Compress a message into a chunk stream
+     * @param m the message
+     * @return the stream, or null if it would not be shorter than m
+     */
+    public static byte[] compress(byte[] m) {
+        if (m.length == 0) return null;
+        ByteBuffer out = ByteBuffer.allocate(m.length);
+        byte[] deflated = new byte[Math.min(CHUNK_SIZE, m.length)];
+        Deflater deflater = new Deflater();
+        try {
+            for (int off = 0; off < m.length; off += CHUNK_SIZE) {
+                int rawLen = Math.min(CHUNK_SIZE, m.length - off);
+                deflater.reset();
+                deflater.setInput(m, off, rawLen);
+                deflater.finish();
+                // a chunk is only worth deflating if it saves more than the 4-byte dataLen
+                int budget = rawLen - 4;
+                int dataLen = 0;
+                while (!deflater.finished() && dataLen < budget) {
+                    dataLen += deflater.deflate(deflated, dataLen, budget - dataLen);
+                }
+
+                if (deflater.finished() && dataLen < budget) {
+                    if (out.remaining() < 9 + dataLen) return null;
+                    out.put(DEFLATED).putInt(rawLen).putInt(dataLen).put(deflated, 0, dataLen);
+                }
+                else {
+                    if (out.remaining() < 5 + rawLen) return null;
+                    out.put(STORED).putInt(rawLen).put(m, off, rawLen);
+                }
+            }
+        }
+        finally {
+            deflater.end();
+        }
+        byte[] stream = new byte[out.position()];
+        out.flip().get(stream);
+        return stream;
+    }
+
+    /**
+     * Decompress a chunk stream
+     * @param stream the stream
+     * @return the message, or null if the stream is malformed
+     */
+    public static byte[] decompress(byte[] stream) {
+        ByteBuffer in = ByteBuffer.wrap(stream);
+        long total = 0;
+        // first pass: validate the framing and size the output
+        while (in.hasRemaining()) {
+            if (in.remaining() < 5) return null;
+            byte type = in.get();
+            int rawLen = in.getInt();
+            if (rawLen <= 0 || rawLen > CHUNK_SIZE) return null;
+            int dataLen = rawLen;
+            if (type == DEFLATED) {
+                if (in.remaining() < 4) return null;
+                dataLen = in.getInt();
+            }
+            else if (type != STORED) {
+                return null;
+            }
+            if (dataLen < 0 || dataLen > in.remaining()) return null;
+            in.position(in.position() + dataLen);
+            total += rawLen;
+        }
+        if (total > Integer.MAX_VALUE - 8) return null;
+
+        byte[] m = new byte[(int) total];
+        int pos = 0;
+        in.rewind();
+        byte[] scratch = new byte[1];
+        Inflater inflater = new Inflater();
+        try {
+            while (in.hasRemaining()) {
+                byte type = in.get();
+                int rawLen = in.getInt();
+                if (type == STORED) {
+                    in.get(m, pos, rawLen);
+                }
+                else {
+                    int dataLen = in.getInt();
+                    inflater.reset();
+                    inflater.setInput(stream, in.position(), dataLen);
+                    int n = 0;
+                    while (!inflater.finished()) {
+                        // once rawLen bytes are out, any further output means the chunk lied about its length
+                        int k = n < rawLen ? inflater.inflate(m, pos + n, rawLen - n) : inflater.inflate(scratch);
+                        if (n >= rawLen && k > 0) return null;
+                        if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                        n += k;
+                    }
+                    if (n != rawLen || !inflater.finished() || inflater.getRemaining() != 0) return null;
+                    in.position(in.position() + dataLen);
+                }
+                pos += rawLen;
+            }
+        }
+        catch (DataFormatException e) {
+            return null;
+        }
+        finally {
+            inflater.end();
+        }
+        return m;
+    }
+}
@@ -1,6 +1,18 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
-import java.security.SecureRandom;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.Optional;
 
 /**
  * Elliptic Curve encryption/decryption
@@ -13,20 +25,27 @@ import java.util.Arrays;
  */
 public class CryptEC {
 
+    /** Mode byte of the encrypt-then-MAC cryptogram (mode || Z || c || t) */
+    public static final byte MODE_ETM = 0x11;
+
+    /** Mode byte of the signcrypted cryptogram (mode || c || r || s) */
+    public static final byte MODE_SIGNCRYPT = 0x13;
+
+    /** Length of the signcryption trailer r (64 bytes) || s (66 bytes) */
+    static final int SIGNCRYPT_TRAILER_LEN = 64 + 66;
+
     public static byte[] encrypt(byte[] m, E521 V) {
+        long started = CryptoMetrics.EC_ENCRYPT.begin();
+
         //  k <- Random(512);
-        SecureRandom random = new SecureRandom();
-        byte[] randBytes = new byte[65];
-        random.nextBytes(randBytes);
-        randBytes[0] = 0;
-        BigInteger k = new BigInteger(randBytes);
         //  k <- 4k
-        k = k.multiply(BigInteger.valueOf(4L));
+        //  Z <- k*G (precomputed when an EphemeralKeyPool is installed)
+        EphemeralKeyPool.Ephemeral ephemeral = EphemeralKeyPool.next();
+        BigInteger k = ephemeral.k();
+        E521 Z = ephemeral.Z();
 
         //  W <- k*V;
-        //  Z <- k*G
         E521 W = V.multiply(k);
-        E521 Z = ECKey.G.multiply(k);
 
         //  (ke || ka) <- KMACXOF256(W_x, “”, 1024, “P”)
         byte[] keyGen = Symmetric.KMACXOF256(
@@ -45,10 +64,14 @@ public class CryptEC {
         byte[] t = Symmetric.KMACXOF256(Symmetric.byteArrayToString(ka), m, 512, "PKA");
 
         //  cryptogram: (Z, c, t)
-        return Symmetric.byteConcat(Symmetric.byteConcat(Z.getBytes(), c), t);
+        byte[] zct = Symmetric.byteConcat(Symmetric.byteConcat(Z.getBytes(), c), t);
+        CryptoMetrics.EC_ENCRYPT.end(started, m.length);
+        return zct;
     }
 
     public static byte[] decrypt(byte[] zct, String pw) {
+        long started = CryptoMetrics.EC_DECRYPT.begin();
+
         // Take apart Z, c, t
         int bLen = E521.P.toByteArray().length * 2;
         E521 z = E521.createFromBytes(Arrays.copyOfRange(zct, 0, bLen));
@@ -81,7 +104,451 @@ public class CryptEC {
         byte[] tPrime = Symmetric.KMACXOF256(Symmetric.byteArrayToString(ka), m, 512, "PKA");
 
         // accept if, and only if, t’ = t
+        CryptoMetrics.EC_DECRYPT.end(started, zct.length);
         return Arrays.equals(t, tPrime) ? m : c;
     }
 
+    /**
+     * Encrypting a byte array m under the (Schnorr/ECDHIES) public key V in
+     * encrypt-then-MAC mode, where the tag authenticates the ciphertext:
+     * @param m the input message
+     * @param V the public key
+     * @return the cryptogram (MODE_ETM || Z || c || t)
+     */
+    public static byte[] encryptEtM(byte[] m, E521 V) {
+        return encryptEtM(m, V, false);
+    }
+
+    /**
+     * Encrypting a byte array m under the (Schnorr/ECDHIES) public key V in
+     * encrypt-then-MAC mode, optionally compressing it first (see Compression); the mode
+     * byte carries Compression.FLAG_COMPRESSED if the compressed stream was encrypted:
+     * @param m the input message
+     * @param V the public key
+     * @param compress whether to try compressing m; the cryptogram length then depends on
+     *                 the content (see Compression)
+     * @return the cryptogram (mode || Z || c || t)
+     */
+    public static byte[] encryptEtM(byte[] m, E521 V, boolean compress) {
+        long started = CryptoMetrics.EC_ENCRYPT.begin();
+        int inputLen = m.length;
+        byte mode = MODE_ETM;
+        byte[] packed = compress ? Compression.compress(m) : null;
+        if (packed != null) {
+            m = packed;
+            mode |= Compression.FLAG_COMPRESSED;
+        }
+        int zLen = E521.P.toByteArray().length * 2;
+        byte[] out = new byte[1 + zLen + m.length + 64];
+        out[0] = mode;
+
+        //  k <- Random(512); k <- 4k; Z <- k*G
+        EphemeralKeyPool.Ephemeral ephemeral = EphemeralKeyPool.next();
+        BigInteger k = ephemeral.k();
+        E521 Z = ephemeral.Z();
+
+        //  W <- k*V
+        E521 W = V.multiply(k);
+        System.arraycopy(Z.getBytes(), 0, out, 1, zLen);
+
+        //  (ke || ka) <- KMACXOF256(W_x, "", 1024, "PE")
+        Sponge[] sponges = etmSponges(W);
+
+        //  c <- KMACXOF256(ke, "", |m|, "PKE") xor m
+        sponges[0].squeezeXor(m, 0, out, 1 + zLen, m.length);
+
+        //  t <- KMACXOF256(ka, mode || Z || c, 512, "PKA")
+        sponges[1].absorb(out, 0, 1 + zLen + m.length).finishKMACXOF().squeeze(out, 1 + zLen + m.length, 64);
+
+        CryptoMetrics.EC_ENCRYPT.end(started, inputLen);
+        return out;
+    }
+
+    /**
+     * Decrypting an encrypt-then-MAC cryptogram (mode, Z, c, t) under passphrase pw.
+     * After recovering W, the tag is checked with one MAC pass over the ciphertext before
+     * any keystream is generated or the message is allocated.
+     *
+     * @param zct the cryptogram (mode || Z || c || t), mode MODE_ETM with or without
+     *            Compression.FLAG_COMPRESSED
+     * @param pw the passphrase
+     * @return the message, or empty if the cryptogram is malformed or the tag does not match
+     */
+    public static Optional<byte[]> decryptEtM(byte[] zct, String pw) {
+        int zLen = E521.P.toByteArray().length * 2;
+        if (zct.length < 1 + zLen + 64 || (zct[0] & ~Compression.FLAG_COMPRESSED) != MODE_ETM) return Optional.empty();
+        long started = CryptoMetrics.EC_DECRYPT.begin();
+        int cLen = zct.length - 1 - zLen - 64;
+
+        // reject Z off the curve before multiplying by the private scalar
+        E521 Z = E521.createFromBytes(Arrays.copyOfRange(zct, 1, 1 + zLen));
+        if (!Z.isOnCurve()) {
+            CryptoMetrics.EC_DECRYPT.end(started, zct.length);
+            return Optional.empty();
+        }
+
+        // s <- KMACXOF256(pw, "", 512, "K"); s <- 4s; W <- s*Z
+        E521 W = sharedPoint(Z, pw);
+
+        // (ke || ka) <- KMACXOF256(W_x, "", 1024, "PE")
+        Sponge[] sponges = etmSponges(W);
+
+        // accept if, and only if, KMACXOF256(ka, mode || Z || c, 512, "PKA") = t
+        byte[] tPrime = sponges[1].absorb(zct, 0, 1 + zLen + cLen).finishKMACXOF().squeeze(64);
+        boolean accepted = MessageDigest.isEqual(tPrime, Arrays.copyOfRange(zct, 1 + zLen + cLen, zct.length));
+
+        // m <- KMACXOF256(ke, "", |c|, "PKE") xor c
+        byte[] m = null;
+        if (accepted) {
+            m = new byte[cLen];
+            sponges[0].squeezeXor(zct, 1 + zLen, m, 0, cLen);
+            if ((zct[0] & Compression.FLAG_COMPRESSED) != 0) m = Compression.decompress(m);
+        }
+        CryptoMetrics.EC_DECRYPT.end(started, zct.length);
+        return Optional.ofNullable(m);
+    }
+
+    /**
+     * Encrypting the remaining bytes of src under the (Schnorr/ECDHIES) public key V,
+     * writing the cryptogram (Z || c || t) to dst without copying the message:
+     * @param src the input message, consumed up to its limit
+     * @param V the public key
+     * @param dst receives the cryptogram
+     */
+    public static void encrypt(ByteBuffer src, E521 V, ByteBuffer dst) {
+        int zLen = E521.P.toByteArray().length * 2;
+        if (dst.remaining() < zLen + src.remaining() + 64) throw new BufferOverflowException();
+        long started = CryptoMetrics.EC_ENCRYPT.begin();
+        int len = src.remaining();
+
+        //  k <- Random(512); k <- 4k; Z <- k*G
+        EphemeralKeyPool.Ephemeral ephemeral = EphemeralKeyPool.next();
+        BigInteger k = ephemeral.k();
+        E521 Z = ephemeral.Z();
+
+        //  W <- k*V
+        E521 W = V.multiply(k);
+        dst.put(Z.getBytes());
+
+        //  (ke || ka) <- KMACXOF256(W_x, "", 1024, "P")
+        Sponge[] sponges = ellipticSponges(W);
+        Sponge keystream = sponges[0];
+        Sponge mac = sponges[1];
+
+        //  c <- KMACXOF256(ke, "", |m|, "PKE") xor m; t <- KMACXOF256(ka, m, 512, "PKA")
+        Symmetric.xorStream(src, dst, keystream, mac, false);
+        mac.finishKMACXOF().squeeze(dst, 64);
+        CryptoMetrics.EC_ENCRYPT.end(started, len);
+    }
+
+    /**
+     * Decrypting the cryptogram (Z, c, t) in the remaining bytes of src under passphrase pw,
+     * writing the message to dst:
+     * @param src the cryptogram, consumed up to its limit
+     * @param pw the passphrase
+     * @param dst receives the message; left unchanged if Z is not on the curve or the tag does not match
+     * @return true if, and only if, the tag matched and the message was written
+     */
+    public static boolean decrypt(ByteBuffer src, String pw, ByteBuffer dst) {
+        int zLen = E521.P.toByteArray().length * 2;
+        if (src.remaining() < zLen + 64) throw new IllegalArgumentException("Cryptogram is too short");
+        int cLen = src.remaining() - zLen - 64;
+        if (dst.remaining() < cLen) throw new BufferOverflowException();
+        long started = CryptoMetrics.EC_DECRYPT.begin();
+        int len = src.remaining();
+
+        // Take apart Z, c, t
+        byte[] zBytes = new byte[zLen];
+        src.get(zBytes);
+        E521 z = E521.createFromBytes(zBytes);
+        if (!z.isOnCurve()) {
+            src.position(src.limit());
+            CryptoMetrics.EC_DECRYPT.end(started, len);
+            return false;
+        }
+        ByteBuffer c = src.slice();
+        c.limit(cLen);
+        src.position(src.position() + cLen);
+        byte[] t = new byte[64];
+        src.get(t);
+
+        // s <- KMACXOF256(pw, "", 512, "K"); s <- 4s; W <- s*Z
+        E521 W = sharedPoint(z, pw);
+
+        // (ke || ka) <- KMACXOF256(W_x, "", 1024, "P")
+        Sponge[] sponges = ellipticSponges(W);
+        Sponge keystream = sponges[0];
+        Sponge mac = sponges[1];
+
+        // m <- KMACXOF256(ke, "", |c|, "PKE") xor c; t' <- KMACXOF256(ka, m, 512, "PKA")
+        int start = dst.position();
+        Symmetric.xorStream(c, dst, keystream, mac, true);
+        byte[] tPrime = mac.finishKMACXOF().squeeze(64);
+        CryptoMetrics.EC_DECRYPT.end(started, len);
+
+        // accept if, and only if, t' = t
+        if (MessageDigest.isEqual(t, tPrime)) return true;
+        for (int i = start; i < dst.position(); i++) dst.put(i, (byte) 0);
+        dst.position(start);
+        return false;
+    }
+
+    /**
+     * Recover the shared point W <- s*Z where s <- 4 * KMACXOF256(pw, "", 512, "K")
+     * @param Z the ephemeral point from the cryptogram
+     * @param pw the passphrase
+     * @return the shared point W
+     * @throws IllegalArgumentException if Z is not on the curve, so the private scalar is
+     *         never applied to an attacker-chosen point of another curve
+     */
+    static E521 sharedPoint(E521 Z, String pw) {
+        if (!Z.isOnCurve()) throw new IllegalArgumentException("Z is not on the curve");
+        return Z.multiply(privateScalar(pw));
+    }
+
+    /**
+     * Derive the private scalar s <- 4 * KMACXOF256(pw, "", 512, "K")
+     * @param pw the passphrase
+     * @return s
+     */
+    static BigInteger privateScalar(String pw) {
+        byte[] tempS = Symmetric.KMACXOF256(pw, new byte[]{}, 512, "K");
+        byte[] sArr = new byte[65];
+        System.arraycopy(tempS, 0, sArr, 1, tempS.length);
+        return new BigInteger(sArr).multiply(BigInteger.valueOf(4L));
+    }
+
+    // ---------------------------Signcryption
+
+    /** Read size used when signcrypting streams */
+    private static final int CHUNK = 1 << 16;
+
+    /**
+     * Signcrypting a byte array m for the public key V under the sender's passphrase pw
+     * @param m the input message
+     * @param pw the sender's passphrase
+     * @param V the recipient's public key
+     * @return the cryptogram (MODE_SIGNCRYPT || c || r || s)
+     */
+    public static byte[] signcrypt(byte[] m, String pw, E521 V) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 + m.length + SIGNCRYPT_TRAILER_LEN);
+        try {
+            signcrypt(new ByteArrayInputStream(m), out, pw, V);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Signcrypting a stream for the public key V under the sender's passphrase pw
+     * (Zheng's SCS1 on E521). The message is read once: every chunk is absorbed into the
+     * signature sponge and encrypted in the same pass, and the sender performs a single
+     * variable-base scalar multiplication.
+     *
+     *   s_A <- 4 * KMACXOF256(pw, "", 512, "K"); V_A <- s_A*G
+     *   x <- Random(512) mod r; W <- x*V
+     *   bind <- compressed V_A || compressed V
+     *   (ke || ka) <- KMACXOF256(W_x, bind, 1024, "SC")
+     *   c <- KMACXOF256(ke, "", |m|, "SCE") xor m
+     *   r <- KMACXOF256(ka, bind || m, 512, "SCA")
+     *   s <- x / (r + s_A) mod r
+     *
+     * bind is Zheng's bind_info: both public keys enter the keys and the challenge, so a
+     * cryptogram cannot be re-attributed to another sender or redirected to another
+     * recipient.
+     *
+     * @param in the message, read to its end
+     * @param out receives MODE_SIGNCRYPT || c || r || s
+     * @param pw the sender's passphrase
+     * @param V the recipient's public key
+     * @throws IOException if reading or writing fails
+     */
+    public static void signcrypt(InputStream in, OutputStream out, String pw, E521 V) throws IOException {
+        long started = CryptoMetrics.SIGNCRYPT.begin();
+        BigInteger sA = privateScalar(pw);
+
+        // x <- Random(512) mod r; W <- x*V
+        BigInteger x;
+        do {
+            byte[] randBytes = new byte[65];
+            DRBG.current().nextBytes(randBytes, 1, 64);
+            x = new BigInteger(randBytes).mod(E521.R);
+        } while (x.signum() == 0);
+        Sponge[] sponges = signcryptSponges(V.multiply(x), ECKey.G.multiply(sA), V);
+
+        // c <- KMACXOF256(ke, "", |m|, "SCE") xor m, absorbing m into KMACXOF256(ka, bind || m, 512, "SCA")
+        out.write(MODE_SIGNCRYPT);
+        byte[] buf = new byte[CHUNK];
+        long len = 0;
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            sponges[1].absorb(buf, 0, n);
+            sponges[0].squeezeXor(buf, 0, buf, 0, n);
+            out.write(buf, 0, n);
+            len += n;
+        }
+
+        // r <- KMACXOF256(ka, bind || m, 512, "SCA"); s <- x / (r + s_A) mod r
+        byte[] r = sponges[1].finishKMACXOF().squeeze(64);
+        BigInteger denominator = new BigInteger(1, r).add(sA).mod(E521.R);
+        if (denominator.signum() == 0) throw new IllegalStateException("Degenerate signcryption challenge");
+        BigInteger s = x.multiply(denominator.modInverse(E521.R)).mod(E521.R);
+        out.write(SignatureValue.of(new BigInteger[]{new BigInteger(1, r), s}).encode());
+        out.flush();
+        CryptoMetrics.SIGNCRYPT.end(started, len);
+    }
+
+    /**
+     * Unsigncrypting a byte array under the recipient's passphrase pw
+     * @param cryptogram the cryptogram (MODE_SIGNCRYPT || c || r || s)
+     * @param pw the recipient's passphrase
+     * @param V the sender's public key
+     * @return the message, or empty if the cryptogram is malformed or was not signcrypted by V
+     */
+    public static Optional<byte[]> unsigncrypt(byte[] cryptogram, String pw, E521 V) {
+        if (cryptogram.length < 1 + SIGNCRYPT_TRAILER_LEN || cryptogram[0] != MODE_SIGNCRYPT) return Optional.empty();
+        int cLen = cryptogram.length - 1 - SIGNCRYPT_TRAILER_LEN;
+        SignatureValue rs = decodeTrailer(cryptogram, 1 + cLen);
+        if (rs == null) return Optional.empty();
+        long started = CryptoMetrics.UNSIGNCRYPT.begin();
+        Sponge[] sponges = unsigncryptSponges(rs, pw, V);
+
+        // m <- KMACXOF256(ke, "", |c|, "SCE") xor c
+        byte[] m = new byte[cLen];
+        sponges[0].squeezeXor(cryptogram, 1, m, 0, cLen);
+
+        // accept if, and only if, KMACXOF256(ka, bind || m, 512, "SCA") = r
+        byte[] rPrime = sponges[1].absorb(m).finishKMACXOF().squeeze(64);
+        boolean accepted = MessageDigest.isEqual(rPrime, Arrays.copyOfRange(cryptogram, 1 + cLen, 1 + cLen + 64));
+        if (!accepted) Arrays.fill(m, (byte) 0);
+        CryptoMetrics.UNSIGNCRYPT.end(started, cLen);
+        return accepted ? Optional.of(m) : Optional.empty();
+    }
+
+    /**
+     * Unsigncrypting a file under the recipient's passphrase pw. The trailer (r, s) is
+     * read first so the shared point can be recovered, then c is decrypted as a stream.
+     * Plaintext is written as it is decrypted; if verification fails, everything written
+     * to out must be discarded.
+     *
+     * @param in the cryptogram file
+     * @param out receives the message
+     * @param pw the recipient's passphrase
+     * @param V the sender's public key
+     * @return true if, and only if, the cryptogram was signcrypted by V and is intact
+     * @throws IOException if reading or writing fails
+     */
+    public static boolean unsigncrypt(Path in, OutputStream out, String pw, E521 V) throws IOException {
+        try (FileChannel ch = FileChannel.open(in, StandardOpenOption.READ)) {
+            long cLen = ch.size() - 1 - SIGNCRYPT_TRAILER_LEN;
+            ByteBuffer mode = ByteBuffer.allocate(1);
+            if (cLen < 0 || ch.read(mode, 0) != 1 || mode.get(0) != MODE_SIGNCRYPT) return false;
+
+            ByteBuffer trailer = ByteBuffer.allocate(SIGNCRYPT_TRAILER_LEN);
+            while (trailer.hasRemaining()) {
+                if (ch.read(trailer, 1 + cLen + trailer.position()) < 0) return false;
+            }
+            SignatureValue rs = decodeTrailer(trailer.array(), 0);
+            if (rs == null) return false;
+            long started = CryptoMetrics.UNSIGNCRYPT.begin();
+            Sponge[] sponges = unsigncryptSponges(rs, pw, V);
+
+            // m <- KMACXOF256(ke, "", |c|, "SCE") xor c, absorbing m into KMACXOF256(ka, bind || m, 512, "SCA")
+            ch.position(1);
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+            long remaining = cLen;
+            while (remaining > 0) {
+                buf.clear().limit((int) Math.min(CHUNK, remaining));
+                int n = ch.read(buf);
+                if (n < 0) return false;
+                sponges[0].squeezeXor(buf.array(), 0, buf.array(), 0, n);
+                sponges[1].absorb(buf.array(), 0, n);
+                out.write(buf.array(), 0, n);
+                remaining -= n;
+            }
+            out.flush();
+
+            // accept if, and only if, KMACXOF256(ka, bind || m, 512, "SCA") = r
+            byte[] rPrime = sponges[1].finishKMACXOF().squeeze(64);
+            boolean accepted = MessageDigest.isEqual(rPrime, Arrays.copyOf(trailer.array(), 64));
+            CryptoMetrics.UNSIGNCRYPT.end(started, cLen);
+            return accepted;
+        }
+    }
+
+    /**
+     * @return the trailer (r, s), or null if s is out of range
+     */
+    private static SignatureValue decodeTrailer(byte[] in, int off) {
+        try {
+            return SignatureValue.decode(in, off);
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Recover the shared point W <- (s * s_B) * (V_A + r*G) = x*V_B and derive the sponges
+     * bound to V_A and V_B = s_B*G
+     */
+    private static Sponge[] unsigncryptSponges(SignatureValue rs, String pw, E521 V) {
+        BigInteger sB = privateScalar(pw);
+        BigInteger e = rs.z().multiply(sB).mod(E521.R);
+        E521 W = V.add(ECKey.G.multiply(rs.h())).multiply(e);
+        return signcryptSponges(W, V, ECKey.G.multiply(sB));
+    }
+
+    /**
+     * Derive (ke || ka) <- KMACXOF256(W_x, bind, 1024, "SC") with
+     * bind = compressed V_A || compressed V_B
+     * @param W the shared point
+     * @param VA the sender's public key
+     * @param VB the recipient's public key
+     * @return the keystream sponge (squeezing) and the signature sponge (absorbing, bind
+     *         already absorbed)
+     */
+    private static Sponge[] signcryptSponges(E521 W, E521 VA, E521 VB) {
+        byte[] bind = Symmetric.byteConcat(VA.getCompressedBytes(), VB.getCompressedBytes());
+        byte[] keyGen = Sponge.kmacxof256(W.getX().toByteArray(), "SC").absorb(bind).finishKMACXOF().squeeze(128);
+        return new Sponge[] {
+                Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 0, 64), "SCE").finishKMACXOF(),
+                Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 64, 128), "SCA").absorb(bind)
+        };
+    }
+
+    /**
+     * Derive (ke || ka) <- KMACXOF256(W_x, "", 1024, "PE") for the encrypt-then-MAC mode
+     * @param W the shared point
+     * @return the keystream sponge (squeezing) and the tag sponge (absorbing)
+     */
+    static Sponge[] etmSponges(E521 W) {
+        byte[] keyGen = Sponge.kmacxof256(W.getX().toByteArray(), "PE").finishKMACXOF().squeeze(128);
+        return new Sponge[] {
+                Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 0, 64), "PKE").finishKMACXOF(),
+                Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 64, 128), "PKA")
+        };
+    }
+
+    /**
+     * Derive (ke || ka) <- KMACXOF256(W_x, "", 1024, "P") and set up the sponges for
+     * KMACXOF256(ke, "", |m|, "PKE") (already squeezing) and KMACXOF256(ka, m, 512, "PKA")
+     * (ready to absorb m).
+     *
+     * @param W the shared point
+     * @return the keystream sponge and the tag sponge
+     */
+    static Sponge[] ellipticSponges(E521 W) {
+        byte[] keyGen = Symmetric.KMACXOF256(
+                Symmetric.byteArrayToString(W.getX().toByteArray()),
+                new byte[]{},
+                1024,
+                "P");
+        return new Sponge[] {
+                Sponge.kmacxof256(Symmetric.byteArrayToString(Arrays.copyOfRange(keyGen, 0, 64)), "PKE").finishKMACXOF(),
+                Sponge.kmacxof256(Symmetric.byteArrayToString(Arrays.copyOfRange(keyGen, 64, 128)), "PKA")
+        };
+    }
 }
@@ -0,0 +1,213 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thin client for CryptoServer. Requests may be pipelined: send() returns immediately
+ * and a reader thread completes each future when the response with its id arrives.
+ *
+ * Command-line usage (message read from standard input; mac, encrypt, decrypt, ecdecrypt
+ * and sign take the passphrase from the CRYPTO_PASSPHRASE environment variable, so it never
+ * appears in the process list):
+ *   java CryptoClient unix /tmp/crypto.sock hash
+ *   java CryptoClient unix /tmp/crypto.sock mac
+ *   java CryptoClient unix /tmp/crypto.sock encrypt  > out.bin
+ *   java CryptoClient unix /tmp/crypto.sock decrypt  < out.bin
+ *   java CryptoClient unix /tmp/crypto.sock ecencrypt PUBLIC_KEY_HEX
+ *   java CryptoClient unix /tmp/crypto.sock ecdecrypt
+ *   java CryptoClient unix /tmp/crypto.sock sign
+ *   java CryptoClient unix /tmp/crypto.sock verify PUBLIC_KEY_HEX SIGNATURE_HEX
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class CryptoClient implements AutoCloseable {
+
+    /** Environment variable holding the passphrase for the command-line client */
+    static final String PASSPHRASE_ENV = "CRYPTO_PASSPHRASE";
+
+    private static final String USAGE =
+            "Usage: CryptoClient (unix PATH | tcp PORT) OPERATION [ARGS...]\n"
+            + "  hash | mac | encrypt | decrypt | ecdecrypt | sign\n"
+            + "  ecencrypt PUBLIC_KEY_HEX\n"
+            + "  verify PUBLIC_KEY_HEX SIGNATURE_HEX\n"
+            + "mac, encrypt, decrypt, ecdecrypt and sign read the passphrase from " + PASSPHRASE_ENV;
+
+    /**
+     * A response from the server
+     * @param status one of CryptoServer.STATUS_OK, STATUS_REJECTED, STATUS_ERROR
+     * @param payload the response bytes
+     */
+    public record Response(byte status, byte[] payload) { }
+
+    private final SocketChannel ch;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    /**
+     * Connect to a server
+     * @param address a UnixDomainSocketAddress or an InetSocketAddress
+     * @throws IOException if the connection fails
+     */
+    public CryptoClient(SocketAddress address) throws IOException {
+        ch = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        ch.connect(address);
+        Thread reader = new Thread(this::readResponses, "crypto-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Send a request without waiting for its response
+     * @param op the operation (CryptoServer.HASH, ...)
+     * @param args the arguments
+     * @return the future response
+     * @throws IOException if the request cannot be written
+     */
+    public CompletableFuture<Response> send(byte op, byte[]... args) throws IOException {
+        int id = nextId.incrementAndGet();
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        inFlight.put(id, future);
+        ByteBuffer frame = CryptoServer.request(id, op, args);
+        synchronized (writeLock) {
+            while (frame.hasRemaining()) ch.write(frame);
+        }
+        return future;
+    }
+
+    /**
+     * Send a request and wait for its response
+     * @param op the operation
+     * @param args the arguments
+     * @return the response
+     * @throws IOException if the connection fails
+     */
+    public Response call(byte op, byte[]... args) throws IOException {
+        try {
+            return send(op, args).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+
+    private void readResponses() {
+        try {
+            while (true) {
+                ByteBuffer head = ByteBuffer.allocate(5);
+                if (!CryptoServer.readFully(ch, head, true)) break;
+                head.flip();
+                int id = head.getInt();
+                byte status = head.get();
+                byte[] payload = CryptoServer.readArg(ch);
+                CompletableFuture<Response> future = inFlight.remove(id);
+                if (future != null) future.complete(new Response(status, payload));
+            }
+        }
+        catch (IOException e) {
+            inFlight.values().forEach(f -> f.completeExceptionally(e));
+        }
+        IOException closed = new IOException("Connection closed");
+        inFlight.values().forEach(f -> f.completeExceptionally(closed));
+    }
+
+    /**
+     * Command-line client for scripts
+     * @param args "unix PATH" or "tcp PORT", then the operation and its arguments
+     * @throws IOException if the connection fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) usage();
+        String op = args[2];
+        int expected = switch (op) {
+            case "hash", "mac", "encrypt", "decrypt", "ecdecrypt", "sign" -> 3;
+            case "ecencrypt" -> 4;
+            case "verify" -> 5;
+            default -> 0;
+        };
+        if (args.length != expected) usage();
+        byte[] pw = switch (op) {
+            case "mac", "encrypt", "decrypt", "ecdecrypt", "sign" -> passphrase();
+            default -> null;
+        };
+        byte[] stdin = readAll();
+
+        Response r;
+        try (CryptoClient client = new CryptoClient(CryptoServer.parseAddress(args))) {
+            r = switch (op) {
+                case "hash" -> client.call(CryptoServer.HASH, stdin);
+                case "mac" -> client.call(CryptoServer.MAC, pw, stdin);
+                case "encrypt" -> client.call(CryptoServer.ENCRYPT, pw, stdin);
+                case "decrypt" -> client.call(CryptoServer.DECRYPT, pw, stdin);
+                case "ecencrypt" -> client.call(CryptoServer.EC_ENCRYPT, Symmetric.hexStringToByte(args[3].trim()), stdin);
+                case "ecdecrypt" -> client.call(CryptoServer.EC_DECRYPT, pw, stdin);
+                case "sign" -> client.call(CryptoServer.SIGN, pw, stdin);
+                case "verify" -> client.call(CryptoServer.VERIFY, Symmetric.hexStringToByte(args[3].trim()),
+                        Symmetric.hexStringToByte(args[4].trim()), stdin);
+                default -> throw new IllegalArgumentException("Unknown operation " + op);
+            };
+        }
+
+        switch (r.status()) {
+            case CryptoServer.STATUS_OK -> {
+                if (op.equals("verify")) System.out.println("This is verified");
+                else if (op.equals("hash") || op.equals("mac") || op.equals("sign")) {
+                    System.out.println(Symmetric.byteToHexString(r.payload()));
+                }
+                else System.out.write(r.payload());
+                System.out.flush();
+            }
+            case CryptoServer.STATUS_REJECTED -> {
+                System.err.println(op.equals("verify") ? "This is NOT verified" : "Authentication failed");
+                System.exit(1);
+            }
+            default -> {
+                System.err.println("Error: " + new String(r.payload()));
+                System.exit(2);
+            }
+        }
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    /** The passphrase from the environment, or exit with usage if it is not set */
+    private static byte[] passphrase() {
+        String pw = System.getenv(PASSPHRASE_ENV);
+        if (pw == null) {
+            System.err.println(PASSPHRASE_ENV + " is not set");
+            usage();
+        }
+        return pw.getBytes();
+    }
+
+    private static byte[] readAll() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.in.transferTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,40 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event for one cryptographic operation or pipeline stage.
+ * Created by CryptoMetrics.Op.end() once the operation has finished, and only while a
+ * recording has it enabled, so the event's own start time is the end of the operation
+ * and its length is in elapsed.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+@Name("crypto.Operation")
+@Label("Crypto Operation")
+@Category("Crypto")
+@Description("A hashing, MAC, encryption, signature or curve operation")
+@StackTrace(false)
+public class CryptoEvent extends Event {
+
+    /** Operation name, e.g. "symmetricEncrypt" or "file.hash" */
+    @Label("Operation")
+    String operation;
+
+    /** Number of input bytes processed */
+    @Label("Input Size")
+    @DataAmount
+    long inputSize;
+
+    /** Time the operation took */
+    @Label("Elapsed")
+    @Timespan
+    long elapsed;
+}
@@ -0,0 +1,318 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Always-on counters and latency histograms for the cryptographic operations, exported
+ * as a JMX MXBean ("crypto:type=CryptoMetrics") and as JFR CryptoEvents.
+ *
+ * Recording an operation costs two System.nanoTime calls, a few LongAdder increments and
+ * one histogram bucket increment, and allocates nothing. A CryptoEvent is only created,
+ * when the operation ends, while Flight Recorder is running with crypto.Operation
+ * enabled. The MXBean is registered by registerMBean(), which the server calls, or at
+ * start-up with -Dcrypto.metrics.jmx=true, so plain runs do not pay for the platform
+ * MBeanServer. Usage:
+ *
+ *   long started = CryptoMetrics.HASH.begin();
+ *   ...
+ *   CryptoMetrics.HASH.end(started, m.length);
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class CryptoMetrics implements CryptoMetricsMXBean {
+
+    /** Registered operations by name */
+    private static final Map<String, Op> OPS = new ConcurrentHashMap<>();
+
+    /** Registered pipeline queues by name */
+    private static final Map<String, IntSupplier> QUEUES = new ConcurrentHashMap<>();
+
+    /** Keccak-p permutations, counted separately since they are too fine-grained for events */
+    private static final LongAdder PERMUTATIONS = new LongAdder();
+
+    private static volatile long resetNanos = System.nanoTime();
+
+    private static final AtomicBoolean REGISTERED = new AtomicBoolean();
+
+    /** The CryptoEvent type, looked up once Flight Recorder is initialized */
+    private static volatile EventType eventType;
+
+    // --- Operations ---
+
+    public static final Op SPONGE = op("sponge");
+    public static final Op HASH = op("hash");
+    public static final Op MAC = op("mac");
+    public static final Op SYMMETRIC_ENCRYPT = op("symmetricEncrypt");
+    public static final Op SYMMETRIC_DECRYPT = op("symmetricDecrypt");
+    public static final Op EC_MULTIPLY = op("multiply");
+    public static final Op EC_ENCRYPT = op("ellipticEncrypt");
+    public static final Op EC_DECRYPT = op("ellipticDecrypt");
+    public static final Op SIGN = op("generateSignature");
+    public static final Op VERIFY = op("verifySignature");
+    public static final Op SIGNCRYPT = op("signcrypt");
+    public static final Op UNSIGNCRYPT = op("unsigncrypt");
+    public static final Op SEGMENT_ENCRYPT = op("segmentEncrypt");
+    public static final Op SEGMENT_DECRYPT = op("segmentDecrypt");
+    public static final Op MERKLE_LEAF = op("merkleLeaf");
+    public static final Op VERIFY_CACHE_HIT = op("verifyCache.hit");
+    public static final Op VERIFY_CACHE_MISS = op("verifyCache.miss");
+
+    // --- Main file loops ---
+
+    public static final Op FILE_HASH = op("file.hash");
+    public static final Op FILE_MAC = op("file.mac");
+    public static final Op FILE_SYMMETRIC_ENCRYPT = op("file.symmetricEncrypt");
+    public static final Op FILE_SYMMETRIC_DECRYPT = op("file.symmetricDecrypt");
+    public static final Op FILE_EC_ENCRYPT = op("file.ellipticEncrypt");
+    public static final Op FILE_EC_DECRYPT = op("file.ellipticDecrypt");
+    public static final Op FILE_SIGN = op("file.sign");
+    public static final Op FILE_VERIFY = op("file.verify");
+
+    static {
+        if (Boolean.getBoolean("crypto.metrics.jmx")) registerMBean();
+    }
+
+    /**
+     * Register the MXBean as "crypto:type=CryptoMetrics" with the platform MBeanServer,
+     * once; later calls do nothing
+     */
+    public static void registerMBean() {
+        if (!REGISTERED.compareAndSet(false, true)) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new CryptoMetrics(), new ObjectName("crypto:type=CryptoMetrics"));
+        }
+        catch (JMException | SecurityException ignored) {
+            // already registered or not permitted; the counters still work
+        }
+    }
+
+    /**
+     * @return whether a running recording has crypto.Operation enabled; false without
+     *         touching JFR until Flight Recorder has been initialized
+     */
+    private static boolean eventsEnabled() {
+        if (!FlightRecorder.isInitialized()) return false;
+        EventType type = eventType;
+        if (type == null) eventType = type = EventType.getEventType(CryptoEvent.class);
+        return type.isEnabled();
+    }
+
+    /**
+     * Get or create the handle for an operation
+     * @param name the operation name
+     * @return the operation handle
+     */
+    public static Op op(String name) {
+        return OPS.computeIfAbsent(name, Op::new);
+    }
+
+    /**
+     * Register a pipeline queue whose depth is reported through JMX
+     * @param name the queue name
+     * @param depth supplies the current depth
+     */
+    public static void registerQueue(String name, IntSupplier depth) {
+        QUEUES.put(name, depth);
+    }
+
+    /**
+     * Remove a pipeline queue
+     * @param name the queue name
+     */
+    public static void unregisterQueue(String name) {
+        QUEUES.remove(name);
+    }
+
+    /**
+     * Count one Keccak-p permutation
+     */
+    static void permutation() {
+        PERMUTATIONS.increment();
+    }
+
+    /**
+     * Counters, histogram and JFR events for one operation
+     */
+    public static final class Op {
+
+        /** Log-linear histogram: 4 buckets per power of two of the latency in nanoseconds */
+        private static final int BUCKETS = 252;
+
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private Op(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Start timing an operation
+         * @return the start time to pass to end()
+         */
+        public long begin() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Finish timing an operation, and emit a CryptoEvent if a recording wants one
+         * @param startNanos the value returned by begin()
+         * @param inputSize the number of input bytes processed
+         */
+        public void end(long startNanos, long inputSize) {
+            long nanos = record(startNanos, inputSize);
+            if (eventsEnabled()) {
+                CryptoEvent event = new CryptoEvent();
+                event.operation = name;
+                event.inputSize = inputSize;
+                event.elapsed = nanos;
+                event.commit();
+            }
+        }
+
+        /**
+         * Record an operation timed by the caller, without a JFR event even while recording
+         * @param startNanos System.nanoTime() at the start of the operation
+         * @param inputSize the number of input bytes processed
+         * @return the elapsed time in nanoseconds
+         */
+        public long record(long startNanos, long inputSize) {
+            long nanos = System.nanoTime() - startNanos;
+            count.increment();
+            bytes.add(inputSize);
+            histogram.incrementAndGet(bucket(nanos));
+            return nanos;
+        }
+
+        /**
+         * Latency at the given quantile, as the upper bound of its histogram bucket
+         * @param q the quantile in [0, 1]
+         * @return the latency in nanoseconds, or 0 if nothing has been recorded
+         */
+        public long percentile(double q) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) total += histogram.get(i);
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= Math.max(1, rank)) return upperBound(i);
+            }
+            return upperBound(BUCKETS - 1);
+        }
+
+        /** @return number of completed operations */
+        public long count() {
+            return count.sum();
+        }
+
+        /** @return number of input bytes processed */
+        public long bytes() {
+            return bytes.sum();
+        }
+
+        private void reset() {
+            count.reset();
+            bytes.reset();
+            for (int i = 0; i < BUCKETS; i++) histogram.set(i, 0);
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < 4) return (int) Math.max(0, nanos);
+            int exp = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) ((nanos >>> (exp - 2)) & 3);
+            return (exp - 1) * 4 + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < 4) return bucket;
+            int exp = bucket / 4 + 1;
+            long lower = (4L + bucket % 4) << (exp - 2);
+            return lower + (1L << (exp - 2)) - 1;
+        }
+    }
+
+    // --- MXBean ---
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        return collect(Op::count);
+    }
+
+    @Override
+    public Map<String, Long> getBytesProcessed() {
+        return collect(Op::bytes);
+    }
+
+    @Override
+    public Map<String, Double> getOperationsPerSecond() {
+        return rate(Op::count);
+    }
+
+    @Override
+    public Map<String, Double> getBytesPerSecond() {
+        return rate(Op::bytes);
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP50Nanos() {
+        return collect(op -> op.percentile(0.5));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP99Nanos() {
+        return collect(op -> op.percentile(0.99));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP999Nanos() {
+        return collect(op -> op.percentile(0.999));
+    }
+
+    @Override
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> result = new TreeMap<>();
+        QUEUES.forEach((name, depth) -> result.put(name, depth.getAsInt()));
+        return result;
+    }
+
+    @Override
+    public long getPermutations() {
+        return PERMUTATIONS.sum();
+    }
+
+    @Override
+    public void reset() {
+        OPS.values().forEach(Op::reset);
+        PERMUTATIONS.reset();
+        resetNanos = System.nanoTime();
+    }
+
+    private static Map<String, Long> collect(ToLongFunction<Op> f) {
+        Map<String, Long> result = new TreeMap<>();
+        OPS.forEach((name, op) -> result.put(name, f.applyAsLong(op)));
+        return result;
+    }
+
+    private static Map<String, Double> rate(ToLongFunction<Op> f) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - resetNanos) / 1e9);
+        Map<String, Double> result = new TreeMap<>();
+        OPS.forEach((name, op) -> result.put(name, f.applyAsLong(op) / seconds));
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.Map;
+
+/**
+ * JMX view of CryptoMetrics, registered as "crypto:type=CryptoMetrics".
+ * All maps are keyed by operation name.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public interface CryptoMetricsMXBean {
+
+    /** @return number of completed operations */
+    Map<String, Long> getOperationCounts();
+
+    /** @return number of input bytes processed */
+    Map<String, Long> getBytesProcessed();
+
+    /** @return operations per second since the last reset */
+    Map<String, Double> getOperationsPerSecond();
+
+    /** @return input bytes per second since the last reset */
+    Map<String, Double> getBytesPerSecond();
+
+    /** @return median latency in nanoseconds */
+    Map<String, Long> getLatencyP50Nanos();
+
+    /** @return 99th percentile latency in nanoseconds */
+    Map<String, Long> getLatencyP99Nanos();
+
+    /** @return 99.9th percentile latency in nanoseconds */
+    Map<String, Long> getLatencyP999Nanos();
+
+    /** @return current depth of each registered pipeline queue */
+    Map<String, Integer> getQueueDepths();
+
+    /** @return number of Keccak-p permutations computed */
+    long getPermutations();
+
+    /** Clear all counters and histograms */
+    void reset();
+}
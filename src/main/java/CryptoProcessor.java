@@ -0,0 +1,232 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for the streaming Flow processors (EncryptProcessor, DecryptProcessor).
+ *
+ * Upstream items are requested one at a time and only while the downstream subscriber
+ * has outstanding demand, so at most one transformed item (plus the header or the tag)
+ * is ever buffered, regardless of the length of the stream. Subclasses only transform
+ * each item and produce the final output on completion.
+ *
+ * Supports a single downstream subscriber.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public abstract class CryptoProcessor implements Flow.Processor<ByteBuffer, ByteBuffer> {
+
+    /** Outputs buffered across all processors, reported as the "flow.pending" queue depth */
+    private static final AtomicInteger PENDING = new AtomicInteger();
+
+    static {
+        CryptoMetrics.registerQueue("flow.pending", PENDING::get);
+    }
+
+    /** Outputs waiting for downstream demand, guarded by its own monitor */
+    private final Queue<ByteBuffer> pending = new ArrayDeque<>();
+
+    /** Outstanding downstream demand */
+    private final AtomicLong demand = new AtomicLong();
+
+    /** Work-in-progress counter serializing the drain loop */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super ByteBuffer> downstream;
+
+    /** Whether an upstream item has been requested and not yet delivered */
+    private volatile boolean inFlight;
+
+    /** Whether the upstream has completed or failed */
+    private volatile boolean finished;
+
+    /** Whether the downstream has been completed, failed or cancelled */
+    private volatile boolean terminated;
+
+    /** The failure to report downstream as soon as the upstream has finished; pending outputs are dropped */
+    private volatile Throwable error;
+
+    /**
+     * Transform one upstream item into output buffers
+     * @param item the input bytes
+     * @param out collects the output buffers
+     * @throws Exception if the stream must be failed
+     */
+    protected abstract void transform(ByteBuffer item, Queue<ByteBuffer> out) throws Exception;
+
+    /**
+     * Produce the trailing outputs once the upstream has completed
+     * @param out collects the output buffers
+     * @throws Exception if the stream must be failed (e.g. a tag mismatch)
+     */
+    protected abstract void complete(Queue<ByteBuffer> out) throws Exception;
+
+    /**
+     * Queue an output before any upstream item arrives (e.g. a cryptogram header)
+     * @param buffer the output
+     */
+    protected void emitFirst(ByteBuffer buffer) {
+        synchronized (pending) {
+            pending.add(buffer);
+        }
+        PENDING.incrementAndGet();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        if (downstream != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) { }
+                public void cancel() { }
+            });
+            subscriber.onError(new IllegalStateException("CryptoProcessor supports a single subscriber"));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Non-positive request: " + n);
+                    finished = true;
+                    cancelUpstream();
+                }
+                else {
+                    demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                terminated = true;
+                cancelUpstream();
+                synchronized (pending) {
+                    PENDING.addAndGet(-pending.size());
+                    pending.clear();
+                }
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        if (finished) return;
+        try {
+            synchronized (pending) {
+                int before = pending.size();
+                transform(item, pending);
+                PENDING.addAndGet(pending.size() - before);
+            }
+        }
+        catch (Exception e) {
+            error = e;
+            finished = true;
+            cancelUpstream();
+        }
+        inFlight = false;
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (finished) return;
+        error = throwable;
+        finished = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        if (finished) return;
+        try {
+            synchronized (pending) {
+                int before = pending.size();
+                complete(pending);
+                PENDING.addAndGet(pending.size() - before);
+            }
+        }
+        catch (Exception e) {
+            error = e;
+        }
+        finished = true;
+        drain();
+    }
+
+    /**
+     * Number of outputs currently buffered, waiting for downstream demand
+     * @return the queue depth
+     */
+    public int queueDepth() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription s = upstream;
+        if (s != null) s.cancel();
+    }
+
+    /**
+     * Deliver pending outputs against demand, request the next upstream item when
+     * everything has been delivered, and terminate the downstream at the end.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) return;
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super ByteBuffer> d = downstream;
+            if (d != null && !terminated) {
+                boolean empty;
+                while (true) {
+                    ByteBuffer next = null;
+                    synchronized (pending) {
+                        if (demand.get() > 0 && error == null) next = pending.poll();
+                        empty = pending.isEmpty();
+                    }
+                    if (next == null) break;
+                    PENDING.decrementAndGet();
+                    demand.decrementAndGet();
+                    d.onNext(next);
+                }
+
+                if (finished && error != null) {
+                    // fail without delivering what is still buffered (e.g. plaintext before a tag mismatch)
+                    terminated = true;
+                    synchronized (pending) {
+                        PENDING.addAndGet(-pending.size());
+                        pending.clear();
+                    }
+                    d.onError(error);
+                }
+                else if (empty && finished) {
+                    terminated = true;
+                    d.onComplete();
+                }
+                else if (empty && !inFlight && demand.get() > 0 && upstream != null) {
+                    inFlight = true;
+                    upstream.request(1);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
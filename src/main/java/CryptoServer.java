@@ -0,0 +1,406 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Long-running crypto daemon, so that short-lived callers get a warm JVM: classes are
+ * loaded, ECKey.G is built and the JIT has compiled the Keccak and curve code.
+ *
+ * Listens on a Unix domain socket or on a localhost TCP port and speaks a compact binary
+ * protocol. Requests on one connection may be pipelined: each request carries an id,
+ * requests are executed concurrently on a worker pool and responses are written as soon
+ * as they are ready, tagged with the id of their request. A connection may have at most
+ * MAX_IN_FLIGHT requests queued or running; its reader stops reading until one completes,
+ * so a pipelining client is throttled by TCP back-pressure instead of growing the queue.
+ * All arguments of a request together are limited to MAX_FRAME_LEN bytes, and at most
+ * MAX_CONNECTIONS connections are served at once; further connections are accepted and
+ * closed immediately. Request buffers therefore stay below
+ * MAX_CONNECTIONS * MAX_IN_FLIGHT * MAX_FRAME_LEN in the worst case.
+ *
+ * Request:  id (int) | op (byte) | argc (byte) | argc * (length (int) | bytes)
+ * Response: id (int) | status (byte) | length (int) | bytes
+ *
+ * Usage: java Main --server unix /tmp/crypto.sock
+ *        java Main --server tcp 4870
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class CryptoServer implements AutoCloseable {
+
+    // --- Operations ---
+
+    /** hash(m) -> 64-byte hash */
+    public static final byte HASH = 1;
+    /** mac(pw, m) -> 64-byte authentication tag */
+    public static final byte MAC = 2;
+    /** encrypt(pw, m) -> symmetric cryptogram */
+    public static final byte ENCRYPT = 3;
+    /** decrypt(pw, zct) -> m, or STATUS_REJECTED */
+    public static final byte DECRYPT = 4;
+    /** ecEncrypt(V, m) -> elliptic cryptogram */
+    public static final byte EC_ENCRYPT = 5;
+    /** ecDecrypt(pw, Zct) -> m, or STATUS_REJECTED */
+    public static final byte EC_DECRYPT = 6;
+    /** sign(pw, m) -> the SignatureValue encoding of (h, z) */
+    public static final byte SIGN = 7;
+    /** verify(V, SignatureValue encoding, m) -> STATUS_OK or STATUS_REJECTED */
+    public static final byte VERIFY = 8;
+
+    // --- Statuses ---
+
+    /** The operation succeeded */
+    public static final byte STATUS_OK = 0;
+    /** Authentication failed (bad tag or invalid signature) */
+    public static final byte STATUS_REJECTED = 1;
+    /** The request was malformed or the operation failed; the payload is the message */
+    public static final byte STATUS_ERROR = 2;
+
+    /** Largest accepted request (all arguments together) or response payload, to bound memory per request */
+    static final int MAX_FRAME_LEN = 64 << 20;
+
+    /** Requests of one connection that may be queued or running at once */
+    static final int MAX_IN_FLIGHT = 16;
+
+    /** Connections served at once */
+    static final int MAX_CONNECTIONS = 64;
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final ThreadPoolExecutor workers;
+
+    /** One permit per connection that may be served */
+    private final Semaphore connections = new Semaphore(MAX_CONNECTIONS);
+
+    /**
+     * Bind the server
+     * @param address a UnixDomainSocketAddress or a loopback InetSocketAddress
+     * @param threads the number of worker threads
+     * @throws IOException if the socket cannot be bound
+     */
+    public CryptoServer(SocketAddress address, int threads) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            removeStaleSocket((UnixDomainSocketAddress) address);
+        }
+        else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        this.address = address;
+        this.workers = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "crypto-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        CryptoMetrics.registerMBean();
+        CryptoMetrics.registerQueue("server.workers", () -> workers.getQueue().size());
+    }
+
+    /**
+     * Accept connections until the server is closed. Each connection gets a reader
+     * thread; requests are handed to the worker pool. A connection beyond
+     * MAX_CONNECTIONS is closed without reading from it.
+     */
+    public void serve() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel ch = server.accept();
+                if (!connections.tryAcquire()) {
+                    ch.close();
+                    continue;
+                }
+                Thread reader = new Thread(() -> {
+                    try {
+                        handle(ch);
+                    }
+                    finally {
+                        connections.release();
+                    }
+                }, "crypto-connection");
+                reader.setDaemon(true);
+                reader.start();
+            }
+            catch (IOException e) {
+                if (server.isOpen()) System.out.println("An IOException occurred " + e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        workers.shutdown();
+        CryptoMetrics.unregisterQueue("server.workers");
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    /**
+     * Delete a socket file left behind by a server that is no longer running, so bind
+     * does not fail; a socket someone is still listening on is left alone
+     * @param address the address to bind
+     * @throws IOException if the stale file cannot be deleted
+     */
+    private static void removeStaleSocket(UnixDomainSocketAddress address) throws IOException {
+        if (!Files.exists(address.getPath())) return;
+        try {
+            SocketChannel.open(address).close();
+            return; // a live server; bind will report the conflict
+        }
+        catch (IOException refused) {
+            Files.deleteIfExists(address.getPath());
+        }
+    }
+
+    /**
+     * Read pipelined requests from one connection until it is closed
+     * @param ch the connection
+     */
+    private void handle(SocketChannel ch) {
+        Object writeLock = new Object();
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        try (ch) {
+            while (true) {
+                inFlight.acquire();
+                ByteBuffer head = ByteBuffer.allocate(6);
+                if (!readFully(ch, head, true)) break;
+                head.flip();
+                int id = head.getInt();
+                byte op = head.get();
+                byte[][] args = new byte[head.get() & 0xFF][];
+                int budget = MAX_FRAME_LEN;
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readArg(ch, budget);
+                    budget -= args[i].length;
+                }
+
+                try {
+                    workers.execute(() -> {
+                        try {
+                            ByteBuffer response = execute(id, op, args);
+                            synchronized (writeLock) {
+                                while (response.hasRemaining()) ch.write(response);
+                            }
+                        }
+                        catch (IOException ignored) {
+                            // the client went away; the reader will see the closed channel
+                        }
+                        finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+                catch (RejectedExecutionException e) {
+                    break; // shutting down
+                }
+            }
+        }
+        catch (IOException ignored) {
+            // connection closed mid-request
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run one request
+     * @return the encoded response frame
+     */
+    private static ByteBuffer execute(int id, byte op, byte[][] args) {
+        try {
+            switch (op) {
+                case HASH -> {
+                    return response(id, STATUS_OK, Symmetric.computeHash(arg(args, 0)));
+                }
+                case MAC -> {
+                    return response(id, STATUS_OK, Symmetric.computeAuthTag(str(args, 0), arg(args, 1)));
+                }
+                case ENCRYPT -> {
+                    return response(id, STATUS_OK, Symmetric.symmetricEncrypt(str(args, 0), arg(args, 1)));
+                }
+                case DECRYPT -> {
+                    ByteBuffer zct = ByteBuffer.wrap(arg(args, 1));
+                    ByteBuffer m = ByteBuffer.allocate(Math.max(0, zct.remaining() - 128));
+                    boolean ok = Symmetric.symmetricDecrypt(str(args, 0), zct, m);
+                    return response(id, ok ? STATUS_OK : STATUS_REJECTED, ok ? m.array() : new byte[0]);
+                }
+                case EC_ENCRYPT -> {
+                    E521 V = E521.createFromBytes(arg(args, 0));
+                    return response(id, STATUS_OK, CryptEC.encrypt(arg(args, 1), V));
+                }
+                case EC_DECRYPT -> {
+                    ByteBuffer zct = ByteBuffer.wrap(arg(args, 1));
+                    int zLen = E521.P.toByteArray().length * 2;
+                    ByteBuffer m = ByteBuffer.allocate(Math.max(0, zct.remaining() - zLen - 64));
+                    boolean ok = CryptEC.decrypt(zct, str(args, 0), m);
+                    return response(id, ok ? STATUS_OK : STATUS_REJECTED, ok ? m.array() : new byte[0]);
+                }
+                case SIGN -> {
+                    BigInteger[] hz = Signature.generateSignature(arg(args, 1), str(args, 0));
+                    return response(id, STATUS_OK, SignatureValue.of(hz).encode());
+                }
+                case VERIFY -> {
+                    E521 V = E521.createFromBytes(arg(args, 0));
+                    boolean ok = Signature.verifySignature(SignatureValue.decode(arg(args, 1)).toArray(), arg(args, 2), V);
+                    return response(id, ok ? STATUS_OK : STATUS_REJECTED, new byte[0]);
+                }
+                default -> {
+                    return response(id, STATUS_ERROR, ("Unknown operation " + op).getBytes());
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            return response(id, STATUS_ERROR, String.valueOf(e.getMessage()).getBytes());
+        }
+    }
+
+    // --- Framing, shared with CryptoClient ---
+
+    /**
+     * Encode a request frame
+     * @param id the request id
+     * @param op the operation
+     * @param args the arguments
+     * @return the frame, ready to write
+     */
+    static ByteBuffer request(int id, byte op, byte[]... args) {
+        int len = 6;
+        for (byte[] a : args) len += 4 + a.length;
+        ByteBuffer buf = ByteBuffer.allocate(len).putInt(id).put(op).put((byte) args.length);
+        for (byte[] a : args) buf.putInt(a.length).put(a);
+        return buf.flip();
+    }
+
+    /**
+     * Encode a response frame
+     * @param id the request id
+     * @param status the status
+     * @param payload the payload
+     * @return the frame, ready to write
+     */
+    static ByteBuffer response(int id, byte status, byte[] payload) {
+        return ByteBuffer.allocate(9 + payload.length)
+                .putInt(id).put(status).putInt(payload.length).put(payload).flip();
+    }
+
+    /**
+     * Read one length-prefixed argument or payload of at most MAX_FRAME_LEN bytes
+     * @param ch the channel
+     * @return the bytes
+     * @throws IOException if the channel fails, closes early or the length is out of range
+     */
+    static byte[] readArg(ByteChannel ch) throws IOException {
+        return readArg(ch, MAX_FRAME_LEN);
+    }
+
+    /**
+     * Read one length-prefixed argument or payload
+     * @param ch the channel
+     * @param max the largest accepted length
+     * @return the bytes
+     * @throws IOException if the channel fails, closes early or the length is out of range
+     */
+    static byte[] readArg(ByteChannel ch, int max) throws IOException {
+        ByteBuffer len = ByteBuffer.allocate(4);
+        readFully(ch, len, false);
+        int n = len.flip().getInt();
+        if (n < 0 || n > max) throw new IOException("Invalid frame length " + n);
+        ByteBuffer arg = ByteBuffer.allocate(n);
+        readFully(ch, arg, false);
+        return arg.array();
+    }
+
+    /**
+     * Fill a buffer from the channel
+     * @param ch the channel
+     * @param buf the buffer to fill
+     * @param eofAllowed whether a clean end of stream before the first byte is allowed
+     * @return false if the stream ended cleanly before the first byte
+     * @throws IOException if the channel fails or ends in the middle of the buffer
+     */
+    static boolean readFully(ByteChannel ch, ByteBuffer buf, boolean eofAllowed) throws IOException {
+        boolean first = true;
+        while (buf.hasRemaining()) {
+            if (ch.read(buf) < 0) {
+                if (first && eofAllowed && buf.position() == 0) return false;
+                throw new EOFException("Connection closed mid-frame");
+            }
+            first = false;
+        }
+        return true;
+    }
+
+    private static byte[] arg(byte[][] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing argument " + i);
+        return args[i];
+    }
+
+    private static String str(byte[][] args, int i) {
+        return new String(arg(args, i));
+    }
+
+    /**
+     * Parse the listening address from "unix PATH" or "tcp PORT"
+     * @param args the command-line arguments
+     * @return the socket address
+     */
+    static SocketAddress parseAddress(String[] args) {
+        if (args.length >= 2 && args[0].equals("unix")) return UnixDomainSocketAddress.of(Path.of(args[1]));
+        if (args.length >= 2 && args[0].equals("tcp")) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[1]));
+        }
+        throw new IllegalArgumentException("Expected: unix PATH | tcp PORT");
+    }
+
+    /**
+     * Start the daemon; -Dcrypto.ephemeralPool=capacity,lowWater,threads precomputes the
+     * ephemeral pairs of the elliptic encryptions (see EphemeralKeyPool)
+     * @param args "unix PATH" or "tcp PORT", optionally followed by the worker count
+     * @throws IOException if the socket cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        SocketAddress address = parseAddress(args);
+        int threads = args.length >= 3 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        EphemeralKeyPool.installFromSystemProperties();
+
+        // warm up: build ECKey.G and get the hot paths compiled before the first request
+        ECKey warm = new ECKey("warm-up".getBytes());
+        for (int i = 0; i < 20; i++) {
+            byte[] m = new byte[256 * i];
+            Symmetric.symmetricDecrypt("warm-up", Symmetric.symmetricEncrypt("warm-up", m));
+            Symmetric.computeHash(ByteBuffer.wrap(m), ByteBuffer.allocate(64));
+        }
+        Signature.verifySignature(Signature.generateSignature(new byte[16], "warm-up"), new byte[16], warm.getPublicKey());
+
+        CryptoServer server = new CryptoServer(address, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            }
+            catch (IOException ignored) {
+                // exiting anyway
+            }
+        }));
+        System.out.println("Listening on " + address);
+        server.serve();
+    }
+}
@@ -0,0 +1,152 @@
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Deterministic random bit generator built on cSHAKE256.
+ *
+ * Each instance is seeded once from SecureRandom and reseeded with fresh entropy every
+ * RESEED_INTERVAL requests. After every request the internal key is ratcheted forward
+ * (the first 512 bits of the output become the next key), so a captured state cannot be
+ * used to recover earlier outputs.
+ *
+ * Both steps run on an incremental Sponge restarted from a cached cSHAKE256 prefix and
+ * squeeze straight into the caller's array, so a request allocates nothing.
+ *
+ * Instances are not thread-safe; use current() to get the calling thread's generator.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class DRBG {
+
+    /** Length of the internal key in bytes (512 bits) */
+    private static final int KEY_LEN = 64;
+
+    /** Number of requests served before fresh entropy is mixed into the key */
+    static final int RESEED_INTERVAL = 1 << 16;
+
+    /** Largest output produced from a single key before the key is ratcheted */
+    private static final int MAX_REQUEST = 1 << 16;
+
+    /** Shared entropy source, only touched when seeding */
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+
+    /** cSHAKE256 prefixes for ("", "DRBG") and ("", "DRBG Reseed"); only ever copied from */
+    private static final Sponge GENERATE_PREFIX = Sponge.cshake256("", "DRBG");
+    private static final Sponge RESEED_PREFIX = Sponge.cshake256("", "DRBG Reseed");
+
+    /** Per-thread generators */
+    private static final ThreadLocal<DRBG> LOCAL = ThreadLocal.withInitial(DRBG::new);
+
+    /** Entropy source for seeding and reseeding */
+    private final SecureRandom seedSource;
+
+    /** Current key */
+    private final byte[] key = new byte[KEY_LEN];
+
+    /** Whether key holds a previous key to mix into a reseed */
+    private boolean seeded;
+
+    /** Working sponge, restarted from a prefix for every step */
+    private final Sponge sponge = new Sponge(136, 24);
+
+    /** Requests served since the last reseed */
+    private int requests;
+
+    /**
+     * Create a generator seeded from SecureRandom
+     */
+    public DRBG() {
+        this(SEED_SOURCE);
+    }
+
+    /**
+     * Create a generator seeded from the given entropy source
+     * @param seedSource the source read on every seeding and reseeding
+     */
+    DRBG(SecureRandom seedSource) {
+        this.seedSource = seedSource;
+        reseed();
+    }
+
+    /**
+     * Get the generator for the calling thread
+     * @return the thread-local generator
+     */
+    public static DRBG current() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Mix fresh entropy from SecureRandom into the key:
+     * key <- cSHAKE256(key || Random(512), 512, "", "DRBG Reseed")
+     */
+    public void reseed() {
+        byte[] entropy = new byte[KEY_LEN];
+        seedSource.nextBytes(entropy);
+        sponge.copyFrom(RESEED_PREFIX);
+        if (seeded) sponge.absorb(key);
+        sponge.absorb(entropy).pad((byte) 0x04).squeeze(key, 0, KEY_LEN);
+        sponge.reset();
+
+        wipe(entropy);
+        seeded = true;
+        requests = 0;
+    }
+
+    /**
+     * Fill a byte array with random bytes
+     * @param out the array to fill
+     */
+    public void nextBytes(byte[] out) {
+        nextBytes(out, 0, out.length);
+    }
+
+    /**
+     * Fill a range of a byte array with random bytes
+     * @param out the destination array
+     * @param off the offset of the first byte to write
+     * @param len the number of bytes to write
+     */
+    public void nextBytes(byte[] out, int off, int len) {
+        while (len > 0) {
+            int n = Math.min(len, MAX_REQUEST);
+            generate().squeeze(out, off, n);
+            sponge.reset();
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Fill the remaining bytes of a buffer with random bytes, advancing its position
+     * @param dst the buffer to fill
+     */
+    public void nextBytes(ByteBuffer dst) {
+        while (dst.hasRemaining()) {
+            int n = Math.min(dst.remaining(), MAX_REQUEST);
+            generate().squeeze(dst, n);
+            sponge.reset();
+        }
+    }
+
+    /**
+     * One generate request:
+     * (key' || out) <- cSHAKE256(key, 512 + 8|out|, "", "DRBG"); key <- key'
+     * @return the sponge, positioned at the first output byte; the caller squeezes the
+     *         output and then resets it
+     */
+    private Sponge generate() {
+        if (requests >= RESEED_INTERVAL) reseed();
+        requests++;
+
+        sponge.copyFrom(GENERATE_PREFIX).absorb(key).pad((byte) 0x04).squeeze(key, 0, KEY_LEN);
+        return sponge;
+    }
+
+    private static void wipe(byte[] a) {
+        if (a != null) Arrays.fill(a, (byte) 0);
+    }
+}
@@ -0,0 +1,117 @@
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Queue;
+import javax.crypto.AEADBadTagException;
+
+/**
+ * Flow processor that decrypts a streamed cryptogram (z || c || t or Z || c || t).
+ *
+ * Plaintext is emitted as soon as it is decrypted; only the last 64 bytes seen so far
+ * are held back, since they may be the tag. The tag is validated when the upstream
+ * completes: on a mismatch the stream fails with AEADBadTagException instead of
+ * completing, and consumers must discard everything they received.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class DecryptProcessor extends CryptoProcessor {
+
+    /** Length of the tag t in bytes */
+    private static final int TAG_LEN = 64;
+
+    /** The passphrase */
+    private final String pw;
+
+    /** Whether the header is z (symmetric) or Z (elliptic) */
+    private final boolean elliptic;
+
+    /** The header bytes, filled across items */
+    private final byte[] header;
+    private int headerLen;
+
+    /** The last bytes seen, which may be the tag */
+    private final byte[] tail = new byte[TAG_LEN];
+    private int tailLen;
+
+    private Sponge keystream;
+    private Sponge mac;
+
+    private DecryptProcessor(String pw, boolean elliptic, int headerSize) {
+        this.pw = pw;
+        this.elliptic = elliptic;
+        this.header = new byte[headerSize];
+    }
+
+    /**
+     * Create a processor decrypting a symmetric cryptogram under passphrase pw
+     * @param pw the passphrase
+     * @return the processor
+     */
+    public static DecryptProcessor symmetric(String pw) {
+        return new DecryptProcessor(pw, false, 64);
+    }
+
+    /**
+     * Create a processor decrypting an elliptic cryptogram under passphrase pw
+     * @param pw the passphrase
+     * @return the processor
+     */
+    public static DecryptProcessor elliptic(String pw) {
+        return new DecryptProcessor(pw, true, E521.P.toByteArray().length * 2);
+    }
+
+    @Override
+    protected void transform(ByteBuffer item, Queue<ByteBuffer> out) {
+        if (headerLen < header.length) {
+            int n = Math.min(header.length - headerLen, item.remaining());
+            item.get(header, headerLen, n);
+            headerLen += n;
+            if (headerLen < header.length) return;
+
+            Sponge[] sponges = elliptic
+                    ? CryptEC.ellipticSponges(CryptEC.sharedPoint(E521.createFromBytes(header), pw))
+                    : Symmetric.symmetricSponges(header, pw);
+            keystream = sponges[0];
+            mac = sponges[1];
+        }
+
+        // everything except the last 64 bytes seen so far is ciphertext
+        int emit = Math.max(0, tailLen + item.remaining() - TAG_LEN);
+        if (emit == 0) {
+            int n = item.remaining();
+            item.get(tail, tailLen, n);
+            tailLen += n;
+            return;
+        }
+
+        ByteBuffer m = ByteBuffer.allocate(emit);
+        int fromTail = Math.min(emit, tailLen);
+        Symmetric.xorStream(ByteBuffer.wrap(tail, 0, fromTail), m, keystream, mac, true);
+        System.arraycopy(tail, fromTail, tail, 0, tailLen - fromTail);
+        tailLen -= fromTail;
+
+        ByteBuffer c = item.slice();
+        c.limit(emit - fromTail);
+        Symmetric.xorStream(c, m, keystream, mac, true);
+        item.position(item.position() + emit - fromTail);
+
+        int n = item.remaining();
+        item.get(tail, tailLen, n);
+        tailLen += n;
+        out.add(m.flip());
+    }
+
+    @Override
+    protected void complete(Queue<ByteBuffer> out) throws AEADBadTagException {
+        if (headerLen < header.length || tailLen < TAG_LEN) {
+            throw new IllegalArgumentException("Cryptogram is too short");
+        }
+
+        // accept if, and only if, t' = t
+        byte[] tPrime = mac.finishKMACXOF().squeeze(TAG_LEN);
+        if (!MessageDigest.isEqual(tail, tPrime)) {
+            throw new AEADBadTagException("Authentication tag mismatch");
+        }
+    }
+}
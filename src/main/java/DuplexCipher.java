@@ -0,0 +1,210 @@
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Single-pass authenticated encryption with associated data in the duplex construction
+ * (SpongeWrap, Bertoni et al.) on Keccak-f[1600] with rate 136.
+ *
+ *   cryptogram = MODE_DUPLEX || z || c || t
+ *
+ *   z <- Random(512); K <- KMACXOF256(z || pw, "", 512, "SD")
+ *   duplex(K || MODE_DUPLEX || z, KEY)
+ *   duplex(a_i, AD) for each block of the associated data, AD_LAST for the last one
+ *   c_i <- m_i xor (rate bytes of the state); duplex(m_i, MSG), MSG_LAST for the last block
+ *   t <- first 64 bytes of the state
+ *
+ * where duplex(x, d) XORs x into the state, then the domain byte d right after it and the
+ * final padding bit 0x80 at the end of the rate, and applies the permutation. Blocks are
+ * BLOCK = rate - 1 bytes, so the domain byte always fits; the associated data and the
+ * message each contribute at least one (possibly empty) final block. Each message block
+ * costs one permutation that both supplies the keystream and absorbs the plaintext, about
+ * half of what the two KMAC passes of the encrypt-then-MAC modes need.
+ *
+ * Decryption has to produce the message to authenticate it, so it is written to a buffer
+ * that is zeroed and dropped unless the tag matches. The associated data is not part of
+ * the cryptogram; the receiver supplies the same bytes.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public final class DuplexCipher {
+
+    /** Mode byte of the duplex cryptogram (mode || z || c || t) */
+    public static final byte MODE_DUPLEX = 0x03;
+
+    /** Rate in bytes, capacity 512 */
+    private static final int RATE = 136;
+
+    /** Input bytes per duplex call, leaving room for the domain byte */
+    private static final int BLOCK = RATE - 1;
+
+    /** Length of the nonce z and of the tag t in bytes */
+    private static final int Z_LEN = 64;
+    private static final int TAG_LEN = 64;
+
+    // domain bytes: frame bits followed by the first padding bit, all below 0x80
+    private static final byte KEY = 0x03;
+    private static final byte AD = 0x04;
+    private static final byte AD_LAST = 0x05;
+    private static final byte MSG = 0x06;
+    private static final byte MSG_LAST = 0x07;
+
+    /** Keccak-f[1600] state as 25 little-endian lanes */
+    private final long[] state = new long[25];
+
+    private DuplexCipher() { }
+
+    /**
+     * Encrypt a byte array m under passphrase pw without associated data
+     * @param pw the passphrase
+     * @param m the message
+     * @return the cryptogram (MODE_DUPLEX || z || c || t)
+     */
+    public static byte[] encrypt(String pw, byte[] m) {
+        return encrypt(pw, m, new byte[0]);
+    }
+
+    /**
+     * Encrypt a byte array m under passphrase pw, authenticating associated data ad as well
+     * @param pw the passphrase
+     * @param m the message
+     * @param ad the associated data, authenticated but not encrypted or included
+     * @return the cryptogram (MODE_DUPLEX || z || c || t)
+     */
+    public static byte[] encrypt(String pw, byte[] m, byte[] ad) {
+        long started = CryptoMetrics.SYMMETRIC_ENCRYPT.begin();
+        byte[] out = new byte[1 + Z_LEN + m.length + TAG_LEN];
+        out[0] = MODE_DUPLEX;
+
+        // z <- Random(512)
+        DRBG.current().nextBytes(out, 1, Z_LEN);
+        DuplexCipher duplex = start(pw, Arrays.copyOfRange(out, 1, 1 + Z_LEN), ad);
+
+        // c_i <- m_i xor state; absorb m_i
+        int off = 0;
+        do {
+            int n = Math.min(BLOCK, m.length - off);
+            for (int i = 0; i < n; i++) {
+                byte c = (byte) (m[off + i] ^ duplex.getByte(i));
+                out[1 + Z_LEN + off + i] = c;
+                // state byte ^= m byte, i.e. the state byte becomes c
+                duplex.setByte(i, c);
+            }
+            off += n;
+            duplex.finishBlock(n, off == m.length ? MSG_LAST : MSG);
+        } while (off < m.length);
+
+        // t <- first 64 bytes of the state
+        duplex.squeezeTag(out, 1 + Z_LEN + m.length);
+        duplex.clear();
+        CryptoMetrics.SYMMETRIC_ENCRYPT.end(started, m.length);
+        return out;
+    }
+
+    /**
+     * Decrypt a cryptogram under passphrase pw without associated data
+     * @param pw the passphrase
+     * @param zct the cryptogram (MODE_DUPLEX || z || c || t)
+     * @return the message, or empty if the cryptogram is malformed or the tag does not match
+     */
+    public static Optional<byte[]> decrypt(String pw, byte[] zct) {
+        return decrypt(pw, zct, new byte[0]);
+    }
+
+    /**
+     * Decrypt a cryptogram under passphrase pw and associated data ad
+     * @param pw the passphrase
+     * @param zct the cryptogram (MODE_DUPLEX || z || c || t)
+     * @param ad the associated data given to encrypt
+     * @return the message, or empty if the cryptogram is malformed or the tag does not match
+     */
+    public static Optional<byte[]> decrypt(String pw, byte[] zct, byte[] ad) {
+        if (zct.length < 1 + Z_LEN + TAG_LEN || zct[0] != MODE_DUPLEX) return Optional.empty();
+        long started = CryptoMetrics.SYMMETRIC_DECRYPT.begin();
+        int cLen = zct.length - 1 - Z_LEN - TAG_LEN;
+        DuplexCipher duplex = start(pw, Arrays.copyOfRange(zct, 1, 1 + Z_LEN), ad);
+
+        // m_i <- c_i xor state; absorb m_i
+        byte[] m = new byte[cLen];
+        int off = 0;
+        do {
+            int n = Math.min(BLOCK, cLen - off);
+            for (int i = 0; i < n; i++) {
+                byte c = zct[1 + Z_LEN + off + i];
+                m[off + i] = (byte) (c ^ duplex.getByte(i));
+                duplex.setByte(i, c);
+            }
+            off += n;
+            duplex.finishBlock(n, off == cLen ? MSG_LAST : MSG);
+        } while (off < cLen);
+
+        // accept if, and only if, the state yields t
+        byte[] tPrime = new byte[TAG_LEN];
+        duplex.squeezeTag(tPrime, 0);
+        duplex.clear();
+        boolean accepted = MessageDigest.isEqual(tPrime, Arrays.copyOfRange(zct, 1 + Z_LEN + cLen, zct.length));
+        if (!accepted) Arrays.fill(m, (byte) 0);
+        CryptoMetrics.SYMMETRIC_DECRYPT.end(started, zct.length);
+        return accepted ? Optional.of(m) : Optional.empty();
+    }
+
+    /**
+     * K <- KMACXOF256(z || pw, "", 512, "SD"); absorb K || MODE_DUPLEX || z, then the associated data
+     */
+    private static DuplexCipher start(String pw, byte[] z, byte[] ad) {
+        byte[] key = Sponge.kmacxof256(Symmetric.byteConcat(z, pw.getBytes()), "SD").finishKMACXOF().squeeze(64);
+        DuplexCipher duplex = new DuplexCipher();
+        byte[] keyBlock = Symmetric.byteConcat(Symmetric.byteConcat(key, new byte[] {MODE_DUPLEX}), z);
+        duplex.absorbBlock(keyBlock, 0, keyBlock.length, KEY);
+        Arrays.fill(key, (byte) 0);
+        Arrays.fill(keyBlock, (byte) 0);
+
+        int off = 0;
+        do {
+            int n = Math.min(BLOCK, ad.length - off);
+            duplex.absorbBlock(ad, off, n, off + n == ad.length ? AD_LAST : AD);
+            off += n;
+        } while (off < ad.length);
+        return duplex;
+    }
+
+    /**
+     * duplex(x, d) for a block x = in[off, off + len) of at most BLOCK bytes
+     */
+    private void absorbBlock(byte[] in, int off, int len, byte ds) {
+        for (int i = 0; i < len; i++) xorByte(i, in[off + i]);
+        finishBlock(len, ds);
+    }
+
+    /**
+     * Complete a duplex call whose len input bytes are already in the state
+     */
+    private void finishBlock(int len, byte ds) {
+        xorByte(len, ds);
+        xorByte(RATE - 1, (byte) 0x80);
+        Symmetric.keccakf(state, 24);
+    }
+
+    private void squeezeTag(byte[] out, int off) {
+        for (int i = 0; i < TAG_LEN; i++) out[off + i] = getByte(i);
+    }
+
+    private void clear() {
+        Arrays.fill(state, 0L);
+    }
+
+    private void xorByte(int index, byte b) {
+        state[index >>> 3] ^= (b & 0xFFL) << ((index & 7) << 3);
+    }
+
+    private void setByte(int index, byte b) {
+        int shift = (index & 7) << 3;
+        state[index >>> 3] = (state[index >>> 3] & ~(0xFFL << shift)) | ((b & 0xFFL) << shift);
+    }
+
+    private byte getByte(int index) {
+        return (byte) (state[index >>> 3] >>> ((index & 7) << 3));
+    }
+}
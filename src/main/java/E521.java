@@ -1,5 +1,6 @@
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * The implementation of Elliptic Curve security level P-521
@@ -26,6 +27,8 @@ public class E521 {
     public static final BigInteger P = new BigInteger("2").pow(521).subtract(BigInteger.ONE);
     /** Number of possible positions on Edwards Elliptical Curve 521 */
     public static final BigInteger R = BigInteger.TWO.pow(519).subtract(new BigInteger("337554763258501705789107630418782636071904961214051226618635150085779108655765"));
+    /** Length of a compressed point: x (521 bits) with the lsb of y in the top bit */
+    public static final int COMPRESSED_LEN = 66;
 
 
     // --- Constructors ---
@@ -36,10 +39,7 @@ public class E521 {
      * @param lsb the lease significant bit for y
      */
     public E521(BigInteger x, boolean lsb) {
-        BigInteger upper = (BigInteger.ONE.subtract(x.pow(2))).mod(P); // 1 - x^2
-        BigInteger lower = BigInteger.ONE.subtract(D.multiply(x.pow(2))).mod(P); // 1 - d * x^2
-        BigInteger rad = upper.multiply(lower.modInverse(P));
-        BigInteger sqrt = sqrt(rad, P, lsb); // sqrt( (1 - x^2) / (1 - dx^2)) mod p
+        BigInteger sqrt = recoverY(x, lsb); // sqrt( (1 - x^2) / (1 - dx^2)) mod p
         if (sqrt == null) throw new IllegalArgumentException("Error -> no sqrt for x");
 
         this.X = x;
@@ -151,6 +151,32 @@ public class E521 {
         return result;
     }
 
+    /**
+     * Compressed encoding: x as 66 big-endian bytes, with the least significant bit of y
+     * stored in the otherwise unused top bit
+     * @return the COMPRESSED_LEN-byte encoding
+     */
+    public byte[] getCompressedBytes() {
+        byte[] result = new byte[COMPRESSED_LEN];
+        byte[] x = X.mod(P).toByteArray();
+        int skip = x.length > COMPRESSED_LEN ? 1 : 0;
+        System.arraycopy(x, skip, result, COMPRESSED_LEN - (x.length - skip), x.length - skip);
+        if (Y.mod(P).testBit(0)) result[0] |= (byte) 0x80;
+        return result;
+    }
+
+    /**
+     * Decode a compressed point
+     * @param input the COMPRESSED_LEN-byte encoding
+     * @return the point
+     * @throws IllegalArgumentException if the encoding is malformed or x is not on the curve
+     */
+    public static E521 createFromCompressedBytes(byte[] input) {
+        E521 point = decompress(input, 0);
+        if (point == null) throw new IllegalArgumentException("Error -> no sqrt for x");
+        return point;
+    }
+
     public static E521 createFromBytes(byte[] input) {
         int bLen = P.toByteArray().length * 2;
         if (input.length != bLen)
@@ -179,6 +205,71 @@ public class E521 {
         return "X: " + X.toString() + "\nY: " + Y.toString();
     }
 
+    /**
+     * Check x^2 + y^2 = 1 + d * x^2 * y^2 (mod p)
+     * @return whether this point lies on the curve
+     */
+    public boolean isOnCurve() {
+        BigInteger x2 = sqr(X.mod(P));
+        BigInteger y2 = sqr(Y.mod(P));
+        BigInteger left = reduce(x2.add(y2));
+        BigInteger right = BigInteger.ONE.add(D.multiply(mul(x2, y2))).mod(P);
+        return left.equals(right);
+    }
+
+    // --- Batch Functions ---
+
+    /**
+     * Decode an array of compressed points, in parallel for large batches
+     * @param inputs the COMPRESSED_LEN-byte encodings
+     * @return the points, with null for every encoding whose x is not on the curve
+     */
+    public static E521[] decompressAll(byte[][] inputs) {
+        E521[] points = new E521[inputs.length];
+        IntStream range = IntStream.range(0, inputs.length);
+        if (inputs.length >= 64) range = range.parallel();
+        range.forEach(i -> points[i] = decompress(inputs[i], 0));
+        return points;
+    }
+
+    /**
+     * Decode compressed points packed back to back
+     * @param packed n * COMPRESSED_LEN bytes
+     * @return the points, with null for every encoding whose x is not on the curve
+     */
+    public static E521[] decompressAll(byte[] packed) {
+        if (packed.length % COMPRESSED_LEN != 0) throw new IllegalArgumentException("Invalid packed length " + packed.length);
+        E521[] points = new E521[packed.length / COMPRESSED_LEN];
+        IntStream range = IntStream.range(0, points.length);
+        if (points.length >= 64) range = range.parallel();
+        range.forEach(i -> points[i] = decompress(packed, i * COMPRESSED_LEN));
+        return points;
+    }
+
+    /**
+     * Validate an array of points
+     * @param points the points
+     * @return for each point, whether it is non-null and lies on the curve
+     */
+    public static boolean[] validateAll(E521[] points) {
+        boolean[] valid = new boolean[points.length];
+        IntStream range = IntStream.range(0, points.length);
+        if (points.length >= 64) range = range.parallel();
+        range.forEach(i -> valid[i] = points[i] != null && points[i].isOnCurve());
+        return valid;
+    }
+
+    private static E521 decompress(byte[] input, int off) {
+        if (input.length - off < COMPRESSED_LEN) throw new IllegalArgumentException("Invalid compressed point length");
+        boolean lsb = (input[off] & 0x80) != 0;
+        byte[] xBytes = Arrays.copyOfRange(input, off, off + COMPRESSED_LEN);
+        xBytes[0] &= 0x7f;
+        BigInteger x = new BigInteger(1, xBytes);
+        if (x.compareTo(P) >= 0) return null;
+        BigInteger y = recoverY(x, lsb);
+        return y == null ? null : new E521(x, y);
+    }
+
     // --- Main Mod Functions ---
 
     /**
@@ -207,6 +298,12 @@ public class E521 {
      * @return elliptic curve point multiplied by scalar __s__, (E521 * __s__).
      */
     public E521 multiply(BigInteger s) {
+        long started = CryptoMetrics.EC_MULTIPLY.begin();
+        if (s.signum() > 0 && s.bitLength() <= GeneratorTable.BITS && this == GeneratorTable.generator()) {
+            E521 V = GeneratorTable.multiply(s); // fixed-base windows of the precomputed table
+            CryptoMetrics.EC_MULTIPLY.end(started, (s.bitLength() + 7) / 8);
+            return V;
+        }
         E521 V = new E521(this); // initialize with sk*P, which is simply P
         String binaryS = s.toString(2);
         for (int i = s.bitLength()-2; i >= 0; i--) { // scan over the k bits of s
@@ -216,6 +313,7 @@ public class E521 {
             }
         }
 
+        CryptoMetrics.EC_MULTIPLY.end(started, (s.bitLength() + 7) / 8);
         return V; // now finally V = s*P
     }
 
@@ -251,6 +349,54 @@ public class E521 {
         return (r.multiply(r).subtract(v).mod(p).signum() == 0) ? r : null;
     }
 
+    /**
+     * Recover y from x on x^2 + y^2 = 1 + d * x^2 * y^2 with the inverse square root trick:
+     * with u = 1 - x^2 and v = 1 - d * x^2, the candidate r = u * (u * v)^((p - 3) / 4)
+     * satisfies v * r^2 = u whenever u / v is a square, so the root needs no separate
+     * inversion. For p = 2^521 - 1 the exponent (p - 3) / 4 = 2^519 - 1 is all ones, which
+     * Field521.powOnes evaluates with 518 squarings and 12 multiplications on long limbs.
+     *
+     * @param x the x coordinate
+     * @param lsb desired least significant bit of y
+     * @return y, or null if x is not the x coordinate of any point
+     */
+    static BigInteger recoverY(BigInteger x, boolean lsb) {
+        BigInteger x2 = sqr(x.mod(P));
+        BigInteger u = BigInteger.ONE.subtract(x2).mod(P); // 1 - x^2
+        BigInteger v = BigInteger.ONE.subtract(D.multiply(x2)).mod(P); // 1 - d * x^2
+
+        // r <- u * (u * v)^(2^519 - 1)
+        long[] uf = Field521.fromBigInteger(u);
+        long[] t = new long[Field521.LIMBS];
+        Field521.mul(uf, Field521.fromBigInteger(v), t);
+        Field521.powOnes(t, 519, t);
+        Field521.mul(t, uf, t);
+        BigInteger r = Field521.toBigInteger(t);
+
+        // accept if, and only if, v * r^2 = u
+        if (!mul(v, sqr(r)).equals(u)) return null;
+        if (r.signum() != 0 && r.testBit(0) != lsb) {
+            r = P.subtract(r); // correct the lsb
+        }
+        return r;
+    }
+
+    /** a * b mod p for 0 <= a, b < p */
+    private static BigInteger mul(BigInteger a, BigInteger b) {
+        return reduce(a.multiply(b));
+    }
+
+    /** a^2 mod p for 0 <= a < p */
+    private static BigInteger sqr(BigInteger a) {
+        return reduce(a.multiply(a));
+    }
+
+    /** Reduce 0 <= a < p^2 modulo the Mersenne prime p: a = hi * 2^521 + lo = hi + lo (mod p) */
+    private static BigInteger reduce(BigInteger a) {
+        BigInteger r = a.shiftRight(521).add(a.and(P));
+        return r.compareTo(P) >= 0 ? r.subtract(P) : r;
+    }
+
     public static void main(String[] args) { // Testing grounds
 
         E521 P1 = new E521( 5,1);
@@ -276,6 +422,15 @@ public class E521 {
                 && P1.multiply(Scalar).getY().toString().equals("978777927561135706406857654800995606165082231641015472999709319933535556213711712126238098692979603264059415224153774141974204817859869601609457192739451618")
                 ? "True" : "False"));
 
+        /* Decompression Test */
+        E521 G = new E521(BigInteger.valueOf(4L), false);
+        E521 G3 = G.multiply(Scalar);
+        System.out.println("Decompress-Test pass: " + (
+                G.getY().equals(sqrt(BigInteger.ONE.subtract(BigInteger.valueOf(16L)).multiply(BigInteger.ONE.subtract(D.multiply(BigInteger.valueOf(16L))).modInverse(P)).mod(P), P, false))
+                && createFromCompressedBytes(G3.getCompressedBytes()).equals(G3)
+                && G3.isOnCurve() && !P1.isOnCurve()
+                ? "True" : "False"));
+
 
 //        E521 test1 = new E521(2, 2);
 //
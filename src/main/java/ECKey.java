@@ -12,9 +12,9 @@ import java.math.BigInteger;
 public class ECKey {
 
     /**
-     * Static point
+     * Static point, G = (4, y) with y even, loaded with its precomputed multiples
      */
-    public static final E521 G = new E521(BigInteger.valueOf(4L), false);
+    public static final E521 G = GeneratorTable.generator();
 
     /**
      * Public key
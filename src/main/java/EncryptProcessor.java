@@ -0,0 +1,71 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+
+/**
+ * Flow processor that encrypts a stream of ByteBuffers and emits the cryptogram
+ * incrementally: first the header (z for symmetric, Z for elliptic), then one
+ * ciphertext buffer per input buffer, and finally the 64-byte tag t.
+ * The concatenated output is byte-for-byte the cryptogram produced by
+ * Symmetric.symmetricEncrypt / CryptEC.encrypt over the concatenated input.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class EncryptProcessor extends CryptoProcessor {
+
+    /** Sponge producing KMACXOF256(ke, "", |m|, ...) */
+    private final Sponge keystream;
+
+    /** Sponge absorbing m for KMACXOF256(ka, m, 512, ...) */
+    private final Sponge mac;
+
+    private EncryptProcessor(byte[] header, Sponge[] sponges) {
+        this.keystream = sponges[0];
+        this.mac = sponges[1];
+        emitFirst(ByteBuffer.wrap(header));
+    }
+
+    /**
+     * Create a processor encrypting symmetrically under passphrase pw
+     * @param pw the passphrase
+     * @return the processor
+     */
+    public static EncryptProcessor symmetric(String pw) {
+        //z <- Random(512)
+        byte[] z = new byte[64];
+        DRBG.current().nextBytes(z);
+        return new EncryptProcessor(z, Symmetric.symmetricSponges(z, pw));
+    }
+
+    /**
+     * Create a processor encrypting under the (Schnorr/ECDHIES) public key V
+     * @param V the public key
+     * @return the processor
+     */
+    public static EncryptProcessor elliptic(E521 V) {
+        //  k <- Random(512); k <- 4k; Z <- k*G
+        EphemeralKeyPool.Ephemeral ephemeral = EphemeralKeyPool.next();
+        BigInteger k = ephemeral.k();
+        E521 Z = ephemeral.Z();
+
+        //  W <- k*V
+        E521 W = V.multiply(k);
+        return new EncryptProcessor(Z.getBytes(), CryptEC.ellipticSponges(W));
+    }
+
+    @Override
+    protected void transform(ByteBuffer item, Queue<ByteBuffer> out) {
+        ByteBuffer c = ByteBuffer.allocate(item.remaining());
+        Symmetric.xorStream(item, c, keystream, mac, false);
+        out.add(c.flip());
+    }
+
+    @Override
+    protected void complete(Queue<ByteBuffer> out) {
+        ByteBuffer t = ByteBuffer.allocate(64);
+        mac.finishKMACXOF().squeeze(t, 64);
+        out.add(t.flip());
+    }
+}
@@ -0,0 +1,194 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in pool of precomputed ephemeral pairs (k, Z = k*G) for the elliptic encryptions,
+ * so the request path only computes the recipient-dependent W = k*V.
+ *
+ *   k <- Random(512); k <- 4k; Z <- k*G
+ *
+ * Background threads fill the pool to its capacity whenever a take leaves it at or below
+ * the low-water mark. Each pair is handed out exactly once: the queue drops its reference
+ * on take, and the random bytes k was built from are zeroed right away (a BigInteger
+ * cannot be cleared in place, so k itself lives until it is collected, as it does without
+ * the pool). If the pool is empty the pair is computed on the calling thread.
+ *
+ * Encryption uses the installed pool through next(); with no pool installed, next()
+ * computes a fresh pair as before. Main and the daemon install a pool at startup when
+ * -Dcrypto.ephemeralPool=capacity,lowWater,threads is given, e.g. 256,64,1.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class EphemeralKeyPool implements AutoCloseable {
+
+    /**
+     * A single-use ephemeral scalar and its public point
+     * @param k the scalar, 4 * Random(512)
+     * @param Z k*G
+     */
+    public record Ephemeral(BigInteger k, E521 Z) { }
+
+    /** The installed pool, or null */
+    private static volatile EphemeralKeyPool installed;
+
+    private final ArrayBlockingQueue<Ephemeral> pairs;
+    private final int lowWater;
+    private final ExecutorService refill;
+    private final int threads;
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a pool and start filling it
+     * @param capacity the number of pairs kept ready
+     * @param lowWater refill when a take leaves at most this many pairs
+     * @param threads the number of background threads
+     */
+    public EphemeralKeyPool(int capacity, int lowWater, int threads) {
+        if (capacity <= 0 || lowWater < 0 || lowWater >= capacity || threads <= 0) {
+            throw new IllegalArgumentException("Invalid pool size: capacity " + capacity + ", low-water " + lowWater
+                    + ", threads " + threads);
+        }
+        this.pairs = new ArrayBlockingQueue<>(capacity);
+        this.lowWater = lowWater;
+        this.refill = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ephemeral-key-pool");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        this.threads = threads;
+        triggerRefill();
+    }
+
+    /**
+     * Install a pool for CryptEC, MultiRecipientCipher and EncryptProcessor, closing the previous one
+     * @param pool the pool, or null to compute every pair on demand again
+     */
+    public static void install(EphemeralKeyPool pool) {
+        EphemeralKeyPool old = installed;
+        installed = pool;
+        if (old != null && old != pool) old.close();
+    }
+
+    /**
+     * @return the pool configured by the crypto.ephemeralPool property, or null if unset
+     * @throws IllegalArgumentException if the property is not capacity,lowWater,threads
+     */
+    public static EphemeralKeyPool fromSystemProperties() {
+        String spec = System.getProperty("crypto.ephemeralPool");
+        if (spec == null || spec.isBlank()) return null;
+        String[] parts = spec.split(",");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Expected crypto.ephemeralPool=capacity,lowWater,threads, got " + spec);
+        }
+        try {
+            return new EphemeralKeyPool(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                    Integer.parseInt(parts[2].trim()));
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected crypto.ephemeralPool=capacity,lowWater,threads, got " + spec);
+        }
+    }
+
+    /**
+     * Install the pool configured by the crypto.ephemeralPool property, unless one is installed already
+     */
+    public static synchronized void installFromSystemProperties() {
+        if (installed == null) install(fromSystemProperties());
+    }
+
+    /**
+     * @return a fresh pair from the installed pool, or computed now if there is none
+     */
+    static Ephemeral next() {
+        EphemeralKeyPool pool = installed;
+        return pool != null ? pool.take() : generate();
+    }
+
+    /**
+     * Take a pair, computing it on the calling thread if the pool is empty
+     * @return a pair that no one else will receive
+     */
+    public Ephemeral take() {
+        Ephemeral e = pairs.poll();
+        if (e != null) hits.increment();
+        else misses.increment();
+        if (pairs.size() <= lowWater) triggerRefill();
+        return e != null ? e : generate();
+    }
+
+    /** @return the number of pairs ready */
+    public int available() {
+        return pairs.size();
+    }
+
+    /** @return the number of takes served from the pool */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** @return the number of takes that had to compute their pair */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Stop refilling and drop every unused pair
+     */
+    @Override
+    public void close() {
+        closed = true;
+        refill.shutdownNow();
+        pairs.clear();
+    }
+
+    /**
+     * Start the background threads unless they are already filling the pool
+     */
+    private void triggerRefill() {
+        if (closed || !refilling.compareAndSet(false, true)) return;
+        AtomicInteger running = new AtomicInteger(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                refill.execute(() -> {
+                    try {
+                        while (!closed && pairs.remainingCapacity() > 0) {
+                            if (!pairs.offer(generate())) break;
+                        }
+                    }
+                    finally {
+                        if (running.decrementAndGet() == 0) refilling.set(false);
+                    }
+                });
+            }
+        }
+        catch (RejectedExecutionException e) {
+            // closed concurrently
+        }
+    }
+
+    /**
+     * k <- Random(512); k <- 4k; Z <- k*G
+     */
+    private static Ephemeral generate() {
+        byte[] randBytes = new byte[65];
+        DRBG.current().nextBytes(randBytes);
+        randBytes[0] = 0;
+        BigInteger k = new BigInteger(randBytes).multiply(BigInteger.valueOf(4L));
+        Arrays.fill(randBytes, (byte) 0);
+        return new Ephemeral(k, ECKey.G.multiply(k));
+    }
+}
@@ -0,0 +1,140 @@
+import java.math.BigInteger;
+
+/**
+ * Arithmetic modulo the Mersenne prime p = 2^521 - 1 on 9 limbs of 58 bits.
+ *
+ * Each 116-bit limb product is split at bit 58 (Math.multiplyHigh supplies the upper
+ * word), and the two halves are added to adjacent columns, so a column sum stays below
+ * 2^64 and needs no carries until the end. Reduction folds the upper half onto the lower
+ * half using 2^522 = 2 (mod p). Values are kept in [0, 2^522), i.e. possibly not fully
+ * reduced; toBigInteger returns the canonical residue. Used by E521 for the long
+ * exponentiation chain of point decompression, where BigInteger would allocate two or
+ * three objects per step.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+final class Field521 {
+
+    /** Number of limbs */
+    static final int LIMBS = 9;
+
+    /** Bits per limb */
+    private static final int BITS = 58;
+
+    private static final long MASK = (1L << BITS) - 1;
+
+    private Field521() { }
+
+    /**
+     * @param a a value in [0, p)
+     * @return the limbs of a
+     */
+    static long[] fromBigInteger(BigInteger a) {
+        long[] r = new long[LIMBS];
+        for (int i = 0; i < LIMBS; i++) {
+            r[i] = a.shiftRight(BITS * i).longValue() & MASK;
+        }
+        return r;
+    }
+
+    /**
+     * @param a the limbs
+     * @return the canonical value of a in [0, p)
+     */
+    static BigInteger toBigInteger(long[] a) {
+        BigInteger r = BigInteger.ZERO;
+        for (int i = LIMBS - 1; i >= 0; i--) {
+            r = r.shiftLeft(BITS).add(BigInteger.valueOf(a[i]));
+        }
+        return r.mod(E521.P);
+    }
+
+    /**
+     * out <- a * b mod p; out may alias a or b
+     */
+    static void mul(long[] a, long[] b, long[] out) {
+        long[] c = new long[2 * LIMBS];
+        for (int i = 0; i < LIMBS; i++) {
+            long ai = a[i];
+            for (int j = 0; j < LIMBS; j++) {
+                long lo = ai * b[j];
+                long hi = Math.multiplyHigh(ai, b[j]);
+                c[i + j] += lo & MASK;
+                c[i + j + 1] += (lo >>> BITS) | (hi << (64 - BITS));
+            }
+        }
+        reduce(c, out);
+    }
+
+    /**
+     * out <- a^2 mod p; out may alias a
+     */
+    static void sqr(long[] a, long[] out) {
+        long[] c = new long[2 * LIMBS];
+        for (int i = 0; i < LIMBS; i++) {
+            long ai = a[i];
+            long lo = ai * ai;
+            long hi = Math.multiplyHigh(ai, ai);
+            c[2 * i] += lo & MASK;
+            c[2 * i + 1] += (lo >>> BITS) | (hi << (64 - BITS));
+            long ai2 = ai << 1;
+            for (int j = i + 1; j < LIMBS; j++) {
+                lo = ai2 * a[j];
+                hi = Math.multiplyHigh(ai2, a[j]);
+                c[i + j] += lo & MASK;
+                c[i + j + 1] += (lo >>> BITS) | (hi << (64 - BITS));
+            }
+        }
+        reduce(c, out);
+    }
+
+    /**
+     * out <- a^(2^k - 1) mod p, from the chains
+     * a^(2^2e - 1) = (a^(2^e - 1))^(2^e) * a^(2^e - 1) and a^(2^(e+1) - 1) = (a^(2^e - 1))^2 * a
+     */
+    static void powOnes(long[] a, int k, long[] out) {
+        long[] t = a.clone();
+        long[] s = new long[LIMBS];
+        int e = 1;
+        for (int i = 30 - Integer.numberOfLeadingZeros(k); i >= 0; i--) {
+            System.arraycopy(t, 0, s, 0, LIMBS);
+            for (int j = 0; j < e; j++) sqr(s, s);
+            mul(s, t, t);
+            e <<= 1;
+            if (((k >>> i) & 1) != 0) {
+                sqr(t, t);
+                mul(t, a, t);
+                e++;
+            }
+        }
+        System.arraycopy(t, 0, out, 0, LIMBS);
+    }
+
+    /**
+     * Reduce the 18 product columns c into 9 limbs below 2^58
+     */
+    private static void reduce(long[] c, long[] out) {
+        for (int k = 0; k < 2 * LIMBS - 1; k++) {
+            c[k + 1] += c[k] >>> BITS;
+            c[k] &= MASK;
+        }
+
+        // c_(k+9) * 2^(58(k+9)) = 2 * c_(k+9) * 2^(58k) (mod p)
+        long carry = 0;
+        for (int k = 0; k < LIMBS; k++) {
+            long t = c[k] + 2 * c[k + LIMBS] + carry;
+            out[k] = t & MASK;
+            carry = t >>> BITS;
+        }
+        while (carry != 0) {
+            carry <<= 1;
+            for (int k = 0; k < LIMBS && carry != 0; k++) {
+                long t = out[k] + carry;
+                out[k] = t & MASK;
+                carry = t >>> BITS;
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32C;
+
+/**
+ * Fixed-base table for the generator G = (4, y), y even: entry (i, j) is j * 16^i * G
+ * for 132 windows of 4 bits and 1 <= j <= 15, so s*G for 0 < s < 2^528 is the sum of
+ * one entry per nonzero window of s, about 130 additions instead of the ~770 doublings
+ * and additions of double-and-add.
+ *
+ * The table ships as the class-path resource E521G.table, written by main():
+ *
+ *   "KE5T" || version || w || windows (2 bytes) || (x || y)* (66 bytes each) || CRC32C
+ *
+ * G itself is recovered from x = 4 and does not touch the resource. The resource is read
+ * on the first multiplication and checked with the CRC and against G as its first entry;
+ * entries are then decoded one at a time as scalars reach them, and each is checked to
+ * be on the curve when it is decoded, so a cold s*G pays for the ~130 entries it uses
+ * rather than all 1980. The CRC only catches accidental damage; the resource is trusted
+ * like the classes next to it. If it is missing or damaged, or an entry is off the
+ * curve, the whole table is rebuilt in memory.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public final class GeneratorTable {
+
+    /** Class-path resource name */
+    static final String RESOURCE = "E521G.table";
+
+    /** File magic */
+    private static final byte[] MAGIC = {'K', 'E', '5', 'T'};
+
+    /** Format version */
+    private static final byte VERSION = 1;
+
+    /** Window width in bits */
+    private static final int W = 4;
+
+    /** Number of windows */
+    private static final int WINDOWS = 132;
+
+    /** Entries per window */
+    private static final int ROW = (1 << W) - 1;
+
+    /** Largest scalar bit length the table covers */
+    static final int BITS = W * WINDOWS;
+
+    /** Length of one encoded coordinate */
+    private static final int COORD_LEN = E521.COMPRESSED_LEN;
+
+    /** Length of the header in bytes */
+    private static final int HEADER_LEN = 8;
+
+    /** Length of the whole resource in bytes */
+    private static final int TABLE_LEN = HEADER_LEN + WINDOWS * ROW * 2 * COORD_LEN + 4;
+
+    /** The generator G = (4, y), y even */
+    private static final E521 G = new E521(BigInteger.valueOf(4L), false);
+
+    /** The table of the class-path resource, read on first use */
+    private static final class Holder {
+        static final GeneratorTable TABLE = new GeneratorTable(read());
+    }
+
+    /** The checked encoding, or null if it was missing or damaged */
+    private final byte[] encoded;
+
+    /** Entry (i, j) at i * ROW + j - 1, null until decoded */
+    private final AtomicReferenceArray<E521> table = new AtomicReferenceArray<>(WINDOWS * ROW);
+
+    /** Whether table has been filled by build() */
+    private boolean rebuilt;
+
+    /**
+     * @param resource an encoded table, or null; it is checked here and rebuilt on first use if it fails
+     */
+    GeneratorTable(byte[] resource) {
+        this.encoded = check(resource);
+    }
+
+    /**
+     * @return the generator G, the table's first entry
+     */
+    static E521 generator() {
+        return G;
+    }
+
+    /**
+     * @param s a scalar with 0 < s < 2^BITS
+     * @return s*G
+     */
+    static E521 multiply(BigInteger s) {
+        return Holder.TABLE.times(s);
+    }
+
+    /**
+     * @param s a scalar with 0 < s < 2^BITS
+     * @return s*G from this table
+     */
+    E521 times(BigInteger s) {
+        byte[] mag = s.toByteArray();
+        E521 V = null;
+        for (int i = 0; i < WINDOWS; i++) {
+            int b = mag.length - 1 - (i >> 1);
+            if (b < 0) break;
+            int digit = (i & 1) == 0 ? mag[b] & 0x0f : (mag[b] >> 4) & 0x0f;
+            if (digit != 0) {
+                E521 entry = entry(i * ROW + digit - 1);
+                V = V == null ? new E521(entry) : V.add(entry);
+            }
+        }
+        return V;
+    }
+
+    /**
+     * @return entry k, decoded from the resource on first use, or from the rebuilt table
+     */
+    private E521 entry(int k) {
+        E521 entry = table.get(k);
+        if (entry != null) return entry;
+        if (encoded != null) {
+            entry = decode(encoded, k);
+            if (entry != null && entry.isOnCurve()) {
+                table.set(k, entry);
+                return entry;
+            }
+        }
+        rebuild();
+        return table.get(k);
+    }
+
+    /**
+     * Replace every entry with the computed table, once
+     */
+    private synchronized void rebuild() {
+        if (rebuilt) return;
+        E521[] built = build();
+        for (int k = 0; k < built.length; k++) table.set(k, built[k]);
+        rebuilt = true;
+    }
+
+    /**
+     * @return whether the encoding was rejected, or an entry was found off the curve, and the table computed instead
+     */
+    synchronized boolean isRebuilt() {
+        return rebuilt;
+    }
+
+    /**
+     * @return the bytes of the table resource, or null if it is missing or unreadable
+     */
+    static byte[] read() {
+        try (InputStream in = GeneratorTable.class.getResourceAsStream("/" + RESOURCE)) {
+            return in == null ? null : in.readAllBytes();
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check an encoded table's length, CRC, header and first entry
+     * @return the encoding, or null if it is missing or fails its checks
+     */
+    private static byte[] check(byte[] bytes) {
+        if (bytes == null || bytes.length != TABLE_LEN) return null;
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, TABLE_LEN - 4);
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (buf.getInt(TABLE_LEN - 4) != (int) crc.getValue()) return null;
+
+        byte[] magic = new byte[MAGIC.length];
+        buf.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || buf.get() != VERSION || buf.get() != W
+                || buf.getShort() != WINDOWS) {
+            return null;
+        }
+        E521 first = decode(bytes, 0);
+        if (!first.getX().equals(G.getX()) || !first.getY().equals(G.getY())) return null;
+        return bytes;
+    }
+
+    /**
+     * @return entry k of the encoding (x || y), not yet checked
+     */
+    private static E521 decode(byte[] bytes, int k) {
+        int off = HEADER_LEN + k * 2 * COORD_LEN;
+        BigInteger x = new BigInteger(1, bytes, off, COORD_LEN);
+        BigInteger y = new BigInteger(1, bytes, off + COORD_LEN, COORD_LEN);
+        return new E521(x, y);
+    }
+
+    /**
+     * Compute the table from G = (4, y), y even, with additions only
+     */
+    private static E521[] build() {
+        E521[] table = new E521[WINDOWS * ROW];
+        E521 base = G; // 16^i * G
+        for (int i = 0; i < WINDOWS; i++) {
+            table[i * ROW] = base;
+            for (int j = 1; j < ROW; j++) {
+                table[i * ROW + j] = table[i * ROW + j - 1].add(base);
+            }
+            base = table[i * ROW + ROW - 1].add(base);
+        }
+        return table;
+    }
+
+    /**
+     * @return the encoded table
+     */
+    private static byte[] encode(E521[] table) {
+        ByteBuffer buf = ByteBuffer.allocate(TABLE_LEN);
+        buf.put(MAGIC).put(VERSION).put((byte) W).putShort((short) WINDOWS);
+        for (E521 point : table) {
+            putCoordinate(buf, point.getX());
+            putCoordinate(buf, point.getY());
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), 0, TABLE_LEN - 4);
+        buf.putInt((int) crc.getValue());
+        return buf.array();
+    }
+
+    private static void putCoordinate(ByteBuffer buf, BigInteger c) {
+        byte[] b = c.mod(E521.P).toByteArray();
+        int skip = b.length > COORD_LEN ? 1 : 0;
+        buf.position(buf.position() + COORD_LEN - (b.length - skip));
+        buf.put(b, skip, b.length - skip);
+    }
+
+    /**
+     * Regenerate the table resource
+     * @param args the output path, by default src/main/resources/E521G.table
+     * @throws IOException if writing fails
+     */
+    public static void main(String[] args) throws IOException {
+        Path out = Path.of(args.length > 0 ? args[0] : "src/main/resources/" + RESOURCE);
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        Files.write(out, encode(build()));
+        System.out.println("Wrote " + TABLE_LEN + " bytes to " + out);
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Digest algorithms for the file-hashing path, each producing a 512-bit hash.
+ * KMACXOF256 is the specified computeHash; the others trade security margin for speed
+ * (12 Keccak rounds instead of 24, and for KangarooTwelve parallel leaves on inputs
+ * over 8 KiB). Chosen with -Dcrypto.hashAlgorithm=NAME, KMACXOF256 by default.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public enum HashAlgorithm {
+
+    /** h <- KMACXOF256("", m, 512, "D") */
+    KMACXOF256 {
+        @Override
+        public byte[] hash(byte[] m) {
+            return Symmetric.computeHash(m);
+        }
+    },
+
+    /** h <- TurboSHAKE128(m, 0x1F, 64) */
+    TURBOSHAKE128 {
+        @Override
+        public byte[] hash(byte[] m) {
+            return TurboShake.turboShake128(m, TurboShake.DEFAULT_D, HASH_LEN);
+        }
+    },
+
+    /** h <- TurboSHAKE256(m, 0x1F, 64) */
+    TURBOSHAKE256 {
+        @Override
+        public byte[] hash(byte[] m) {
+            return TurboShake.turboShake256(m, TurboShake.DEFAULT_D, HASH_LEN);
+        }
+    },
+
+    /** h <- KangarooTwelve(m, "", 64) */
+    KANGAROOTWELVE {
+        @Override
+        public byte[] hash(byte[] m) {
+            return KangarooTwelve.hash(m, new byte[0], HASH_LEN);
+        }
+    };
+
+    /** Output length in bytes */
+    private static final int HASH_LEN = 64;
+
+    /**
+     * @param m the message
+     * @return the 64-byte hash of m
+     */
+    public abstract byte[] hash(byte[] m);
+
+    /**
+     * @return the algorithm named by the crypto.hashAlgorithm system property, KMACXOF256 if unset
+     * @throws IllegalArgumentException if the property names no algorithm; the message lists the valid names
+     */
+    public static HashAlgorithm fromSystemProperties() {
+        String name = System.getProperty("crypto.hashAlgorithm");
+        if (name == null || name.isBlank()) return KMACXOF256;
+        try {
+            return valueOf(name.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown hash algorithm: " + name
+                    + " (valid: " + Arrays.stream(values()).map(Enum::name).collect(Collectors.joining(", ")) + ")");
+        }
+    }
+}
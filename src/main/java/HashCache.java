@@ -0,0 +1,316 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Optional persistent cache of file digests keyed by (canonical path, size, mtime,
+ * inode, algorithm), so re-hashing an unchanged file is a metadata lookup.
+ *
+ * The cache file is a 4-byte magic followed by append-only records:
+ *
+ *   record  = length (4 bytes) || CRC32C(payload) (4 bytes) || payload
+ *   payload = path || algorithm || size || mtime || fileKey || stamp || value
+ *
+ * It is memory-mapped and scanned once on open; a later record for the same path and
+ * algorithm replaces an earlier one. A record torn by a crash fails its CRC, and it and
+ * everything after it are truncated before the next append, so the cache never returns
+ * a partially written digest. When the file holds more than twice as many records as
+ * live entries, or more than maxEntries entries, it is compacted into a new file (the
+ * least recently stored entries are evicted) which atomically replaces the old one.
+ *
+ * Each append and each compacted file is forced to the device (FileChannel.force) before
+ * store() returns, so a stored digest survives a crash of the process or the machine.
+ * The rename that installs a compacted file is atomic but its directory entry is not
+ * synced, so after a power loss the cache may come back as the previous file; that only
+ * costs a re-hash, since every record in either file is complete and checked by its CRC.
+ *
+ * Enabled by the system property crypto.hashCache=PATH; crypto.hashCache.strict=true
+ * makes every lookup miss, so files are always re-read and store() reports whether the
+ * fresh digest matches the cached one (for audits); crypto.hashCache.maxEntries bounds
+ * the number of entries (default 100000). The cache assumes a single writer process.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class HashCache {
+
+    /** File magic, "KHC" and a version byte */
+    private static final int MAGIC = 0x4b484301;
+
+    /** Record header: length and CRC32C */
+    private static final int RECORD_HEADER = 8;
+
+    /** Largest accepted record payload */
+    private static final int MAX_RECORD = 1 << 24;
+
+    /**
+     * A snapshot of a file's identity, taken before the file is read
+     * @param path the canonical path
+     * @param algorithm the digest algorithm
+     * @param size the size in bytes
+     * @param mtime the modification time in milliseconds
+     * @param fileKey the file key (device and inode), or "" if unavailable
+     */
+    public record Key(String path, String algorithm, long size, long mtime, String fileKey) {
+
+        private String id() {
+            return path + '\0' + algorithm;
+        }
+    }
+
+    private record Entry(Key key, long stamp, byte[] value) { }
+
+    private final Path file;
+    private final boolean strict;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** Number of valid records in the file, including replaced ones */
+    private long records;
+
+    /** Length of the valid prefix of the file */
+    private long validEnd;
+
+    /** Stored digests that did not match a fresh computation in strict mode */
+    private long mismatches;
+
+    /**
+     * Open or create a cache file
+     * @param file the cache file
+     * @param strict whether lookups always miss
+     * @param maxEntries the largest number of entries kept
+     * @throws IOException if the file cannot be read
+     */
+    public HashCache(Path file, boolean strict, int maxEntries) throws IOException {
+        this.file = file;
+        this.strict = strict;
+        this.maxEntries = maxEntries;
+        load();
+    }
+
+    /**
+     * @return the cache configured by the crypto.hashCache properties, or null if disabled or unreadable
+     */
+    public static HashCache fromSystemProperties() {
+        String path = System.getProperty("crypto.hashCache");
+        if (path == null || path.isBlank()) return null;
+        try {
+            return new HashCache(Path.of(path),
+                    Boolean.getBoolean("crypto.hashCache.strict"),
+                    Integer.getInteger("crypto.hashCache.maxEntries", 100_000));
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Snapshot the identity of a file; take it before reading the file, so a concurrent
+     * modification leaves a stale key rather than a wrong digest under a fresh key
+     * @param path the file
+     * @param algorithm the digest algorithm, including anything the digest depends on
+     * @return the key
+     * @throws IOException if the file cannot be read
+     */
+    public Key key(Path path, String algorithm) throws IOException {
+        Path real = path.toRealPath();
+        BasicFileAttributes attrs = Files.readAttributes(real, BasicFileAttributes.class);
+        Object fileKey = attrs.fileKey();
+        return new Key(real.toString(), algorithm, attrs.size(), attrs.lastModifiedTime().toMillis(),
+                fileKey == null ? "" : fileKey.toString());
+    }
+
+    /**
+     * @param key the key
+     * @return the cached digest, or null on a miss or in strict mode
+     */
+    public synchronized byte[] lookup(Key key) {
+        if (strict) return null;
+        Entry e = entries.get(key.id());
+        return e != null && e.key.equals(key) ? e.value.clone() : null;
+    }
+
+    /**
+     * Store a digest
+     * @param key the key taken before the file was read
+     * @param value the digest
+     * @return false if a digest cached under the same key differs from value
+     * @throws IOException if the cache file cannot be written
+     */
+    public synchronized boolean store(Key key, byte[] value) throws IOException {
+        Entry old = entries.get(key.id());
+        boolean consistent = old == null || !old.key.equals(key) || Arrays.equals(old.value, value);
+        if (!consistent) mismatches++;
+        if (old != null && old.key.equals(key) && consistent) return true;
+
+        Entry e = new Entry(key, System.currentTimeMillis(), value.clone());
+        entries.put(key.id(), e);
+        if (entries.size() > maxEntries || records + 1 > 2L * entries.size() + 1024) {
+            compact();
+        }
+        else {
+            append(e);
+        }
+        return consistent;
+    }
+
+    /** @return the number of strict-mode mismatches seen */
+    public synchronized long mismatches() {
+        return mismatches;
+    }
+
+    /** @return the number of live entries */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // ---------------------------File format
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            validEnd = 0;
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (map.remaining() < 4 || map.getInt() != MAGIC) {
+                validEnd = 0; // not a cache file (or empty): start over
+                return;
+            }
+            validEnd = 4;
+            while (map.remaining() >= RECORD_HEADER) {
+                int len = map.getInt();
+                int crc = map.getInt();
+                if (len <= 0 || len > MAX_RECORD || len > map.remaining()) break;
+                byte[] payload = new byte[len];
+                map.get(payload);
+                CRC32C c = new CRC32C();
+                c.update(payload);
+                if ((int) c.getValue() != crc) break;
+                Entry e = decode(payload);
+                if (e == null) break;
+                entries.put(e.key.id(), e);
+                records++;
+                validEnd = map.position();
+            }
+        }
+    }
+
+    private void append(Entry e) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (validEnd == 0) {
+                ch.truncate(0);
+                writeFully(ch, ByteBuffer.allocate(4).putInt(MAGIC).flip(), 0);
+                validEnd = 4;
+            }
+            ch.truncate(validEnd); // drop a torn tail
+            ByteBuffer record = encode(e);
+            int len = record.remaining();
+            writeFully(ch, record, validEnd);
+            ch.force(false);
+            validEnd += len;
+            records++;
+        }
+    }
+
+    private void compact() throws IOException {
+        List<Entry> live = new ArrayList<>(entries.values());
+        live.sort(Comparator.comparingLong(Entry::stamp).reversed());
+        if (live.size() > maxEntries) {
+            for (Entry e : live.subList(maxEntries, live.size())) entries.remove(e.key.id());
+            live = live.subList(0, maxEntries);
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long end;
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            end = 0;
+            end += writeFully(ch, ByteBuffer.allocate(4).putInt(MAGIC).flip(), end);
+            for (Entry e : live) end += writeFully(ch, encode(e), end);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        validEnd = end;
+        records = live.size();
+    }
+
+    private static ByteBuffer encode(Entry e) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, e.key.path());
+        writeString(out, e.key.algorithm());
+        out.writeLong(e.key.size());
+        out.writeLong(e.key.mtime());
+        writeString(out, e.key.fileKey());
+        out.writeLong(e.stamp);
+        out.writeInt(e.value.length);
+        out.write(e.value);
+        byte[] payload = bytes.toByteArray();
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return ByteBuffer.allocate(RECORD_HEADER + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+    }
+
+    /**
+     * @return the entry, or null if the payload is malformed
+     */
+    private static Entry decode(byte[] payload) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(payload);
+            Key key = new Key(readString(in), readString(in), in.getLong(), in.getLong(), readString(in));
+            long stamp = in.getLong();
+            int len = in.getInt();
+            if (len < 0 || len != in.remaining()) return null;
+            byte[] value = new byte[len];
+            in.get(value);
+            return new Entry(key, stamp, value);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        if (len < 0 || len > in.remaining()) throw new IllegalArgumentException("Invalid string length");
+        byte[] b = new byte[len];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static int writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        int total = buf.remaining();
+        while (buf.hasRemaining()) position += ch.write(buf, position);
+        return total;
+    }
+}
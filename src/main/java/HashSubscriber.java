@@ -0,0 +1,85 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Flow subscriber that absorbs a stream of ByteBuffers into a KMACXOF256 sponge and
+ * completes result() with the 512-bit output once the stream completes.
+ * Items are requested one at a time and absorbed in place, so memory use does not
+ * depend on the length of the stream.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class HashSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+    /** The sponge absorbing the stream */
+    private final Sponge sponge;
+
+    /** The output, completed when the stream completes */
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+    private Flow.Subscription subscription;
+
+    /**
+     * Create a subscriber computing KMACXOF256(key, stream, 512, S)
+     * @param key the key K
+     * @param divS the diversification string S
+     */
+    protected HashSubscriber(String key, String divS) {
+        this.sponge = Sponge.kmacxof256(key, divS);
+    }
+
+    /**
+     * Subscriber computing the cryptographic hash of the stream, as Symmetric.computeHash
+     * @return the subscriber
+     */
+    public static HashSubscriber hash() {
+        return new HashSubscriber("", "D");
+    }
+
+    /**
+     * Subscriber computing the authentication tag of the stream under passphrase pw,
+     * as Symmetric.computeAuthTag
+     * @param pw the passphrase
+     * @return the subscriber
+     */
+    public static HashSubscriber authTag(String pw) {
+        return new HashSubscriber(pw, "T");
+    }
+
+    /**
+     * The 64-byte output, available once the stream completes
+     * @return the future output
+     */
+    public CompletableFuture<byte[]> result() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        sponge.absorb(item);
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(sponge.finishKMACXOF().squeeze(64));
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * KangarooTwelve (KT128, RFC 9861): a tree hash over TurboSHAKE128 whose 8 KiB leaves
+ * are independent, so large inputs are hashed on all cores.
+ *
+ *   S = M || C || length_encode(|C|)
+ *   if |S| <= 8192:  K12(M, C, L) = TurboSHAKE128(S, 0x07, L)
+ *   else, with S = S_0 || S_1 || ... || S_n-1 cut into 8192-byte chunks:
+ *     CV_i = TurboSHAKE128(S_i, 0x0B, 32)
+ *     K12(M, C, L) = TurboSHAKE128(S_0 || 0x03 || 0^7 || CV_1 || ... || CV_n-1
+ *                                  || length_encode(n - 1) || 0xFF 0xFF, 0x06, L)
+ *
+ * Instances stream: update() absorbs the first chunk straight into the final node and
+ * buffers later chunks in batches of up to BATCH leaves, whose chaining values are
+ * computed in parallel and absorbed in order. Instances are not thread-safe.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class KangarooTwelve {
+
+    /** Chunk (leaf) size in bytes */
+    static final int CHUNK = 8192;
+
+    /** Length of a chaining value in bytes */
+    private static final int CV_LEN = 32;
+
+    /** Number of leaves buffered before their chaining values are computed together */
+    private static final int BATCH = 64;
+
+    /** Leaves hashed on the calling thread below this batch size */
+    private static final int PARALLEL_THRESHOLD = 4;
+
+    /** The final node: S_0, then the chaining values */
+    private final Sponge finalNode = TurboShake.newTurboShake128();
+
+    /** Bytes of S absorbed into the final node as S_0 */
+    private int firstLen;
+
+    /** Whether S is longer than one chunk */
+    private boolean tree;
+
+    /** Buffered leaf bytes beyond S_0 */
+    private final byte[] batch = new byte[BATCH * CHUNK];
+    private int batchLen;
+
+    /** Number of chaining values absorbed so far */
+    private long leaves;
+
+    private boolean finished;
+
+    /**
+     * @param m the message
+     * @param c the customization string
+     * @param len the output length in bytes
+     * @return K12(m, c, len)
+     */
+    public static byte[] hash(byte[] m, byte[] c, int len) {
+        return new KangarooTwelve().update(m).digest(c, len);
+    }
+
+    /**
+     * @param file the file
+     * @param c the customization string
+     * @param len the output length in bytes
+     * @return K12(contents of file, c, len)
+     * @throws IOException if reading fails
+     */
+    public static byte[] hash(Path file, byte[] c, int len) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return new KangarooTwelve().update(in).digest(c, len);
+        }
+    }
+
+    /**
+     * Absorb a byte array
+     * @param m the input
+     * @return this instance
+     */
+    public KangarooTwelve update(byte[] m) {
+        return update(m, 0, m.length);
+    }
+
+    /**
+     * Absorb a range of a byte array
+     * @param m the input
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     * @return this instance
+     */
+    public KangarooTwelve update(byte[] m, int off, int len) {
+        if (finished) throw new IllegalStateException("KangarooTwelve has already been finished");
+        int end = off + len;
+        if (!tree && off < end) {
+            int n = Math.min(end - off, CHUNK - firstLen);
+            finalNode.absorb(m, off, n);
+            firstLen += n;
+            off += n;
+            if (off < end) {
+                // S_0 is complete and more follows: switch to the tree
+                tree = true;
+                finalNode.absorb(new byte[] {3, 0, 0, 0, 0, 0, 0, 0});
+            }
+        }
+        while (off < end) {
+            int n = Math.min(end - off, batch.length - batchLen);
+            System.arraycopy(m, off, batch, batchLen, n);
+            batchLen += n;
+            off += n;
+            // keep the last (possibly partial) leaf buffered until more input or the end
+            if (batchLen == batch.length && off < end) flushLeaves(batchLen);
+        }
+        return this;
+    }
+
+    /**
+     * Absorb a stream to its end
+     * @param in the input stream
+     * @return this instance
+     * @throws IOException if reading fails
+     */
+    public KangarooTwelve update(InputStream in) throws IOException {
+        byte[] buf = new byte[CHUNK * 16];
+        for (int n; (n = in.read(buf)) > 0; ) update(buf, 0, n);
+        return this;
+    }
+
+    /**
+     * Finish with customization string c and squeeze the output
+     * @param c the customization string
+     * @param len the output length in bytes
+     * @return K12(input, c, len)
+     */
+    public byte[] digest(byte[] c, int len) {
+        update(c);
+        update(lengthEncode(c.length));
+        finished = true;
+        if (!tree) return finalNode.pad((byte) 0x07).squeeze(len);
+
+        flushLeaves(batchLen);
+        finalNode.absorb(lengthEncode(leaves));
+        finalNode.absorb(new byte[] {(byte) 0xFF, (byte) 0xFF});
+        return finalNode.pad((byte) 0x06).squeeze(len);
+    }
+
+    /**
+     * Compute the chaining values of the first len buffered bytes and absorb them in order
+     */
+    private void flushLeaves(int len) {
+        int n = (len + CHUNK - 1) / CHUNK;
+        byte[] cvs = new byte[n * CV_LEN];
+        IntStream range = IntStream.range(0, n);
+        if (n >= PARALLEL_THRESHOLD) range = range.parallel();
+        range.forEach(i -> {
+            int off = i * CHUNK;
+            TurboShake.newTurboShake128()
+                    .absorb(batch, off, Math.min(CHUNK, len - off))
+                    .pad((byte) 0x0B)
+                    .squeeze(cvs, i * CV_LEN, CV_LEN);
+        });
+        finalNode.absorb(cvs);
+        leaves += n;
+        batchLen = 0;
+    }
+
+    /**
+     * length_encode(x): x in big-endian bytes without leading zeros, then the byte count
+     */
+    static byte[] lengthEncode(long x) {
+        int n = 0;
+        for (long t = x; t != 0; t >>>= 8) n++;
+        byte[] out = new byte[n + 1];
+        for (int i = 0; i < n; i++) out[i] = (byte) (x >>> (8 * (n - 1 - i)));
+        out[n] = (byte) n;
+        return out;
+    }
+}
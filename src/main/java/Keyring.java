@@ -0,0 +1,383 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary keyring of public keys with O(1) lookup by key ID.
+ *
+ *   id <- KMACXOF256("", compressed(V), 128, "KID")
+ *
+ * The data file is an 8-byte header ("KRNG" || version || 3 reserved zero bytes)
+ * followed by fixed-width records id || compressed(V) (16 + 66 bytes), so record i sits
+ * at 8 + 82i and adding a key only appends. The index file (data file + ".idx") is an
+ * open-addressing hash table that is memory-mapped read-write:
+ *
+ *   "KRIX" || version || capacity (4 bytes) || count (4 bytes) || slots
+ *   slot = first 8 bytes of id || record number + 1 (4 bytes, 0 = empty)
+ *
+ * A lookup hashes the id (already uniform) to a slot, probes linearly, and confirms a
+ * matching prefix against the full id in the data record. The index is derived from the
+ * data file: it is doubled when it is half full, and rebuilt or completed on open if it
+ * is missing, damaged or behind the data file (a crash between the two writes). A torn
+ * record at the end of the data file is ignored and overwritten by the next append.
+ *
+ * Decoded points are decompressed (which checks that they lie on the curve) once and
+ * kept in memory, so repeated verifications under the same signer skip the decoding.
+ *
+ * A mapped index is at most 2 GiB, so a keyring holds at most MAX_RECORDS keys (a half
+ * full index of MAX_CAPACITY slots). Whole-file passes read the data file in chunks of
+ * CHUNK_RECORDS records.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class Keyring implements Closeable {
+
+    /** Data file magic */
+    private static final byte[] MAGIC = {'K', 'R', 'N', 'G'};
+
+    /** Index file magic */
+    private static final int INDEX_MAGIC = 0x4b524958; // "KRIX"
+
+    /** Format version of both files */
+    private static final byte VERSION = 1;
+
+    /** Length of a key ID in bytes */
+    public static final int ID_LEN = 16;
+
+    /** Length of the data file header */
+    private static final int HEADER_LEN = 8;
+
+    /** Length of a data record */
+    private static final int RECORD_LEN = ID_LEN + E521.COMPRESSED_LEN;
+
+    /** Length of the index header */
+    private static final int INDEX_HEADER_LEN = 16;
+
+    /** Length of an index slot */
+    private static final int SLOT_LEN = 12;
+
+    /** Initial number of index slots */
+    private static final int MIN_CAPACITY = 1024;
+
+    /** Largest number of index slots whose mapping stays below 2 GiB */
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    /** Largest number of keys, which keeps the index at most half full */
+    static final int MAX_RECORDS = MAX_CAPACITY / 2;
+
+    /** Records read at a time by preload and rebuildIndex */
+    private static final int CHUNK_RECORDS = 1 << 12;
+
+    private final Path indexPath;
+    private final FileChannel data;
+
+    /** Cache of decoded and validated points by key ID */
+    private final ConcurrentHashMap<ByteBuffer, E521> points = new ConcurrentHashMap<>();
+
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int capacity;
+
+    /** Number of complete records in the data file */
+    private int records;
+
+    private Keyring(Path dataPath) throws IOException {
+        this.indexPath = dataPath.resolveSibling(dataPath.getFileName() + ".idx");
+        this.data = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Open a keyring, creating it if it does not exist
+     * @param path the data file; the index is path + ".idx"
+     * @return the keyring
+     * @throws IOException if the files cannot be read or written
+     * @throws IllegalArgumentException if the data file is not a keyring
+     */
+    public static Keyring open(Path path) throws IOException {
+        Keyring ring = new Keyring(path);
+        try {
+            ring.init();
+        }
+        catch (IOException | RuntimeException e) {
+            ring.close();
+            throw e;
+        }
+        return ring;
+    }
+
+    /**
+     * @param V a public key
+     * @return id <- KMACXOF256("", compressed(V), 128, "KID")
+     */
+    public static byte[] keyId(E521 V) {
+        return Sponge.kmacxof256("", "KID").absorb(V.getCompressedBytes()).finishKMACXOF().squeeze(ID_LEN);
+    }
+
+    /**
+     * Add a public key; adding a key that is already present changes nothing
+     * @param V the public key
+     * @return its key ID
+     * @throws IOException if writing fails
+     */
+    public synchronized byte[] add(E521 V) throws IOException {
+        byte[] compressed = V.getCompressedBytes();
+        byte[] id = keyId(V);
+        if (find(id) >= 0) return id;
+        if (records == MAX_RECORDS) throw new IllegalArgumentException("Keyring is full");
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_LEN).put(id).put(compressed).flip();
+        writeFully(data, record, HEADER_LEN + (long) records * RECORD_LEN);
+        insert(id, records);
+        records++;
+        index.putInt(12, records);
+        points.put(ByteBuffer.wrap(id), E521.createFromCompressedBytes(compressed));
+        return id;
+    }
+
+    /**
+     * Look up a public key
+     * @param id the key ID
+     * @return the decoded point, or null if the keyring has no such key
+     * @throws IOException if reading fails
+     */
+    public E521 get(byte[] id) throws IOException {
+        ByteBuffer key = ByteBuffer.wrap(id.clone());
+        E521 V = points.get(key);
+        if (V != null) return V;
+        byte[] compressed;
+        synchronized (this) {
+            int r = find(id);
+            if (r < 0) return null;
+            compressed = new byte[E521.COMPRESSED_LEN];
+            readFully(data, ByteBuffer.wrap(compressed), HEADER_LEN + (long) r * RECORD_LEN + ID_LEN);
+        }
+        V = E521.createFromCompressedBytes(compressed);
+        points.putIfAbsent(key, V);
+        return V;
+    }
+
+    /**
+     * Decode every key into the cache, in parallel
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if a stored key is not on the curve
+     */
+    public synchronized void preload() throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_RECORDS * RECORD_LEN);
+        for (int first = 0; first < records; first += CHUNK_RECORDS) {
+            int n = readChunk(chunk, first);
+            byte[] packed = new byte[n * E521.COMPRESSED_LEN];
+            byte[][] ids = new byte[n][ID_LEN];
+            for (int i = 0; i < n; i++) {
+                chunk.get(ids[i]);
+                chunk.get(packed, i * E521.COMPRESSED_LEN, E521.COMPRESSED_LEN);
+            }
+            E521[] decoded = E521.decompressAll(packed);
+            for (int i = 0; i < n; i++) {
+                if (decoded[i] == null) {
+                    throw new IllegalArgumentException("Keyring entry " + (first + i) + " is not on the curve");
+                }
+                points.putIfAbsent(ByteBuffer.wrap(ids[i]), decoded[i]);
+            }
+        }
+    }
+
+    /** @return the number of keys */
+    public synchronized int size() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        index = null;
+        if (indexChannel != null) indexChannel.close();
+        data.close();
+    }
+
+    // ---------------------------Files
+
+    private void init() throws IOException {
+        long size = data.size();
+        if (size == 0) {
+            writeFully(data, ByteBuffer.wrap(header()), 0);
+        }
+        else {
+            ByteBuffer h = ByteBuffer.allocate(HEADER_LEN);
+            if (size < HEADER_LEN) throw new IllegalArgumentException("Not a keyring");
+            readFully(data, h, 0);
+            if (!Arrays.equals(h.array(), header())) throw new IllegalArgumentException("Not a keyring");
+        }
+        long count = (data.size() - HEADER_LEN) / RECORD_LEN;
+        if (count > MAX_RECORDS) throw new IllegalArgumentException("Keyring is too large");
+        records = (int) count;
+
+        int indexed = mapIndex();
+        if (indexed < 0 || indexed > records) {
+            rebuildIndex(Math.min(MAX_CAPACITY, Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, records)) << 2)));
+        }
+        else {
+            // records appended after the last index update
+            for (int r = indexed; r < records; r++) {
+                byte[] id = new byte[ID_LEN];
+                readFully(data, ByteBuffer.wrap(id), HEADER_LEN + (long) r * RECORD_LEN);
+                if (find(id) < 0) insert(id, r);
+            }
+            index.putInt(12, records);
+        }
+    }
+
+    /**
+     * Map an existing index
+     * @return the number of records it covers, or -1 if it is missing or damaged
+     */
+    private int mapIndex() throws IOException {
+        if (!Files.isRegularFile(indexPath)) return -1;
+        FileChannel ch = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean mapped = false;
+        try {
+            long size = ch.size();
+            if (size < INDEX_HEADER_LEN || size > INDEX_HEADER_LEN + (long) MAX_CAPACITY * SLOT_LEN) return -1;
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int cap = map.getInt(8);
+            if (map.getInt(0) != INDEX_MAGIC || map.getInt(4) != VERSION || cap < MIN_CAPACITY
+                    || Integer.bitCount(cap) != 1 || size != INDEX_HEADER_LEN + (long) cap * SLOT_LEN) {
+                return -1;
+            }
+            indexChannel = ch;
+            index = map;
+            capacity = cap;
+            mapped = true;
+            return map.getInt(12);
+        }
+        finally {
+            if (!mapped) ch.close();
+        }
+    }
+
+    /**
+     * Write a new index with the given capacity from the data file and map it
+     */
+    private void rebuildIndex(int newCapacity) throws IOException {
+        index = null;
+        if (indexChannel != null) indexChannel.close();
+
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0,
+                    INDEX_HEADER_LEN + (long) newCapacity * SLOT_LEN);
+            map.putInt(0, INDEX_MAGIC).putInt(4, VERSION).putInt(8, newCapacity).putInt(12, records);
+            index = map;
+            capacity = newCapacity;
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_RECORDS * RECORD_LEN);
+            byte[] id = new byte[ID_LEN];
+            for (int first = 0; first < records; first += CHUNK_RECORDS) {
+                int n = readChunk(chunk, first);
+                for (int i = 0; i < n; i++) {
+                    chunk.get(i * RECORD_LEN, id);
+                    insert(id, first + i);
+                }
+            }
+            map.force();
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        mapIndex();
+    }
+
+    /**
+     * Read up to CHUNK_RECORDS records starting at record first into chunk, flipped for reading
+     * @return the number of records read
+     */
+    private int readChunk(ByteBuffer chunk, int first) throws IOException {
+        int n = Math.min(CHUNK_RECORDS, records - first);
+        chunk.clear().limit(n * RECORD_LEN);
+        readFully(data, chunk, HEADER_LEN + (long) first * RECORD_LEN);
+        chunk.flip();
+        return n;
+    }
+
+    /**
+     * @return the record number of id, or -1
+     */
+    private int find(byte[] id) throws IOException {
+        long prefix = ByteBuffer.wrap(id).getLong();
+        byte[] stored = new byte[ID_LEN];
+        for (int slot = (int) prefix & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)) {
+            int at = INDEX_HEADER_LEN + slot * SLOT_LEN;
+            int r = index.getInt(at + 8) - 1;
+            if (r < 0) return -1;
+            if (index.getLong(at) == prefix && r < records) {
+                readFully(data, ByteBuffer.wrap(stored), HEADER_LEN + (long) r * RECORD_LEN);
+                if (Arrays.equals(stored, id)) return r;
+            }
+        }
+    }
+
+    /**
+     * Put record r under id, growing the index first if it would be more than half full
+     */
+    private void insert(byte[] id, int r) throws IOException {
+        if (2L * (r + 1) > capacity) {
+            rebuildIndex(capacity << 1); // covers every complete record, which may include r
+            if (find(id) >= 0) return;
+        }
+        long prefix = ByteBuffer.wrap(id).getLong();
+        int slot = (int) prefix & (capacity - 1);
+        while (index.getInt(INDEX_HEADER_LEN + slot * SLOT_LEN + 8) != 0) slot = (slot + 1) & (capacity - 1);
+        index.putLong(INDEX_HEADER_LEN + slot * SLOT_LEN, prefix);
+        index.putInt(INDEX_HEADER_LEN + slot * SLOT_LEN + 8, r + 1);
+    }
+
+    private static byte[] header() {
+        byte[] header = new byte[HEADER_LEN];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[MAGIC.length] = VERSION;
+        return header;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position);
+            if (n < 0) throw new IOException("Keyring shrank while reading");
+            position += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) position += ch.write(buf, position);
+    }
+
+    /**
+     * Import hex public key files (as written by option f of Main) into a keyring and
+     * print their key IDs
+     * @param args the keyring file followed by the public key files
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: Keyring KEYRING [PUBLIC_KEY_FILE...]");
+            return;
+        }
+        try (Keyring ring = Keyring.open(Path.of(args[0]))) {
+            for (int i = 1; i < args.length; i++) {
+                try (Scanner keyReader = new Scanner(Path.of(args[i]))) {
+                    E521 V = E521.createFromBytes(Symmetric.hexStringToByte(keyReader.nextLine().trim()));
+                    System.out.println(Symmetric.byteToHexString(ring.add(V)) + "  " + args[i]);
+                }
+            }
+            System.out.println(ring.size() + " keys in " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Load generator for the line-oriented commands of Main (options a, c, d, e, f, g, h, i,
+ * k and l), reported as JSON.
+ *
+ * A synthetic input file with a configurable line-length distribution is generated
+ * once; inputs for the decrypting and verifying options are prepared from it, untimed.
+ * For each option and each thread count 1, 2, 4, ..., N (and N), every worker thread
+ * runs the command end to end over its own copy of the input: read a line, run the
+ * crypto, hex-encode and write the result line, as Main does. Each line's latency is
+ * recorded, and each worker's allocation is read from the ThreadMXBean.
+ *
+ *   throughput(T) = T * lines / wall time
+ *   scaling efficiency(T) = throughput(T) / (T * throughput(1))
+ *
+ * Usage: Main --loadtest [--lines 2000] [--ec-lines 20] [--length uniform:16-256]
+ *                        [--threads N] [--ops acdefghikl] [--seed 1] [--out report.json]
+ * where --length is fixed:LEN, uniform:MIN-MAX or exp:MEAN, and --ec-lines applies to the
+ * elliptic options f through l. Options b and j are the text-input forms of a, h and i.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class LoadTest {
+
+    /** Passphrase of every synthetic run */
+    private static final String PASSPHRASE = "load-test";
+
+    /** Percentiles reported for the line latency, and their JSON names */
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    /**
+     * One Main option as a line transformation
+     */
+    private enum Command {
+        HASH('a', false, (f, line) -> Symmetric.byteToHexString(Symmetric.computeHash(line.getBytes()))),
+        SYMMETRIC_ENCRYPT('c', false, (f, line) ->
+                Symmetric.byteToHexString(Symmetric.symmetricEncrypt(PASSPHRASE, line.getBytes()))),
+        SYMMETRIC_DECRYPT('d', false, (f, line) ->
+                new String(Symmetric.symmetricDecrypt(PASSPHRASE, Symmetric.hexStringToByte(line)))),
+        MAC('e', false, (f, line) ->
+                Symmetric.byteToHexString(Symmetric.computeAuthTag(PASSPHRASE, line.getBytes()))),
+        KEY_PAIR('f', true, (f, line) ->
+                Symmetric.byteToHexString(new ECKey(line.getBytes()).getPublicKey().getBytes())),
+        PRIVATE_KEY('g', true, (f, line) ->
+                new ECKey(new ECKey(line.getBytes()).getS_Scalar()).getS_Scalar().toString(16).toUpperCase()),
+        EC_ENCRYPT('h', true, (f, line) ->
+                Symmetric.byteToHexString(CryptEC.encrypt(line.getBytes(), f.publicKey))),
+        EC_DECRYPT('i', true, (f, line) ->
+                Symmetric.byteArrayToString(CryptEC.decrypt(Symmetric.hexStringToByte(line), PASSPHRASE))),
+        SIGN('k', true, (f, line) -> {
+            BigInteger[] hz = Signature.generateSignature(line.getBytes(), PASSPHRASE);
+            return hz[0] + " " + hz[1];
+        }),
+        VERIFY('l', true, (f, line) -> {
+            // option l's decimal "h z" signature line, followed by the data line it covers
+            String[] hzm = line.split(" ", 3);
+            BigInteger[] hz = new BigInteger[]{new BigInteger(hzm[0]), new BigInteger(hzm[1])};
+            return String.valueOf(Signature.verifySignature(hz, hzm[2].getBytes(), f.publicKey));
+        });
+
+        final char option;
+        final boolean elliptic;
+        final BiFunction<Fixture, String, String> run;
+
+        Command(char option, boolean elliptic, BiFunction<Fixture, String, String> run) {
+            this.option = option;
+            this.elliptic = elliptic;
+            this.run = run;
+        }
+
+        /**
+         * @return the input line this command reads for the plaintext line
+         */
+        String prepare(Fixture f, String line) {
+            return switch (this) {
+                case SYMMETRIC_DECRYPT -> SYMMETRIC_ENCRYPT.run.apply(f, line);
+                case EC_DECRYPT -> EC_ENCRYPT.run.apply(f, line);
+                case VERIFY -> SIGN.run.apply(f, line) + " " + line;
+                default -> line;
+            };
+        }
+    }
+
+    /**
+     * Key material shared by all runs
+     */
+    private static final class Fixture {
+        final E521 publicKey = new ECKey(PASSPHRASE.getBytes()).getPublicKey();
+    }
+
+    /**
+     * Result of one worker over its copy of the input
+     */
+    private record WorkerResult(long[] latencies, long bytes, long allocated) { }
+
+    private int lines = 2000;
+    private int ecLines = 20;
+    private String length = "uniform:16-256";
+    private int maxThreads = Runtime.getRuntime().availableProcessors();
+    private String ops = "acdefghikl";
+    private long seed = 1;
+    private Path out;
+
+    /**
+     * Run the load test
+     * @param args the options described above
+     * @throws IOException if the work files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        LoadTest test = new LoadTest();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--lines" -> test.lines = Integer.parseInt(args[i + 1]);
+                case "--ec-lines" -> test.ecLines = Integer.parseInt(args[i + 1]);
+                case "--length" -> test.length = args[i + 1];
+                case "--threads" -> test.maxThreads = Integer.parseInt(args[i + 1]);
+                case "--ops" -> test.ops = args[i + 1];
+                case "--seed" -> test.seed = Long.parseLong(args[i + 1]);
+                case "--out" -> test.out = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (args.length % 2 != 0) throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+        String report = test.run();
+        if (test.out == null) System.out.println(report);
+        else Files.writeString(test.out, report);
+    }
+
+    /**
+     * @return the JSON report
+     */
+    private String run() throws IOException {
+        Path dir = Files.createTempDirectory("loadtest");
+        Fixture fixture = new Fixture();
+        List<String> plain = generateLines(Math.max(lines, ecLines));
+        List<Integer> threadCounts = threadCounts(maxThreads);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"processors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"lineLength\": \"").append(length).append("\",\n");
+        json.append("  \"seed\": ").append(seed).append(",\n");
+        json.append("  \"commands\": [");
+        String sep = "\n";
+        try {
+            for (Command command : Command.values()) {
+                if (ops.indexOf(command.option) < 0) continue;
+                int n = command.elliptic ? ecLines : lines;
+                Path input = dir.resolve("input-" + command.option + ".txt");
+                try (BufferedWriter w = Files.newBufferedWriter(input)) {
+                    for (String line : plain.subList(0, n)) {
+                        w.write(command.prepare(fixture, line));
+                        w.newLine();
+                    }
+                }
+
+                runOnce(command, fixture, input, n, dir, 1); // warm-up
+                json.append(sep).append("    {\"option\": \"").append(command.option)
+                        .append("\", \"name\": \"").append(command.name().toLowerCase(Locale.ROOT))
+                        .append("\", \"lines\": ").append(n).append(", \"runs\": [");
+                sep = ",\n";
+                double single = 0;
+                String runSep = "\n";
+                for (int threads : threadCounts) {
+                    long start = System.nanoTime();
+                    List<WorkerResult> results = runOnce(command, fixture, input, n, dir, threads);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    long[] all = results.stream().flatMapToLong(r -> Arrays.stream(r.latencies)).sorted().toArray();
+                    long bytes = results.stream().mapToLong(WorkerResult::bytes).sum();
+                    long allocated = results.stream().mapToLong(WorkerResult::allocated).sum();
+                    double throughput = all.length / seconds;
+                    if (threads == 1) single = throughput;
+
+                    json.append(runSep).append("      {\"threads\": ").append(threads)
+                            .append(", \"seconds\": ").append(num(seconds))
+                            .append(", \"linesPerSecond\": ").append(num(throughput))
+                            .append(", \"linesPerSecondPerThread\": ").append(num(throughput / threads))
+                            .append(", \"inputBytesPerSecond\": ").append(num(bytes / seconds))
+                            .append(", \"scalingEfficiency\": ").append(num(single > 0 ? throughput / (threads * single) : 0))
+                            .append(", \"latencyNanos\": {");
+                    for (int p = 0; p < PERCENTILES.length; p++) {
+                        json.append(p == 0 ? "" : ", ").append("\"").append(PERCENTILE_NAMES[p])
+                                .append("\": ").append(percentile(all, PERCENTILES[p]));
+                    }
+                    json.append(", \"max\": ").append(all.length == 0 ? 0 : all[all.length - 1]).append("}")
+                            .append(", \"allocatedBytesPerLine\": ").append(allocated < 0 ? -1 : allocated / Math.max(1, all.length))
+                            .append(", \"allocationBytesPerSecond\": ").append(allocated < 0 ? "-1" : num(allocated / seconds))
+                            .append("}");
+                    runSep = ",\n";
+                }
+                json.append("\n    ]}");
+            }
+        }
+        finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Run a command over the input file of n lines on the given number of threads at once
+     */
+    private static List<WorkerResult> runOnce(Command command, Fixture fixture, Path input, int n, Path dir,
+            int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<WorkerResult>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Path output = dir.resolve("output-" + command.option + "-" + t + ".txt");
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return work(command, fixture, input, n, output);
+                }));
+            }
+            start.countDown();
+            List<WorkerResult> results = new ArrayList<>();
+            for (Future<WorkerResult> f : futures) results.add(f.get());
+            return results;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException u) throw u.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * One worker: read, transform, encode and write every line of the input. The latencies
+     * go into an array sized for the n expected lines up front, so recording them allocates
+     * nothing inside the measured region.
+     */
+    private static WorkerResult work(Command command, Fixture fixture, Path input, int n, Path output) {
+        long[] latencies = new long[n];
+        int count = 0;
+        long before = allocatedBytes();
+        long bytes = 0;
+        try (BufferedReader r = Files.newBufferedReader(input); BufferedWriter w = Files.newBufferedWriter(output)) {
+            while (true) {
+                long t0 = System.nanoTime();
+                String line = r.readLine();
+                if (line == null) break;
+                w.write(command.run.apply(fixture, line));
+                w.newLine();
+                if (count == latencies.length) latencies = Arrays.copyOf(latencies, Math.max(16, 2 * count));
+                latencies[count++] = System.nanoTime() - t0;
+                bytes += line.length();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long after = allocatedBytes();
+        return new WorkerResult(count == latencies.length ? latencies : Arrays.copyOf(latencies, count), bytes,
+                before < 0 || after < 0 ? -1 : after - before);
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far, or -1 if unsupported
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * @return n lines of printable ASCII with lengths drawn from the --length distribution
+     */
+    private List<String> generateLines(int n) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] spec = length.split(":", 2);
+        List<String> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int len = switch (spec[0]) {
+                case "fixed" -> Integer.parseInt(spec[1]);
+                case "uniform" -> {
+                    String[] range = spec[1].split("-");
+                    yield random.nextInt(Integer.parseInt(range[0]), Integer.parseInt(range[1]) + 1);
+                }
+                case "exp" -> (int) Math.min(1 << 20, Math.round(-Integer.parseInt(spec[1]) * Math.log(1 - random.nextDouble())));
+                default -> throw new IllegalArgumentException("Unknown length distribution " + length);
+            };
+            char[] line = new char[len];
+            for (int j = 0; j < len; j++) line[j] = (char) random.nextInt(' ', '~' + 1);
+            result.add(new String(line));
+        }
+        return result;
+    }
+
+    private static List<Integer> threadCounts(int max) {
+        List<Integer> counts = new ArrayList<>();
+        for (int t = 1; t < max; t <<= 1) counts.add(t);
+        counts.add(Math.max(1, max));
+        return counts;
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(q * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static String num(double d) {
+        return String.format(Locale.ROOT, "%.3f", d);
+    }
+}
@@ -1,9 +1,12 @@
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -22,7 +25,7 @@ public class Main {
     // d -> Decrypt a given symmetric cryptogram under a given passphrase
     // e -> Compute an authentication tag (MAC) of a given file under a given passphrase [BONUS]
 
-    // Elliptic Curve Arithmetic [f-m]
+    // Elliptic Curve Arithmetic [f-o]
     // f -> Generate an elliptic key pair from a given passphrase and write the public key to a file
     // g -> Encrypt the private key under the given password and write it to a file [BONUS]
     // h -> Encrypt a data file under a given elliptic public key file
@@ -31,6 +34,8 @@ public class Main {
     // k -> Sign a given file from a given password and write the signature to a file
     // l -> Verify a given data file and its signature file under a given public key file
     // m -> Offer the possibility of encrypting a file under the recipient's public key and also signing it under the user's own private key [BONUS]
+    // n -> Sign a large file in one streaming pass and write a detached signature file
+    // o -> Verify a large file against its detached signature file under a given public key file
 
     /**
      * Scanner object for reading user input
@@ -47,11 +52,52 @@ public class Main {
      */
     private static final String outputDirectory = System.getProperty("user.dir") + "/files/output/";
 
+    /**
+     * Persistent digest cache for options a and e, enabled with -Dcrypto.hashCache=PATH; null if disabled
+     */
+    private static final HashCache hashCache = HashCache.fromSystemProperties();
+
+    /**
+     * Whether option k writes a binary SignatureFile (.sig) instead of the decimal "h z" text file,
+     * enabled with -Dcrypto.binarySignatures=true
+     */
+    private static final boolean binarySignatures = Boolean.getBoolean("crypto.binarySignatures");
+
     /**
      * Main method for the console I/O
-     * @param args String arguments
+     * @param args String arguments; "--server unix PATH" or "--server tcp PORT" starts the daemon instead,
+     *             "--loadtest [options]" runs the load generator (see LoadTest),
+     *             "--merkle FILE [options]" prints the Merkle root of a file (see MerkleHash)
      */
     public static void main(String[] args) {
+        EphemeralKeyPool.installFromSystemProperties();
+        if (args.length > 0 && args[0].equals("--loadtest")) {
+            try {
+                LoadTest.main(Arrays.copyOfRange(args, 1, args.length));
+            }
+            catch (IOException e) {
+                System.out.println("An IOException occurred " + e);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--merkle")) {
+            try {
+                MerkleHash.main(Arrays.copyOfRange(args, 1, args.length));
+            }
+            catch (IOException e) {
+                System.out.println("An IOException occurred " + e);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--server")) {
+            try {
+                CryptoServer.main(Arrays.copyOfRange(args, 1, args.length));
+            }
+            catch (IOException e) {
+                System.out.println("An IOException occurred " + e);
+            }
+            return;
+        }
         System.out.println("------------------------------------------------");
         System.out.println("    TCSS 487 - Cryptographic Utility Library");
         System.out.println("Made by: Daniel Jiang, David Shcherbina, Lam Mai");
@@ -147,7 +193,7 @@ public class Main {
      * Elliptic curve arithmetic menu
      */
     private static void ellipticMenu(String input, String choice) {
-        final String ellipticMenuRegex = "[f-mrq]";
+        final String ellipticMenuRegex = "[f-orq]";
         ellipticMenuOptions();
         input = scan.nextLine().trim();
         choice = validateInput(input, ellipticMenuRegex, "EllipticMenu");
@@ -160,6 +206,8 @@ public class Main {
             case "k" -> signFileFromPasswordToFile();
             case "l" -> verifyUnderPublicKeyFile();
             case "m" -> encryptFileUnderPublicKeyPrivateKey();
+            case "n" -> signLargeFileToDetachedSignature();
+            case "o" -> verifyLargeFileDetachedSignature();
             case "r" -> mainMenu();
             case "q" -> System.exit(0);
         }
@@ -179,6 +227,8 @@ public class Main {
         System.out.println("k -> Sign a given file from a given password and write the signature to a file");
         System.out.println("l -> Verify a given data file and its signature file under a given public key file");
         System.out.println("m -> Offer the possibility of encrypting a file under the recipient's public key and also signing it under the user's own private key [BONUS]");
+        System.out.println("n -> Sign a large file in one streaming pass and write a detached signature file");
+        System.out.println("o -> Verify a large file against its detached signature file under a given public key file");
         returnOrQuit();
     }
 
@@ -242,6 +292,8 @@ public class Main {
                 case "k" -> signFileFromPasswordToFile();
                 case "l" -> verifyUnderPublicKeyFile();
                 case "m" -> encryptFileUnderPublicKeyPrivateKey();
+                case "n" -> signLargeFileToDetachedSignature();
+                case "o" -> verifyLargeFileDetachedSignature();
             }
         }
     }
@@ -253,6 +305,18 @@ public class Main {
      */
     private static void cryptoHashFromFile() {
         System.out.println("------------------------------------------------");
+
+        // digest algorithm, chosen with -Dcrypto.hashAlgorithm=NAME; KMACXOF256 by default
+        HashAlgorithm hashAlgorithm;
+        try {
+            hashAlgorithm = HashAlgorithm.fromSystemProperties();
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            buffer("symmetric", "a");
+            return;
+        }
+
         System.out.println("Enter a file to cryptographically hash:");
         String inputFileName = scan.nextLine().trim();
 
@@ -260,15 +324,27 @@ public class Main {
 
         try {
             File file = new File(inputDirectory + inputFileName);
-            Scanner fileReader = new Scanner(file);
-            while (fileReader.hasNextLine()) {
-                String line = fileReader.nextLine();
-                byte[] m = line.getBytes();
-                byte[] hash = Symmetric.computeHash(m);
-                String output = Symmetric.byteToHexString(hash);
-                listOfHashes.add(output);
+            HashCache.Key key = cacheKey(file, "line-hash/" + hashAlgorithm + "-512");
+            List<String> cached = cachedLines(key);
+            if (cached != null) {
+                listOfHashes = cached;
+            }
+            else {
+                Scanner fileReader = new Scanner(file);
+                long started = CryptoMetrics.FILE_HASH.begin();
+                long bytes = 0;
+                while (fileReader.hasNextLine()) {
+                    String line = fileReader.nextLine();
+                    byte[] m = line.getBytes();
+                    bytes += m.length;
+                    byte[] hash = hashAlgorithm.hash(m);
+                    String output = Symmetric.byteToHexString(hash);
+                    listOfHashes.add(output);
+                }
+                CryptoMetrics.FILE_HASH.end(started, bytes);
+                fileReader.close();
+                storeLines(key, listOfHashes);
             }
-            fileReader.close();
         }
         catch (FileNotFoundException e) {
             System.out.println("File not found, try again");
@@ -316,13 +392,17 @@ public class Main {
             Scanner fileReader = new Scanner(file);
             System.out.println("Enter a passphrase:");
             String passphrase = scan.nextLine();
+            long started = CryptoMetrics.FILE_SYMMETRIC_ENCRYPT.begin();
+            long bytes = 0;
             while (fileReader.hasNextLine()) {
                 String line = fileReader.nextLine();
                 byte[] m = line.getBytes();
+                bytes += m.length;
                 byte[] hash = Symmetric.symmetricEncrypt(passphrase, m);
                 String output = Symmetric.byteToHexString(hash);
                 listOfEncryptions.add(output);
             }
+            CryptoMetrics.FILE_SYMMETRIC_ENCRYPT.end(started, bytes);
             fileReader.close();
         }
         catch (FileNotFoundException e) {
@@ -370,13 +450,17 @@ public class Main {
             Scanner fileReader = new Scanner(file);
             System.out.println("Enter a passphrase:");
             String passphrase = scan.nextLine();
+            long started = CryptoMetrics.FILE_SYMMETRIC_DECRYPT.begin();
+            long bytes = 0;
             while (fileReader.hasNextLine()) {
                 String line = fileReader.nextLine();
                 byte[] m = Symmetric.hexStringToByte(line);
+                bytes += m.length;
                 byte[] hash = Symmetric.symmetricDecrypt(passphrase, m);
                 String output = new String(hash);
                 listOfDecryptions.add(output);
             }
+            CryptoMetrics.FILE_SYMMETRIC_DECRYPT.end(started, bytes);
             fileReader.close();
         }
         catch (FileNotFoundException e) {
@@ -424,12 +508,24 @@ public class Main {
             Scanner fileReader = new Scanner(file);
             System.out.println("Enter a passphrase:");
             String passphrase = scan.nextLine();
-            while (fileReader.hasNextLine()) {
-                String line = fileReader.nextLine();
-                byte[] m = line.getBytes();
-                byte[] hash = Symmetric.computeAuthTag(passphrase, m);
-                String output = Symmetric.byteToHexString(hash);
-                listOfAuthTags.add(output);
+            HashCache.Key key = cacheKey(file, "line-mac/KMACXOF256-512/" + cacheKeyId(passphrase));
+            List<String> cached = cachedLines(key);
+            if (cached != null) {
+                listOfAuthTags = cached;
+            }
+            else {
+                long started = CryptoMetrics.FILE_MAC.begin();
+                long bytes = 0;
+                while (fileReader.hasNextLine()) {
+                    String line = fileReader.nextLine();
+                    byte[] m = line.getBytes();
+                    bytes += m.length;
+                    byte[] hash = Symmetric.computeAuthTag(passphrase, m);
+                    String output = Symmetric.byteToHexString(hash);
+                    listOfAuthTags.add(output);
+                }
+                CryptoMetrics.FILE_MAC.end(started, bytes);
+                storeLines(key, listOfAuthTags);
             }
             fileReader.close();
         }
@@ -446,6 +542,59 @@ public class Main {
         buffer("symmetric", "e");
     }
 
+    /**
+     * Snapshot a file for the hash cache before it is read
+     * @param file the file
+     * @param algorithm the digest algorithm
+     * @return the cache key, or null if the cache is disabled or the file cannot be read
+     */
+    private static HashCache.Key cacheKey(File file, String algorithm) {
+        if (hashCache == null) return null;
+        try {
+            return hashCache.key(file.toPath(), algorithm);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Identify a MAC key in the hash cache: KMACXOF256(pw, "", 128, "HCK") in hex.
+     * The id, like the cached tags themselves, lets anyone who can read the cache file
+     * test passphrase guesses offline, so keep the cache file as private as the tags.
+     */
+    private static String cacheKeyId(String pw) {
+        return Symmetric.byteToHexString(Sponge.kmacxof256(pw, "HCK").finishKMACXOF().squeeze(16));
+    }
+
+    /**
+     * @param key the cache key, or null
+     * @return the cached per-line digests, or null on a miss
+     */
+    private static List<String> cachedLines(HashCache.Key key) {
+        byte[] value = key == null ? null : hashCache.lookup(key);
+        if (value == null) return null;
+        if (value.length == 0) return new ArrayList<>();
+        return new ArrayList<>(Arrays.asList(new String(value).split("\n")));
+    }
+
+    /**
+     * Store the per-line digests of a file in the hash cache, reporting strict-mode mismatches
+     * @param key the cache key, or null
+     * @param lines the digests
+     */
+    private static void storeLines(HashCache.Key key, List<String> lines) {
+        if (key == null) return;
+        try {
+            if (!hashCache.store(key, String.join("\n", lines).getBytes())) {
+                System.out.println("Warning: the cached digest differs from the file's current digest");
+            }
+        }
+        catch (IOException e) {
+            System.out.println("An IOException occured while updating the hash cache");
+        }
+    }
+
     // ---------------------------- ELLIPTIC CURVE ARITHMETIC ----------------------------------
 
     /**
@@ -554,13 +703,17 @@ public class Main {
             }
             keyReader.close();
 
+            long started = CryptoMetrics.FILE_EC_ENCRYPT.begin();
+            long bytes = 0;
             while (fileReader.hasNextLine()) {
                 String line = fileReader.nextLine();
                 byte[] m = line.getBytes();
+                bytes += m.length;
                 byte[] encryption = CryptEC.encrypt(m, publicKey);
                 final String encryptionHex = Symmetric.byteToHexString(encryption);
                 listOfEncryptions.add(encryptionHex);
             }
+            CryptoMetrics.FILE_EC_ENCRYPT.end(started, bytes);
             fileReader.close();
         }
         catch (FileNotFoundException e) {
@@ -608,13 +761,17 @@ public class Main {
             Scanner fileReader = new Scanner(file);
             System.out.println("Enter a passphrase:");
             String passphrase = scan.nextLine();
+            long started = CryptoMetrics.FILE_EC_DECRYPT.begin();
+            long bytes = 0;
             while (fileReader.hasNextLine()) {
                 String line = fileReader.nextLine();
                 byte[] zct = Symmetric.hexStringToByte(line);
+                bytes += zct.length;
                 byte[] decryption = CryptEC.decrypt(zct, passphrase);
                 final String decryptionString = Symmetric.byteArrayToString(decryption);
                 listOfDecryptions.add(decryptionString);
             }
+            CryptoMetrics.FILE_EC_DECRYPT.end(started, bytes);
             fileReader.close();
         }
         catch (FileNotFoundException e) {
@@ -712,12 +869,16 @@ public class Main {
             Scanner fileReader = new Scanner(file);
             System.out.println("Enter a passphrase:");
             String passphrase = scan.nextLine();
+            long started = CryptoMetrics.FILE_SIGN.begin();
+            long bytes = 0;
             while (fileReader.hasNextLine()) {
                 String line = fileReader.nextLine();
                 byte[] m = line.getBytes();
+                bytes += m.length;
                 BigInteger[] signature = Signature.generateSignature(m, passphrase);
                 listOfSignatures.add(signature);
             }
+            CryptoMetrics.FILE_SIGN.end(started, bytes);
             fileReader.close();
         }
         catch (FileNotFoundException e) {
@@ -728,20 +889,26 @@ public class Main {
         System.out.println("Enter a file output name:");
         String outputFileName = scan.nextLine().trim();
 
+        String extension = binarySignatures ? ".sig" : ".txt";
         try {
-            File file = new File(outputDirectory + outputFileName + "Signature" + ".txt");
+            File file = new File(outputDirectory + outputFileName + "Signature" + extension);
             while (!file.createNewFile()) {
                 System.out.println("File name already exists");
                 System.out.println("Enter another file output name:");
                 outputFileName = scan.nextLine().trim();
-                file = new File(outputDirectory + outputFileName + "Signature" + ".txt");
+                file = new File(outputDirectory + outputFileName + "Signature" + extension);
             }
-            FileWriter writer = new FileWriter(outputDirectory + file.getName());
-            BufferedWriter bw = new BufferedWriter(writer);
-            for (BigInteger[] signature : listOfSignatures) {
-                bw.write(signature[0] + " " + signature[1] + "\n");
+            if (binarySignatures) {
+                SignatureFile.write(file.toPath(), listOfSignatures);
+            }
+            else {
+                FileWriter writer = new FileWriter(outputDirectory + file.getName());
+                BufferedWriter bw = new BufferedWriter(writer);
+                for (BigInteger[] signature : listOfSignatures) {
+                    bw.write(signature[0] + " " + signature[1] + "\n");
+                }
+                bw.close();
             }
-            bw.close();
         }
         catch (IOException e) {
             System.out.println("An IOException occured");
@@ -781,14 +948,24 @@ public class Main {
                 signatureFile = new File(inputDirectory + signatureFileName);
             }
 
-            Scanner signatureFileReader = new Scanner(signatureFile);
-            while (signatureFileReader.hasNextLine()) {
-                String signatureLine = signatureFileReader.nextLine();
-                String[] hzString = signatureLine.split(" ");
-                BigInteger h = new BigInteger(hzString[0]);
-                BigInteger z = new BigInteger(hzString[1]);
-                BigInteger[] hz = new BigInteger[]{h, z};
-                listOfSignatures.add(hz);
+            // binary signature files are mapped; older text files hold "h z" per line
+            if (SignatureFile.isSignatureFile(signatureFile.toPath())) {
+                for (SignatureValue signature : SignatureFile.map(signatureFile.toPath())) {
+                    listOfSignatures.add(signature.toArray());
+                }
+            }
+            else {
+                Scanner signatureFileReader = new Scanner(signatureFile);
+                while (signatureFileReader.hasNextLine()) {
+                    String signatureLine = signatureFileReader.nextLine();
+                    String[] hzString = signatureLine.split(" ");
+                    if (hzString.length != 2) throw new IllegalArgumentException("Malformed signature line");
+                    BigInteger h = new BigInteger(hzString[0]);
+                    BigInteger z = new BigInteger(hzString[1]);
+                    BigInteger[] hz = new BigInteger[]{h, z};
+                    listOfSignatures.add(hz);
+                }
+                signatureFileReader.close();
             }
 
             System.out.println("Enter a public key file:");
@@ -809,10 +986,13 @@ public class Main {
                 publicKey = E521.createFromBytes(publicKeyBytes);
             }
 
-            boolean isAllVerified = true;
+            long started = CryptoMetrics.FILE_VERIFY.begin();
+            long bytes = 0;
+            boolean isAllVerified = listOfSignatures.size() == listOfData.size();
 
-            for (int i = 0; i < listOfData.size(); i++) {
+            for (int i = 0; isAllVerified && i < listOfData.size(); i++) {
                 byte[] m = listOfData.get(i).getBytes();
+                bytes += m.length;
                 BigInteger[] hz = listOfSignatures.get(i);
                 boolean isVerified = Signature.verifySignature(hz, m, publicKey);
                 if (!isVerified) {
@@ -821,6 +1001,8 @@ public class Main {
                 }
             }
 
+            CryptoMetrics.FILE_VERIFY.end(started, bytes);
+
             if (isAllVerified) {
                 System.out.println("This is verified");
             }
@@ -829,13 +1011,19 @@ public class Main {
             }
 
             publicKeyFileReader.close();
-            signatureFileReader.close();
             dataFileReader.close();
         }
         catch (FileNotFoundException e) {
             System.out.println("File not found, try again");
             verifyUnderPublicKeyFile();
         }
+        catch (IOException e) {
+            System.out.println("An IOException occured");
+        }
+        catch (IllegalArgumentException e) {
+            // malformed signature (s out of range, truncated file, bad "h z" line) or public key
+            System.out.println("This is NOT verified");
+        }
 
         buffer("elliptic", "l");
     }
@@ -844,8 +1032,211 @@ public class Main {
      * m -> Offer the possibility of encrypting a file under the recipient’s public key and also signing it under the user’s own private key [BONUS] [4 pts]
      */
     private static void encryptFileUnderPublicKeyPrivateKey() {
-        System.out.println("This feature has not been implemented yet");
+        final String encryptDecryptRegex = "[ed]";
+
+        String choice;
+        do {
+            System.out.println("------------------------------------------------");
+            System.out.println("e -> Signcrypt a file under the recipient's public key and your passphrase");
+            System.out.println("d -> Unsigncrypt a file under your passphrase and the sender's public key");
+            System.out.println("------------------------------------------------");
+            System.out.print("-> ");
+            choice = scan.nextLine().trim().toLowerCase();
+            if (!choice.matches(encryptDecryptRegex)) {
+                System.out.println("Invalid option, please try again");
+            }
+        }
+        while (!choice.matches(encryptDecryptRegex));
+
+        System.out.println("------------------------------------------------");
+        System.out.println(choice.equals("e") ? "Enter a file to signcrypt:" : "Enter a file to unsigncrypt:");
+        String inputFileName = scan.nextLine().trim();
+        File inputFile = new File(inputDirectory + inputFileName);
+        while (!inputFile.exists()) {
+            System.out.println("File not found, try again");
+            System.out.println("------------------------------------------------");
+            System.out.println("Enter a file:");
+            inputFileName = scan.nextLine().trim();
+            inputFile = new File(inputDirectory + inputFileName);
+        }
+
+        System.out.println(choice.equals("e") ? "Enter the recipient's public key file:" : "Enter the sender's public key file:");
+        String publicKeyFileName = scan.nextLine().trim();
+        File publicKeyFile = new File(inputDirectory + publicKeyFileName);
+        while (!publicKeyFile.exists()) {
+            System.out.println("File not found, try again");
+            System.out.println("------------------------------------------------");
+            System.out.println("Enter a public key file:");
+            publicKeyFileName = scan.nextLine().trim();
+            publicKeyFile = new File(inputDirectory + publicKeyFileName);
+        }
+
+        System.out.println("Enter your passphrase:");
+        String passphrase = scan.nextLine();
+        System.out.println("Enter a file output name:");
+        String outputFileName = scan.nextLine().trim();
+        String suffix = choice.equals("e") ? "Signcrypt.bin" : "Unsigncrypt.txt";
+
+        try {
+            Scanner publicKeyFileReader = new Scanner(publicKeyFile);
+            E521 publicKey = E521.createFromBytes(Symmetric.hexStringToByte(publicKeyFileReader.nextLine().trim()));
+            publicKeyFileReader.close();
+
+            File file = new File(outputDirectory + outputFileName + suffix);
+            while (!file.createNewFile()) {
+                System.out.println("File name already exists");
+                System.out.println("Enter another file output name:");
+                outputFileName = scan.nextLine().trim();
+                file = new File(outputDirectory + outputFileName + suffix);
+            }
+
+            if (choice.equals("e")) { // Signcrypt
+                try (FileInputStream in = new FileInputStream(inputFile);
+                     FileOutputStream out = new FileOutputStream(file)) {
+                    CryptEC.signcrypt(in, out, passphrase, publicKey);
+                }
+                System.out.println("\nResult:");
+                System.out.println("Signcrypted file written to " + file.getName());
+            }
+            else { // Unsigncrypt
+                boolean isVerified;
+                try (FileOutputStream out = new FileOutputStream(file)) {
+                    isVerified = CryptEC.unsigncrypt(inputFile.toPath(), out, passphrase, publicKey);
+                }
+                if (isVerified) {
+                    System.out.println("This is verified");
+                    System.out.println("Decrypted file written to " + file.getName());
+                }
+                else {
+                    file.delete();
+                    System.out.println("This is NOT verified");
+                }
+            }
+        }
+        catch (IOException e) {
+            System.out.println("An IOException occured");
+        }
 
         buffer("elliptic", "m");
     }
+
+    /**
+     * n -> Sign a large file in one streaming pass and write a detached signature file
+     */
+    private static void signLargeFileToDetachedSignature() {
+        System.out.println("------------------------------------------------");
+        System.out.println("Enter a file to sign:");
+        String inputFileName = scan.nextLine().trim();
+        File inputFile = new File(inputDirectory + inputFileName);
+        while (!inputFile.exists()) {
+            System.out.println("File not found, try again");
+            System.out.println("------------------------------------------------");
+            System.out.println("Enter a file to sign:");
+            inputFileName = scan.nextLine().trim();
+            inputFile = new File(inputDirectory + inputFileName);
+        }
+
+        System.out.println("Enter a passphrase:");
+        String passphrase = scan.nextLine();
+        System.out.println("Enter a file output name:");
+        String outputFileName = scan.nextLine().trim();
+
+        try {
+            File file = new File(outputDirectory + outputFileName + "DetachedSignature" + ".sig");
+            while (!file.createNewFile()) {
+                System.out.println("File name already exists");
+                System.out.println("Enter another file output name:");
+                outputFileName = scan.nextLine().trim();
+                file = new File(outputDirectory + outputFileName + "DetachedSignature" + ".sig");
+            }
+
+            long started = CryptoMetrics.FILE_SIGN.begin();
+            BigInteger[] signature;
+            try (FileInputStream in = new FileInputStream(inputFile)) {
+                signature = Signature.generatePrehashSignature(in, passphrase);
+            }
+            CryptoMetrics.FILE_SIGN.end(started, inputFile.length());
+
+            Files.write(file.toPath(), SignatureValue.of(signature).encode());
+            System.out.println("\nResult:");
+            System.out.println("Detached signature written to " + file.getName());
+        }
+        catch (IOException e) {
+            System.out.println("An IOException occured");
+        }
+
+        buffer("elliptic", "n");
+    }
+
+    /**
+     * o -> Verify a large file against its detached signature file under a given public key file
+     */
+    private static void verifyLargeFileDetachedSignature() {
+        System.out.println("------------------------------------------------");
+        System.out.println("Enter a data file:");
+        String dataFileName = scan.nextLine().trim();
+        File dataFile = new File(inputDirectory + dataFileName);
+        while (!dataFile.exists()) {
+            System.out.println("File not found, try again");
+            System.out.println("------------------------------------------------");
+            System.out.println("Enter a data file:");
+            dataFileName = scan.nextLine().trim();
+            dataFile = new File(inputDirectory + dataFileName);
+        }
+
+        System.out.println("Enter a detached signature file:");
+        String signatureFileName = scan.nextLine().trim();
+        File signatureFile = new File(inputDirectory + signatureFileName);
+        while (!signatureFile.exists()) {
+            System.out.println("File not found, try again");
+            System.out.println("------------------------------------------------");
+            System.out.println("Enter a detached signature file:");
+            signatureFileName = scan.nextLine().trim();
+            signatureFile = new File(inputDirectory + signatureFileName);
+        }
+
+        System.out.println("Enter a public key file:");
+        String publicKeyFileName = scan.nextLine().trim();
+        File publicKeyFile = new File(inputDirectory + publicKeyFileName);
+        while (!publicKeyFile.exists()) {
+            System.out.println("File not found, try again");
+            System.out.println("------------------------------------------------");
+            System.out.println("Enter a public key file:");
+            publicKeyFileName = scan.nextLine().trim();
+            publicKeyFile = new File(inputDirectory + publicKeyFileName);
+        }
+
+        try {
+            // exactly one SignatureValue encoding; anything else is not a signature of this format
+            byte[] signatureBytes = Files.readAllBytes(signatureFile.toPath());
+            if (signatureBytes.length != SignatureValue.ENCODED_LEN) throw new IllegalArgumentException("Malformed signature");
+            BigInteger[] hz = SignatureValue.decode(signatureBytes, 0).toArray();
+
+            Scanner publicKeyFileReader = new Scanner(publicKeyFile);
+            E521 publicKey = E521.createFromBytes(Symmetric.hexStringToByte(publicKeyFileReader.nextLine().trim()));
+            publicKeyFileReader.close();
+
+            long started = CryptoMetrics.FILE_VERIFY.begin();
+            boolean isVerified;
+            try (FileInputStream in = new FileInputStream(dataFile)) {
+                isVerified = Signature.verifyPrehashSignature(hz, in, publicKey);
+            }
+            CryptoMetrics.FILE_VERIFY.end(started, dataFile.length());
+
+            if (isVerified) {
+                System.out.println("This is verified");
+            }
+            else {
+                System.out.println("This is NOT verified");
+            }
+        }
+        catch (IOException e) {
+            System.out.println("An IOException occured");
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("This is NOT verified");
+        }
+
+        buffer("elliptic", "o");
+    }
 }
@@ -0,0 +1,320 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Merkle-tree hash of a file with fixed-size leaves and a persistent sidecar index.
+ * Re-hashing a modified file still reads and checksums every block, but only runs the
+ * sponge over blocks that changed or were appended.
+ *
+ *   d_i  <- KMACXOF256("", i || block_i, 512, "ML")        (i as 8 bytes)
+ *   node <- KMACXOF256("", left || right, 512, "MN")        (an odd last node moves up)
+ *   root <- KMACXOF256("", |file| || top, 512, "MR")        (|file| as 8 bytes)
+ *
+ * The sidecar stores the file size and modification time, and per leaf a CRC32C of the
+ * block and its digest, followed by every interior level. On a re-hash:
+ *   - if size and modification time are unchanged, the stored root is returned;
+ *   - otherwise every block is read and checksummed (CRC32C runs far faster than the
+ *     sponge), only blocks whose CRC or length changed are re-hashed, and only the
+ *     interior nodes above them are recomputed.
+ * No block is skipped without being read, not even for append-only growth: the prefix is
+ * only known to be unchanged once its CRCs match.
+ *
+ * The first case trusts the file system: it assumes that every write changes the size or
+ * the modification time. An edit that keeps the size can go unnoticed, and the stale
+ * root is returned, in these cases:
+ *   - the modification time is restored (touch -r, rsync -t, archive extraction);
+ *   - two writes fall within the timestamp resolution of the file system.
+ * Delete the sidecar, or call hash(file, leafSize), to force a full pass.
+ *
+ * The CRC detects accidental edits, not deliberate collisions; use hash(file, leafSize)
+ * with no sidecar for an adversarial setting. Leaves are hashed in parallel.
+ *
+ * Usage: Main --merkle FILE [--leaf-size 1048576] [--no-index]
+ * prints the root in hex; the sidecar is FILE.mkl unless --no-index forces a full pass.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class MerkleHash {
+
+    /** Sidecar magic */
+    private static final int MAGIC = 0x4b4d4b4c; // "KMKL"
+
+    /** Sidecar format version */
+    private static final int VERSION = 1;
+
+    /** Default leaf size: 1 MiB */
+    public static final int DEFAULT_LEAF_SIZE = 1 << 20;
+
+    /** Length of a digest in bytes */
+    private static final int DIGEST_LEN = 64;
+
+    /** Leaf size in bytes */
+    private final int leafSize;
+
+    /** The file size and modification time the tree was built for */
+    private long size;
+    private long mtime;
+
+    /** Per-leaf CRC32C of the block */
+    private int[] crcs;
+
+    /** levels.get(0) are the leaf digests, the last level holds the single top node */
+    private List<byte[][]> levels;
+
+    private MerkleHash(int leafSize) {
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * Compute the Merkle root of a file from scratch, without a sidecar
+     * @param file the file
+     * @param leafSize the leaf size in bytes
+     * @return the 64-byte root
+     * @throws IOException if reading fails
+     */
+    public static byte[] hash(Path file, int leafSize) throws IOException {
+        MerkleHash tree = new MerkleHash(leafSize);
+        tree.update(file, null);
+        return tree.root();
+    }
+
+    /**
+     * Compute the Merkle root of a file, reusing and refreshing a sidecar index. If the size
+     * and modification time match the sidecar, its root is returned without reading the
+     * file (see the class comment for when that can be stale).
+     * @param file the file
+     * @param index the sidecar index, created if missing or unreadable
+     * @param leafSize the leaf size in bytes; a sidecar with another leaf size is rebuilt
+     * @return the 64-byte root
+     * @throws IOException if reading the file or writing the sidecar fails
+     */
+    public static byte[] hash(Path file, Path index, int leafSize) throws IOException {
+        MerkleHash old = load(index, leafSize);
+        long size = Files.size(file);
+        long mtime = Files.getLastModifiedTime(file).toMillis();
+        if (old != null && old.size == size && old.mtime == mtime) return old.root();
+
+        MerkleHash tree = new MerkleHash(leafSize);
+        tree.update(file, old);
+        tree.store(index);
+        return tree.root();
+    }
+
+    /**
+     * @param file the file
+     * @return the default sidecar path, file name + ".mkl" next to the file
+     */
+    public static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + ".mkl");
+    }
+
+    /**
+     * Print the Merkle root of a file
+     * @param args the file, then the options described above
+     * @throws IOException if reading the file or writing the sidecar fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) throw new IllegalArgumentException("Usage: --merkle FILE [--leaf-size N] [--no-index]");
+        Path file = Path.of(args[0]);
+        int leafSize = DEFAULT_LEAF_SIZE;
+        boolean useIndex = true;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--leaf-size" -> {
+                    if (++i == args.length) throw new IllegalArgumentException("Missing value for --leaf-size");
+                    leafSize = Integer.parseInt(args[i]);
+                    if (leafSize <= 0) throw new IllegalArgumentException("Invalid leaf size: " + leafSize);
+                }
+                case "--no-index" -> useIndex = false;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        byte[] root = useIndex ? hash(file, sidecar(file), leafSize) : hash(file, leafSize);
+        System.out.println(Symmetric.byteToHexString(root));
+    }
+
+    /**
+     * Build this tree for file, reusing the leaves and nodes of old that are unchanged
+     */
+    private void update(Path file, MerkleHash old) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = ch.size();
+            mtime = Files.getLastModifiedTime(file).toMillis();
+            long count = Math.max(1, (size + leafSize - 1) / leafSize);
+            if (count > Integer.MAX_VALUE) throw new IllegalArgumentException("File has too many leaves");
+            int n = (int) count;
+
+            crcs = new int[n];
+            byte[][] leaves = new byte[n][];
+            boolean[] leafDirty = new boolean[n];
+            IntStream.range(0, n).parallel().forEach(i -> {
+                int len = (int) Math.min(leafSize, size - (long) i * leafSize);
+                byte[] block = new byte[len];
+                try {
+                    readFully(ch, ByteBuffer.wrap(block), (long) i * leafSize);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(block);
+                crcs[i] = (int) crc.getValue();
+
+                // reuse the digest if the block has the same length and checksum as before
+                if (old != null && i < old.crcs.length && old.crcs[i] == crcs[i] && old.leafLength(i) == len) {
+                    leaves[i] = old.levels.get(0)[i];
+                }
+                else {
+                    leaves[i] = leafDigest(i, block);
+                    leafDirty[i] = true;
+                }
+            });
+
+            levels = new ArrayList<>();
+            levels.add(leaves);
+            byte[][] level = leaves;
+            boolean[] dirty = leafDirty;
+            for (int h = 1; level.length > 1; h++) {
+                byte[][] oldLevel = old != null && h < old.levels.size() ? old.levels.get(h) : null;
+                byte[][] parents = new byte[(level.length + 1) / 2][];
+                boolean[] parentDirty = new boolean[parents.length];
+                for (int j = 0; j < parents.length; j++) {
+                    boolean lone = 2 * j + 1 == level.length;
+                    parentDirty[j] = dirty[2 * j] || (!lone && dirty[2 * j + 1])
+                            || oldLevel == null || j >= oldLevel.length
+                            || (lone != (2 * j + 1 == old.levels.get(h - 1).length));
+                    if (!parentDirty[j]) parents[j] = oldLevel[j];
+                    else if (lone) parents[j] = level[2 * j];
+                    else parents[j] = nodeDigest(level[2 * j], level[2 * j + 1]);
+                }
+                levels.add(parents);
+                level = parents;
+                dirty = parentDirty;
+            }
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return root <- KMACXOF256("", |file| || top, 512, "MR")
+     */
+    private byte[] root() {
+        byte[][] top = levels.get(levels.size() - 1);
+        return Sponge.kmacxof256("", "MR")
+                .absorb(ByteBuffer.allocate(8).putLong(size).array())
+                .absorb(top[0])
+                .finishKMACXOF()
+                .squeeze(DIGEST_LEN);
+    }
+
+    private int leafLength(int i) {
+        return (int) Math.min(leafSize, size - (long) i * leafSize);
+    }
+
+    private static byte[] leafDigest(long i, byte[] block) {
+        long started = CryptoMetrics.MERKLE_LEAF.begin();
+        byte[] d = Sponge.kmacxof256("", "ML")
+                .absorb(ByteBuffer.allocate(8).putLong(i).array())
+                .absorb(block)
+                .finishKMACXOF()
+                .squeeze(DIGEST_LEN);
+        CryptoMetrics.MERKLE_LEAF.end(started, block.length);
+        return d;
+    }
+
+    private static byte[] nodeDigest(byte[] left, byte[] right) {
+        return Sponge.kmacxof256("", "MN").absorb(left).absorb(right).finishKMACXOF().squeeze(DIGEST_LEN);
+    }
+
+    // ---------------------------Sidecar
+
+    /**
+     * Sidecar layout: MAGIC, VERSION, leafSize, size, mtime, n, n * (crc || digest),
+     * then every interior level from the bottom up as its length followed by its digests.
+     */
+    private void store(Path index) throws IOException {
+        Path tmp = index.resolveSibling(index.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(leafSize);
+            out.writeLong(size);
+            out.writeLong(mtime);
+            byte[][] leaves = levels.get(0);
+            out.writeInt(leaves.length);
+            for (int i = 0; i < leaves.length; i++) {
+                out.writeInt(crcs[i]);
+                out.write(leaves[i]);
+            }
+            for (int h = 1; h < levels.size(); h++) {
+                out.writeInt(levels.get(h).length);
+                for (byte[] node : levels.get(h)) out.write(node);
+            }
+        }
+        Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the stored tree, or null if the sidecar is missing, unreadable or for another leaf size
+     */
+    private static MerkleHash load(Path index, int leafSize) {
+        if (!Files.isRegularFile(index)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != leafSize) return null;
+            MerkleHash tree = new MerkleHash(leafSize);
+            tree.size = in.readLong();
+            tree.mtime = in.readLong();
+            int n = in.readInt();
+            if (n <= 0 || n != Math.max(1, (tree.size + leafSize - 1) / leafSize)) return null;
+            tree.crcs = new int[n];
+            byte[][] leaves = new byte[n][];
+            for (int i = 0; i < n; i++) {
+                tree.crcs[i] = in.readInt();
+                leaves[i] = in.readNBytes(DIGEST_LEN);
+            }
+            tree.levels = new ArrayList<>();
+            tree.levels.add(leaves);
+            for (int len = n; len > 1; ) {
+                int stored = in.readInt();
+                if (stored != (len + 1) / 2) return null;
+                byte[][] level = new byte[stored][];
+                for (int j = 0; j < stored; j++) level[j] = in.readNBytes(DIGEST_LEN);
+                tree.levels.add(level);
+                len = stored;
+            }
+            for (byte[][] level : tree.levels) {
+                for (byte[] node : level) if (node.length != DIGEST_LEN) return null;
+            }
+            return tree;
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position);
+            if (n < 0) throw new IOException("File shrank while hashing");
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Multi-recipient ECIES envelope: the payload is encrypted once under a random content
+ * key K, and K is wrapped for each recipient with one shared ephemeral point Z = k*G.
+ *
+ *   K <- Random(512); k <- Random(512); k <- 4k; Z <- k*G
+ *   for each recipient V_i:
+ *     W_i <- k*V_i
+ *     id_i <- KMACXOF256(W_i_x, "", 128, "MID")
+ *     w_i <- KMACXOF256(W_i_x, "", 512, "MW") xor K
+ *   (ke || ka) <- KMACXOF256(K, "", 1024, "M")
+ *   c <- KMACXOF256(ke, "", |m|, "MKE") xor m
+ *   t <- KMACXOF256(ka, header || c, 512, "MKA")
+ *
+ *   header   = MODE_MULTI || Z || n (2 bytes) || (id_0 || w_0) || ... || (id_n-1 || w_n-1)
+ *   envelope = header || c || t
+ *
+ * Encryption costs one pass over m plus n + 1 scalar multiplications. A recipient
+ * computes W = s*Z once and finds its entry by id, which is derived from W so the index
+ * does not reveal the recipients' public keys.
+ *
+ * The envelope is not authenticated to its sender. The tag t is keyed from K, which every
+ * recipient learns, so any recipient can replace c, re-wrap K (or a new key) for the others
+ * and recompute t, and the others accept the forged envelope. Decryption only proves that
+ * the envelope was made by someone who knows K; where the sender matters, sign the envelope
+ * (Signature.generateSignature) or use CryptEC.signcrypt per recipient.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class MultiRecipientCipher {
+
+    /** Mode byte of the envelope */
+    public static final byte MODE_MULTI = 0x12;
+
+    /** Length of a recipient id in bytes */
+    private static final int ID_LEN = 16;
+
+    /** Length of a wrapped content key in bytes */
+    private static final int KEY_LEN = 64;
+
+    /** Length of an index entry in bytes */
+    private static final int ENTRY_LEN = ID_LEN + KEY_LEN;
+
+    /** Length of the encoded point Z in bytes */
+    private static final int Z_LEN = E521.P.toByteArray().length * 2;
+
+    /** Largest number of recipients */
+    public static final int MAX_RECIPIENTS = 0xffff;
+
+    /**
+     * Encrypting a byte array m once for every public key in recipients
+     * @param m the input message
+     * @param recipients the recipients' public keys
+     * @return the envelope
+     */
+    public static byte[] encrypt(byte[] m, E521... recipients) {
+        if (recipients.length == 0 || recipients.length > MAX_RECIPIENTS) {
+            throw new IllegalArgumentException("Invalid number of recipients: " + recipients.length);
+        }
+        long started = CryptoMetrics.EC_ENCRYPT.begin();
+        int n = recipients.length;
+        int headerLen = 1 + Z_LEN + 2 + n * ENTRY_LEN;
+        byte[] out = new byte[headerLen + m.length + 64];
+        ByteBuffer header = ByteBuffer.wrap(out, 0, headerLen);
+
+        // K <- Random(512); k <- Random(512); k <- 4k
+        byte[] contentKey = new byte[KEY_LEN];
+        DRBG.current().nextBytes(contentKey);
+        EphemeralKeyPool.Ephemeral ephemeral = EphemeralKeyPool.next();
+        BigInteger k = ephemeral.k();
+
+        // Z <- k*G
+        header.put(MODE_MULTI).put(ephemeral.Z().getBytes()).putShort((short) n);
+
+        // W_i <- k*V_i; id_i and w_i from W_i_x
+        IntStream range = IntStream.range(0, n);
+        if (n >= 4) range = range.parallel();
+        range.forEach(i -> {
+            byte[] wx = recipients[i].multiply(k).getX().toByteArray();
+            int off = 1 + Z_LEN + 2 + i * ENTRY_LEN;
+            Sponge.kmacxof256(wx, "MID").finishKMACXOF().squeeze(out, off, ID_LEN);
+            Sponge.kmacxof256(wx, "MW").finishKMACXOF().squeezeXor(contentKey, 0, out, off + ID_LEN, KEY_LEN);
+        });
+
+        // c <- KMACXOF256(ke, "", |m|, "MKE") xor m
+        Sponge[] sponges = contentSponges(contentKey);
+        Arrays.fill(contentKey, (byte) 0);
+        sponges[0].squeezeXor(m, 0, out, headerLen, m.length);
+
+        // t <- KMACXOF256(ka, header || c, 512, "MKA")
+        sponges[1].absorb(out, 0, headerLen + m.length).finishKMACXOF().squeeze(out, headerLen + m.length, 64);
+
+        CryptoMetrics.EC_ENCRYPT.end(started, m.length);
+        return out;
+    }
+
+    /**
+     * Decrypting an envelope under passphrase pw
+     * @param envelope the envelope
+     * @param pw the passphrase
+     * @return the message, or empty if the envelope is malformed, Z is not on the curve,
+     *         it has no entry for pw, or fails authentication
+     */
+    public static Optional<byte[]> decrypt(byte[] envelope, String pw) {
+        if (envelope.length < 1 + Z_LEN + 2 + 64 || envelope[0] != MODE_MULTI) return Optional.empty();
+        int n = ByteBuffer.wrap(envelope, 1 + Z_LEN, 2).getShort() & 0xffff;
+        int headerLen = 1 + Z_LEN + 2 + n * ENTRY_LEN;
+        if (envelope.length < headerLen + 64) return Optional.empty();
+        long started = CryptoMetrics.EC_DECRYPT.begin();
+        int cLen = envelope.length - headerLen - 64;
+
+        // reject Z off the curve before multiplying by the private scalar
+        E521 Z = E521.createFromBytes(Arrays.copyOfRange(envelope, 1, 1 + Z_LEN));
+        if (!Z.isOnCurve()) {
+            CryptoMetrics.EC_DECRYPT.end(started, envelope.length);
+            return Optional.empty();
+        }
+
+        // s <- KMACXOF256(pw, "", 512, "K"); s <- 4s; W <- s*Z
+        E521 W = CryptEC.sharedPoint(Z, pw);
+        byte[] wx = W.getX().toByteArray();
+
+        // find the entry with id = KMACXOF256(W_x, "", 128, "MID")
+        byte[] id = Sponge.kmacxof256(wx, "MID").finishKMACXOF().squeeze(ID_LEN);
+        int entry = -1;
+        for (int i = 0; i < n && entry < 0; i++) {
+            int off = 1 + Z_LEN + 2 + i * ENTRY_LEN;
+            if (Arrays.equals(envelope, off, off + ID_LEN, id, 0, ID_LEN)) entry = off + ID_LEN;
+        }
+
+        byte[] m = null;
+        if (entry >= 0) {
+            // K <- KMACXOF256(W_x, "", 512, "MW") xor w
+            byte[] contentKey = new byte[KEY_LEN];
+            Sponge.kmacxof256(wx, "MW").finishKMACXOF().squeezeXor(envelope, entry, contentKey, 0, KEY_LEN);
+            Sponge[] sponges = contentSponges(contentKey);
+            Arrays.fill(contentKey, (byte) 0);
+
+            // accept if, and only if, KMACXOF256(ka, header || c, 512, "MKA") = t
+            byte[] tPrime = sponges[1].absorb(envelope, 0, headerLen + cLen).finishKMACXOF().squeeze(64);
+            if (MessageDigest.isEqual(tPrime, Arrays.copyOfRange(envelope, headerLen + cLen, envelope.length))) {
+                // m <- KMACXOF256(ke, "", |c|, "MKE") xor c
+                m = new byte[cLen];
+                sponges[0].squeezeXor(envelope, headerLen, m, 0, cLen);
+            }
+        }
+        CryptoMetrics.EC_DECRYPT.end(started, envelope.length);
+        return Optional.ofNullable(m);
+    }
+
+    /**
+     * @param envelope the envelope
+     * @return the number of recipients in its index
+     */
+    public static int recipientCount(byte[] envelope) {
+        if (envelope.length < 1 + Z_LEN + 2 || envelope[0] != MODE_MULTI) {
+            throw new IllegalArgumentException("Not a multi-recipient envelope");
+        }
+        return ByteBuffer.wrap(envelope, 1 + Z_LEN, 2).getShort() & 0xffff;
+    }
+
+    /**
+     * Derive (ke || ka) <- KMACXOF256(K, "", 1024, "M")
+     * @return the keystream sponge (squeezing) and the tag sponge (absorbing)
+     */
+    private static Sponge[] contentSponges(byte[] contentKey) {
+        byte[] keyGen = Sponge.kmacxof256(contentKey, "M").finishKMACXOF().squeeze(128);
+        return new Sponge[] {
+                Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 0, 64), "MKE").finishKMACXOF(),
+                Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 64, 128), "MKA")
+        };
+    }
+}
@@ -0,0 +1,418 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+
+/**
+ * Seekable chunked symmetric encryption built on KMACXOF256.
+ *
+ * The message is split into fixed-size segments that are encrypted and authenticated
+ * independently, so any byte range can be decrypted by reading only the segments that
+ * cover it. Format:
+ *
+ *   header = "KSEG" || version || segmentSize (4 bytes) || z (64 bytes)
+ *   file   = header || c_0 || t_0 || c_1 || t_1 || ... || c_n-1 || t_n-1
+ *
+ * Every segment but the last holds exactly segmentSize bytes of ciphertext, so segment i
+ * starts at HEADER_LEN + i * (segmentSize + TAG_LEN) and the plaintext length follows
+ * from the file size; no stored index is needed.
+ *
+ *   (ke || ka) <- KMACXOF256(z || pw, "", 1024, "SEG")
+ *   c_i <- KMACXOF256(ke, i, |m_i|, "SEGE") xor m_i
+ *   t_i <- KMACXOF256(ka, header || i || final_i || c_i, 512, "SEGA")
+ *
+ * where i is an 8-byte big-endian index and final_i is 1 for the last segment and 0
+ * otherwise. Binding the header, index and final flag into each tag rejects reordered,
+ * spliced or truncated segments. A truncated file is only detected once its (new) last
+ * segment is read.
+ *
+ * Since segments are independent, the parallel variants encrypt and decrypt the segments
+ * of one payload concurrently on the common fork-join pool; they produce and accept the
+ * same format, so throughput scales with the number of cores.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class SegmentedCipher {
+
+    /** File magic */
+    private static final byte[] MAGIC = {'K', 'S', 'E', 'G'};
+
+    /** Format version */
+    private static final byte VERSION = 1;
+
+    /** Length of the header in bytes */
+    static final int HEADER_LEN = MAGIC.length + 1 + 4 + 64;
+
+    /** Length of a segment tag in bytes */
+    static final int TAG_LEN = 64;
+
+    /** Default segment size: 64 KiB */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 16;
+
+    /** Largest accepted segment size, bounding the buffers a forged header can request */
+    private static final int MAX_SEGMENT_SIZE = 1 << 24;
+
+    /** The encoded header */
+    private final byte[] header;
+
+    /** Plaintext bytes per segment */
+    private final int segmentSize;
+
+    /** Sponge that has absorbed the prefix of KMACXOF256(ke, ., ., "SEGE") */
+    private final Sponge keyPrefix;
+
+    /** Sponge that has absorbed the prefix of KMACXOF256(ka, ., ., "SEGA") */
+    private final Sponge tagPrefix;
+
+    private SegmentedCipher(byte[] header, String pw) {
+        if (header.length != HEADER_LEN
+                || !Arrays.equals(header, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new IllegalArgumentException("Not a segmented cryptogram");
+        }
+        if (header[MAGIC.length] != VERSION) {
+            throw new IllegalArgumentException("Unsupported segmented cryptogram version " + header[MAGIC.length]);
+        }
+        int size = ByteBuffer.wrap(header, MAGIC.length + 1, 4).getInt();
+        if (size <= 0 || size > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Invalid segment size " + size);
+        }
+        this.header = header.clone();
+        this.segmentSize = size;
+
+        // (ke || ka) <- KMACXOF256(z || pw, "", 1024, "SEG")
+        byte[] z = Arrays.copyOfRange(header, HEADER_LEN - 64, HEADER_LEN);
+        byte[] keyGen = Sponge.kmacxof256(Symmetric.byteConcat(z, pw.getBytes()), "SEG").finishKMACXOF().squeeze(128);
+        keyPrefix = Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 0, 64), "SEGE");
+        tagPrefix = Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 64, 128), "SEGA");
+    }
+
+    /**
+     * Create a cipher with a fresh random nonce z
+     * @param pw the passphrase
+     * @param segmentSize the plaintext bytes per segment
+     * @return the cipher
+     */
+    static SegmentedCipher create(String pw, int segmentSize) {
+        byte[] header = new byte[HEADER_LEN];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[MAGIC.length] = VERSION;
+        ByteBuffer.wrap(header, MAGIC.length + 1, 4).putInt(segmentSize);
+
+        //z <- Random(512)
+        DRBG.current().nextBytes(header, HEADER_LEN - 64, 64);
+        return new SegmentedCipher(header, pw);
+    }
+
+    /**
+     * Create a cipher from an existing header
+     * @param header the HEADER_LEN header bytes
+     * @param pw the passphrase
+     * @return the cipher
+     */
+    static SegmentedCipher fromHeader(byte[] header, String pw) {
+        return new SegmentedCipher(header, pw);
+    }
+
+    /**
+     * Encrypting an input stream in segments under passphrase pw
+     * @param pw the passphrase
+     * @param in the message
+     * @param out receives the segmented cryptogram
+     * @param segmentSize the plaintext bytes per segment
+     * @throws IOException if reading or writing fails
+     */
+    public static void encrypt(String pw, InputStream in, OutputStream out, int segmentSize) throws IOException {
+        SegmentedCipher cipher = create(pw, segmentSize);
+        out.write(cipher.header);
+
+        // read one segment ahead, so the last segment is known when it is encrypted
+        byte[] cur = new byte[segmentSize];
+        byte[] next = new byte[segmentSize];
+        byte[] ct = new byte[segmentSize + TAG_LEN];
+        int curLen = in.readNBytes(cur, 0, segmentSize);
+        for (long i = 0; ; i++) {
+            int nextLen = curLen == segmentSize ? in.readNBytes(next, 0, segmentSize) : 0;
+            boolean last = nextLen == 0;
+            cipher.encryptSegment(i, last, cur, 0, curLen, ct, 0);
+            out.write(ct, 0, curLen + TAG_LEN);
+            if (last) break;
+
+            byte[] swap = cur;
+            cur = next;
+            next = swap;
+            curLen = nextLen;
+        }
+        out.flush();
+    }
+
+    /**
+     * Open a segmented cryptogram for random-access decryption
+     * @param ch the channel holding the cryptogram
+     * @param pw the passphrase
+     * @return a read-only channel over the plaintext
+     * @throws IOException if the header cannot be read or the file is malformed
+     */
+    public static SegmentedDecryptChannel open(SeekableByteChannel ch, String pw) throws IOException {
+        return new SegmentedDecryptChannel(ch, pw);
+    }
+
+    /**
+     * Encrypting a byte array in segments, encrypting the segments in parallel
+     * @param pw the passphrase
+     * @param m the message
+     * @param segmentSize the plaintext bytes per segment
+     * @return the segmented cryptogram
+     */
+    public static byte[] encryptParallel(String pw, byte[] m, int segmentSize) {
+        SegmentedCipher cipher = create(pw, segmentSize);
+        long segments = cipher.segmentCount(m.length);
+        long outLen = cipher.segmentOffset(segments - 1) + (m.length - (segments - 1) * segmentSize) + TAG_LEN;
+        if (outLen > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Message is too large for an array");
+
+        byte[] out = new byte[(int) outLen];
+        System.arraycopy(cipher.header, 0, out, 0, HEADER_LEN);
+        LongStream.range(0, segments).parallel().forEach(i -> {
+            int off = (int) (i * segmentSize);
+            int len = Math.min(segmentSize, m.length - off);
+            cipher.encryptSegment(i, i == segments - 1, m, off, len, out, (int) cipher.segmentOffset(i));
+        });
+        return out;
+    }
+
+    /**
+     * Decrypting a segmented cryptogram held in a byte array, decrypting the segments in parallel
+     * @param pw the passphrase
+     * @param cryptogram the segmented cryptogram
+     * @return the message, or empty if any segment fails authentication
+     */
+    public static Optional<byte[]> decryptParallel(String pw, byte[] cryptogram) {
+        if (cryptogram.length < HEADER_LEN) throw new IllegalArgumentException("Cryptogram is too short");
+        SegmentedCipher cipher = new SegmentedCipher(Arrays.copyOf(cryptogram, HEADER_LEN), pw);
+        int segmentSize = cipher.segmentSize;
+        int size = (int) cipher.plaintextLength(cryptogram.length);
+        long segments = cipher.segmentCount(size);
+
+        byte[] m = new byte[size];
+        AtomicBoolean accepted = new AtomicBoolean(true);
+        LongStream.range(0, segments).parallel().forEach(i -> {
+            int off = (int) (i * segmentSize);
+            int len = Math.min(segmentSize, size - off);
+            int ctOff = (int) cipher.segmentOffset(i);
+            if (!cipher.decryptSegment(i, i == segments - 1, cryptogram, ctOff, len, m, off)) accepted.set(false);
+        });
+        if (!accepted.get()) {
+            Arrays.fill(m, (byte) 0);
+            return Optional.empty();
+        }
+        return Optional.of(m);
+    }
+
+    /**
+     * Encrypting a file in segments, reading, encrypting and writing the segments in parallel
+     * @param pw the passphrase
+     * @param in the message file
+     * @param out the cryptogram file, created or replaced
+     * @param segmentSize the plaintext bytes per segment
+     * @throws IOException if reading or writing fails
+     */
+    public static void encryptParallel(String pw, Path in, Path out, int segmentSize) throws IOException {
+        SegmentedCipher cipher = create(pw, segmentSize);
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = src.size();
+            long segments = cipher.segmentCount(size);
+            writeFully(dst, ByteBuffer.wrap(cipher.header), 0);
+            LongStream.range(0, segments).parallel().forEach(i -> {
+                int len = (int) Math.min(segmentSize, size - i * segmentSize);
+                byte[] m = new byte[len];
+                byte[] ct = new byte[len + TAG_LEN];
+                try {
+                    readFully(src, ByteBuffer.wrap(m), i * segmentSize);
+                    cipher.encryptSegment(i, i == segments - 1, m, 0, len, ct, 0);
+                    writeFully(dst, ByteBuffer.wrap(ct), cipher.segmentOffset(i));
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Decrypting a segmented cryptogram file, reading, decrypting and writing the segments in parallel
+     * @param pw the passphrase
+     * @param in the cryptogram file
+     * @param out the message file, created or replaced; deleted if authentication fails
+     * @return whether every segment was authentic
+     * @throws IOException if reading or writing fails
+     */
+    public static boolean decryptParallel(String pw, Path in, Path out) throws IOException {
+        AtomicBoolean accepted = new AtomicBoolean(true);
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LEN);
+            readFully(src, header, 0);
+            SegmentedCipher cipher = new SegmentedCipher(header.array(), pw);
+            int segmentSize = cipher.segmentSize;
+            long size = cipher.plaintextLength(src.size());
+            long segments = cipher.segmentCount(size);
+            LongStream.range(0, segments).parallel().forEach(i -> {
+                if (!accepted.get()) return;
+                int len = (int) Math.min(segmentSize, size - i * segmentSize);
+                byte[] ct = new byte[len + TAG_LEN];
+                byte[] m = new byte[len];
+                try {
+                    readFully(src, ByteBuffer.wrap(ct), cipher.segmentOffset(i));
+                    if (cipher.decryptSegment(i, i == segments - 1, ct, 0, len, m, 0)) {
+                        writeFully(dst, ByteBuffer.wrap(m), i * segmentSize);
+                    }
+                    else accepted.set(false);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!accepted.get()) Files.deleteIfExists(out);
+        return accepted.get();
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            position += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) position += ch.write(buf, position);
+    }
+
+    /** @return the encoded header */
+    byte[] header() {
+        return header.clone();
+    }
+
+    /** @return the plaintext bytes per segment */
+    int segmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @param index the segment index
+     * @return the offset of segment index in the cryptogram
+     */
+    long segmentOffset(long index) {
+        return HEADER_LEN + index * (segmentSize + (long) TAG_LEN);
+    }
+
+    /**
+     * @param plaintextLength the plaintext length
+     * @return the number of segments; an empty message still has one (empty, final) segment
+     */
+    long segmentCount(long plaintextLength) {
+        return Math.max(1, (plaintextLength + segmentSize - 1) / segmentSize);
+    }
+
+    /**
+     * Plaintext length of a cryptogram from its length
+     * @param cryptogramLength the cryptogram length in bytes
+     * @return the plaintext length
+     */
+    long plaintextLength(long cryptogramLength) {
+        long stride = segmentSize + (long) TAG_LEN;
+        long body = cryptogramLength - HEADER_LEN;
+        if (body < TAG_LEN) throw new IllegalArgumentException("Cryptogram is too short");
+        long segments = (body + stride - 1) / stride;
+        long last = body - (segments - 1) * stride - TAG_LEN;
+        if (last < 0 || (last == 0 && segments > 1)) throw new IllegalArgumentException("Cryptogram is truncated");
+        return (segments - 1) * segmentSize + last;
+    }
+
+    /**
+     * Encrypt one segment, writing c_i || t_i
+     * @param index the segment index i
+     * @param last whether this is the final segment
+     * @param m the plaintext array
+     * @param mOff the offset of the segment's plaintext
+     * @param len the plaintext length, at most segmentSize
+     * @param out the output array, with room for len + TAG_LEN bytes
+     * @param outOff the offset of c_i in out
+     */
+    void encryptSegment(long index, boolean last, byte[] m, int mOff, int len, byte[] out, int outOff) {
+        long started = CryptoMetrics.SEGMENT_ENCRYPT.begin();
+
+        // c_i <- KMACXOF256(ke, i, |m_i|, "SEGE") xor m_i
+        keystream(index).squeezeXor(m, mOff, out, outOff, len);
+
+        // t_i <- KMACXOF256(ka, header || i || final_i || c_i, 512, "SEGA")
+        tag(index, last, out, outOff, len).squeeze(out, outOff + len, TAG_LEN);
+
+        CryptoMetrics.SEGMENT_ENCRYPT.end(started, len);
+    }
+
+    /**
+     * Authenticate and decrypt one segment c_i || t_i. The tag is checked before any
+     * keystream is generated; m is left untouched on failure.
+     * @param index the segment index i
+     * @param last whether this is the final segment
+     * @param ct the array holding c_i || t_i
+     * @param ctOff the offset of c_i in ct
+     * @param len the ciphertext length |c_i|
+     * @param m receives the plaintext
+     * @param mOff the offset of the plaintext in m
+     * @return whether the tag matched
+     */
+    boolean decryptSegment(long index, boolean last, byte[] ct, int ctOff, int len, byte[] m, int mOff) {
+        long started = CryptoMetrics.SEGMENT_DECRYPT.begin();
+
+        // accept if, and only if, KMACXOF256(ka, header || i || final_i || c_i, 512, "SEGA") = t_i
+        byte[] tPrime = tag(index, last, ct, ctOff, len).squeeze(TAG_LEN);
+        boolean accepted = MessageDigest.isEqual(tPrime, Arrays.copyOfRange(ct, ctOff + len, ctOff + len + TAG_LEN));
+
+        // m_i <- KMACXOF256(ke, i, |c_i|, "SEGE") xor c_i
+        if (accepted) keystream(index).squeezeXor(ct, ctOff, m, mOff, len);
+
+        CryptoMetrics.SEGMENT_DECRYPT.end(started, len);
+        return accepted;
+    }
+
+    private Sponge keystream(long index) {
+        return keyPrefix.copy().absorb(encodeIndex(index)).finishKMACXOF();
+    }
+
+    private Sponge tag(long index, boolean last, byte[] c, int off, int len) {
+        return tagPrefix.copy()
+                .absorb(header)
+                .absorb(encodeIndex(index))
+                .absorb((byte) (last ? 1 : 0))
+                .absorb(c, off, len)
+                .finishKMACXOF();
+    }
+
+    private static byte[] encodeIndex(long index) {
+        return ByteBuffer.allocate(8).putLong(index).array();
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+
+/**
+ * Read-only SeekableByteChannel over the plaintext of a SegmentedCipher cryptogram.
+ *
+ * A read decrypts and authenticates only the segments covering the requested range.
+ * The most recently decrypted segment is kept, so sequential small reads cost one
+ * segment decryption per segmentSize bytes. A segment whose tag does not match fails
+ * the read with an IOException caused by AEADBadTagException; no plaintext from that
+ * segment is returned.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class SegmentedDecryptChannel implements SeekableByteChannel {
+
+    private final SeekableByteChannel ch;
+    private final SegmentedCipher cipher;
+
+    /** Number of segments in the cryptogram */
+    private final long segments;
+
+    /** Plaintext length of the last segment */
+    private final int lastLen;
+
+    /** Plaintext length */
+    private final long size;
+
+    /** Ciphertext of the segment being read, with its tag */
+    private final byte[] ct;
+
+    /** Plaintext of the cached segment */
+    private final byte[] plain;
+
+    /** Index of the cached segment, or -1 */
+    private long cached = -1;
+
+    private long position;
+    private boolean open = true;
+
+    SegmentedDecryptChannel(SeekableByteChannel ch, String pw) throws IOException {
+        this.ch = ch;
+        ByteBuffer header = ByteBuffer.allocate(SegmentedCipher.HEADER_LEN);
+        readFully(0, header);
+        this.cipher = SegmentedCipher.fromHeader(header.array(), pw);
+
+        int segmentSize = cipher.segmentSize();
+        this.size = cipher.plaintextLength(ch.size());
+        this.segments = cipher.segmentCount(size);
+        this.lastLen = (int) (size - (segments - 1) * segmentSize);
+
+        this.ct = new byte[segmentSize + SegmentedCipher.TAG_LEN];
+        this.plain = new byte[segmentSize];
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        if (!open) throw new ClosedChannelException();
+        if (position >= size) return -1;
+
+        int segmentSize = cipher.segmentSize();
+        int total = 0;
+        while (dst.hasRemaining() && position < size) {
+            long index = position / segmentSize;
+            int len = load(index);
+            int off = (int) (position % segmentSize);
+            int n = Math.min(len - off, dst.remaining());
+            dst.put(plain, off, n);
+            position += n;
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Decrypt segment index into plain unless it is already there
+     * @return the plaintext length of the segment
+     */
+    private int load(long index) throws IOException {
+        boolean last = index == segments - 1;
+        int len = last ? lastLen : cipher.segmentSize();
+        if (cached == index) return len;
+
+        cached = -1;
+        readFully(cipher.segmentOffset(index), ByteBuffer.wrap(ct, 0, len + SegmentedCipher.TAG_LEN));
+        if (!cipher.decryptSegment(index, last, ct, 0, len, plain, 0)) {
+            throw new IOException("Segment " + index + " failed authentication",
+                    new AEADBadTagException("Authentication tag mismatch"));
+        }
+        cached = index;
+        return len;
+    }
+
+    private void readFully(long offset, ByteBuffer buf) throws IOException {
+        ch.position(offset);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf) < 0) throw new EOFException("Cryptogram is truncated");
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        if (!open) throw new ClosedChannelException();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        if (!open) throw new ClosedChannelException();
+        if (newPosition < 0) throw new IllegalArgumentException("Negative position");
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        if (!open) throw new ClosedChannelException();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        open = false;
+        cached = -1;
+        Arrays.fill(plain, (byte) 0);
+        ch.close();
+    }
+}
@@ -1,4 +1,7 @@
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -14,6 +17,7 @@ public class Signature {
      * @return
      */
     public static BigInteger[] generateSignature(byte[] m, String pw){
+        long started = CryptoMetrics.SIGN.begin();
 
         // s <- KMACXOF256(pw, “”, 512, “K”); s <- 4s
         byte[] tempS = Symmetric.KMACXOF256(pw, new byte[]{}, 512, "K");
@@ -40,6 +44,7 @@ public class Signature {
         BigInteger z = k.subtract(h.multiply(s)).mod(E521.R);
 
         // signature: (h, z)
+        CryptoMetrics.SIGN.end(started, m.length);
         return new BigInteger[]{h,z};
 
     }
@@ -52,6 +57,7 @@ public class Signature {
      * @return
      */
     public static boolean verifySignature(BigInteger[] hz, byte[] m, E521 V) {
+        long started = CryptoMetrics.VERIFY.begin();
         BigInteger h = hz[0];
         BigInteger z = hz[1];
 
@@ -64,6 +70,190 @@ public class Signature {
         System.arraycopy(tempH, 0, hArr, 1, tempH.length);
         BigInteger myH = new BigInteger(hArr);
 
+        CryptoMetrics.VERIFY.end(started, m.length);
         return myH.equals(h);
     }
-}
\ No newline at end of file
+
+    /** Verifying a signature (h, z) for a byte array m under the public key V, consulting a
+     * cache of earlier successful verifications first; a success is added to the cache.
+     *
+     * @param hz the signature (h, z)
+     * @param m the message
+     * @param V the public key
+     * @param cache the verification cache
+     * @return whether the signature is valid
+     */
+    public static boolean verifySignature(BigInteger[] hz, byte[] m, E521 V, VerificationCache cache) {
+        ByteBuffer key = VerificationCache.key(hz, m, V);
+        if (key == null) return verifySignature(hz, m, V);
+        if (cache.contains(key)) return true;
+        boolean valid = verifySignature(hz, m, V);
+        if (valid) cache.put(key);
+        return valid;
+    }
+
+    /** Generating a signature for the remaining bytes of m under passphrase pw.
+     * The message is read in place twice (for the nonce and for the challenge) and the
+     * buffer's position is advanced to its limit.
+     *
+     * @param m the message buffer (heap or direct)
+     * @param pw the passphrase
+     * @return the signature (h, z)
+     */
+    public static BigInteger[] generateSignature(ByteBuffer m, String pw) {
+        long started = CryptoMetrics.SIGN.begin();
+        int len = m.remaining();
+
+        // s <- KMACXOF256(pw, "", 512, "K"); s <- 4s
+        BigInteger s = CryptEC.privateScalar(pw);
+
+        // k <- KMACXOF256(s, m, 512, "N"); k <- 4k
+        byte[] tempK = Sponge.kmacxof256(s.toString(), "N").absorb(m.duplicate()).finishKMACXOF().squeeze(64);
+        byte[] kArr = new byte[65];
+        System.arraycopy(tempK, 0, kArr, 1, tempK.length);
+        BigInteger k = new BigInteger(kArr).multiply(BigInteger.valueOf(4L));
+
+        // U <- k*G
+        E521 U = ECKey.G.multiply(k);
+
+        // h <- KMACXOF256(U_x, m, 512, "T"); z <- (k - hs) mod r
+        byte[] tempH = Sponge.kmacxof256(Symmetric.byteArrayToString(U.getX().toByteArray()), "T")
+                .absorb(m).finishKMACXOF().squeeze(64);
+        byte[] hArr = new byte[65];
+        System.arraycopy(tempH, 0, hArr, 1, tempH.length);
+        BigInteger h = new BigInteger(hArr);
+
+        BigInteger z = k.subtract(h.multiply(s)).mod(E521.R);
+
+        // signature: (h, z)
+        CryptoMetrics.SIGN.end(started, len);
+        return new BigInteger[]{h,z};
+    }
+
+    /** Verifying a signature (h, z) for the remaining bytes of m under the public key V.
+     * The buffer's position is advanced to its limit.
+     *
+     * @param hz the signature (h, z)
+     * @param m the message buffer (heap or direct)
+     * @param V the public key
+     * @return true if, and only if, the signature is valid
+     */
+    public static boolean verifySignature(BigInteger[] hz, ByteBuffer m, E521 V) {
+        long started = CryptoMetrics.VERIFY.begin();
+        int len = m.remaining();
+        BigInteger h = hz[0];
+        BigInteger z = hz[1];
+
+        // U <- z*G + h*V
+        E521 U = ECKey.G.multiply(z).add( V.multiply(h) );
+
+        // accept if, and only if, KMACXOF256(Ux, m, 512, "T") = h
+        byte[] tempH = Sponge.kmacxof256(Symmetric.byteArrayToString(U.getX().toByteArray()), "T")
+                .absorb(m).finishKMACXOF().squeeze(64);
+        byte[] hArr = new byte[65];
+        System.arraycopy(tempH, 0, hArr, 1, tempH.length);
+        BigInteger myH = new BigInteger(hArr);
+
+        CryptoMetrics.VERIFY.end(started, len);
+        return myH.equals(h);
+    }
+
+    // ---------------------------Prehash (streaming) signatures
+
+    /** Read size used when digesting streams */
+    private static final int CHUNK = 1 << 16;
+
+    /** Computing the prehash digest d <- KMACXOF256("", m, 512, "D") of a stream in one pass.
+     *
+     * @param in the message stream, read to its end
+     * @return the 64-byte digest
+     * @throws IOException if reading fails
+     */
+    public static byte[] prehash(InputStream in) throws IOException {
+        return prehash(in, new long[1]);
+    }
+
+    private static byte[] prehash(InputStream in, long[] len) throws IOException {
+        Sponge sponge = Sponge.kmacxof256("", "D");
+        byte[] buf = new byte[CHUNK];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            sponge.absorb(buf, 0, n);
+            len[0] += n;
+        }
+        return sponge.finishKMACXOF().squeeze(64);
+    }
+
+    /** The prehash challenge h <- KMACXOF256(U_x, d, 512, "PT"), keyed with the bytes of U_x
+     *
+     * @param U the commitment
+     * @param d the prehash digest
+     * @return h
+     */
+    private static BigInteger prehashChallenge(E521 U, byte[] d) {
+        byte[] tempH = Sponge.kmacxof256(U.getX().toByteArray(), "PT").absorb(d).finishKMACXOF().squeeze(64);
+        return new BigInteger(1, tempH);
+    }
+
+    /** Generating a detached signature over a stream under passphrase pw. The message is
+     * read once into the digest d, which is then signed with the "PN"/"PT" customizations,
+     * so a prehash signature can never be replayed as a signature over d itself. Unlike
+     * the (h, z) signatures above, "PN" and "PT" are keyed with the bytes of s and U_x.
+     *
+     * @param m the message stream, read to its end
+     * @param pw the passphrase
+     * @return the signature (h, z)
+     * @throws IOException if reading fails
+     */
+    public static BigInteger[] generatePrehashSignature(InputStream m, String pw) throws IOException {
+        long started = CryptoMetrics.SIGN.begin();
+        long[] len = new long[1];
+        byte[] d = prehash(m, len);
+
+        // s <- KMACXOF256(pw, "", 512, "K"); s <- 4s
+        BigInteger s = CryptEC.privateScalar(pw);
+
+        // k <- KMACXOF256(s, d, 512, "PN"); k <- 4k
+        byte[] tempK = Sponge.kmacxof256(s.toByteArray(), "PN").absorb(d).finishKMACXOF().squeeze(64);
+        byte[] kArr = new byte[65];
+        System.arraycopy(tempK, 0, kArr, 1, tempK.length);
+        BigInteger k = new BigInteger(kArr).multiply(BigInteger.valueOf(4L));
+
+        // U <- k*G
+        E521 U = ECKey.G.multiply(k);
+
+        // h <- KMACXOF256(U_x, d, 512, "PT"); z <- (k - hs) mod r
+        BigInteger h = prehashChallenge(U, d);
+
+        BigInteger z = k.subtract(h.multiply(s)).mod(E521.R);
+
+        // signature: (h, z)
+        CryptoMetrics.SIGN.end(started, len[0]);
+        return new BigInteger[]{h,z};
+    }
+
+    /** Verifying a detached signature (h, z) over a stream under the public key V.
+     *
+     * @param hz the signature (h, z)
+     * @param m the message stream, read to its end
+     * @param V the public key
+     * @return true if, and only if, the signature is valid
+     * @throws IOException if reading fails
+     */
+    public static boolean verifyPrehashSignature(BigInteger[] hz, InputStream m, E521 V) throws IOException {
+        long started = CryptoMetrics.VERIFY.begin();
+        long[] len = new long[1];
+        byte[] d = prehash(m, len);
+        BigInteger h = hz[0];
+        BigInteger z = hz[1];
+
+        // U <- z*G + h*V
+        E521 U = ECKey.G.multiply(z).add( V.multiply(h) );
+
+        // accept if, and only if, KMACXOF256(Ux, d, 512, "PT") = h
+        BigInteger myH = prehashChallenge(U, d);
+
+        CryptoMetrics.VERIFY.end(started, len[0]);
+        return myH.equals(h);
+    }
+}
@@ -0,0 +1,132 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Batched binary signature file: an 8-byte header followed by fixed-width
+ * SignatureValue encodings.
+ *
+ *   "KSIG" || version || 3 reserved zero bytes || sig_0 || sig_1 || ...
+ *
+ * The count follows from the file size, and signature i sits at HEADER_LEN + i * 130,
+ * so readers map the file and decode any entry directly without parsing text.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class SignatureFile implements Iterable<SignatureValue> {
+
+    /** File magic */
+    private static final byte[] MAGIC = {'K', 'S', 'I', 'G'};
+
+    /** Format version */
+    private static final byte VERSION = 1;
+
+    /** Length of the header in bytes */
+    static final int HEADER_LEN = 8;
+
+    /** The mapped signatures, excluding the header */
+    private final ByteBuffer entries;
+
+    private SignatureFile(ByteBuffer entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Write a batch of signatures
+     * @param path the file, created or replaced
+     * @param signatures the signatures, as {h, z} pairs
+     * @throws IOException if writing fails
+     */
+    public static void write(Path path, List<BigInteger[]> signatures) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            out.write(header());
+            for (BigInteger[] hz : signatures) out.write(SignatureValue.of(hz).encode());
+        }
+    }
+
+    /**
+     * Map a signature file for reading
+     * @param path the file
+     * @return the mapped file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a signature file
+     */
+    public static SignatureFile map(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (map.capacity() < HEADER_LEN) throw new IllegalArgumentException("Not a signature file");
+            byte[] header = new byte[HEADER_LEN];
+            map.get(header);
+            if (!Arrays.equals(header, header())) throw new IllegalArgumentException("Not a signature file");
+            if ((map.capacity() - HEADER_LEN) % SignatureValue.ENCODED_LEN != 0) {
+                throw new IllegalArgumentException("Signature file is truncated");
+            }
+            return new SignatureFile(map.slice());
+        }
+    }
+
+    /**
+     * Check whether a file starts with the signature file magic
+     * @param path the file
+     * @return whether the file is a binary signature file
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isSignatureFile(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && ch.read(magic) >= 0) { }
+            return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+        }
+    }
+
+    /** @return the number of signatures in the file */
+    public int size() {
+        return entries.capacity() / SignatureValue.ENCODED_LEN;
+    }
+
+    /**
+     * @param i the index
+     * @return signature i
+     */
+    public SignatureValue get(int i) {
+        if (i < 0 || i >= size()) throw new IndexOutOfBoundsException(i);
+        return SignatureValue.decode(entries.slice(i * SignatureValue.ENCODED_LEN, SignatureValue.ENCODED_LEN));
+    }
+
+    @Override
+    public Iterator<SignatureValue> iterator() {
+        ByteBuffer view = entries.duplicate();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return view.remaining() >= SignatureValue.ENCODED_LEN;
+            }
+
+            @Override
+            public SignatureValue next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return SignatureValue.decode(view);
+            }
+        };
+    }
+
+    private static byte[] header() {
+        byte[] header = new byte[HEADER_LEN];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        header[MAGIC.length] = VERSION;
+        return header;
+    }
+}
@@ -0,0 +1,109 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * A Schnorr signature (h, z) with a canonical fixed-width binary encoding:
+ *
+ *   h (64 bytes, big-endian) || z (66 bytes, big-endian)
+ *
+ * h is a 512-bit KMACXOF256 output and z is reduced mod r < 2^521, so both always fit
+ * and every signature encodes to exactly ENCODED_LEN bytes.
+ *
+ * @param h the challenge
+ * @param z the response
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public record SignatureValue(BigInteger h, BigInteger z) {
+
+    /** Length of h in bytes */
+    private static final int H_LEN = 64;
+
+    /** Length of z in bytes */
+    private static final int Z_LEN = 66;
+
+    /** Length of an encoded signature in bytes */
+    public static final int ENCODED_LEN = H_LEN + Z_LEN;
+
+    public SignatureValue {
+        if (h.signum() < 0 || h.bitLength() > H_LEN * 8) throw new IllegalArgumentException("h is out of range");
+        if (z.signum() < 0 || z.compareTo(E521.R) >= 0) throw new IllegalArgumentException("z is out of range");
+    }
+
+    /**
+     * @param hz the signature as returned by Signature.generateSignature
+     * @return the signature value
+     */
+    public static SignatureValue of(BigInteger[] hz) {
+        return new SignatureValue(hz[0], hz[1]);
+    }
+
+    /**
+     * @return the signature as {h, z}, as accepted by Signature.verifySignature
+     */
+    public BigInteger[] toArray() {
+        return new BigInteger[]{h, z};
+    }
+
+    /**
+     * @return the ENCODED_LEN-byte encoding
+     */
+    public byte[] encode() {
+        byte[] out = new byte[ENCODED_LEN];
+        putFixed(h, out, 0, H_LEN);
+        putFixed(z, out, H_LEN, Z_LEN);
+        return out;
+    }
+
+    /**
+     * Write the encoding at the buffer's position, advancing it by ENCODED_LEN
+     * @param out the buffer
+     */
+    public void encode(ByteBuffer out) {
+        out.put(encode());
+    }
+
+    /**
+     * @param in an ENCODED_LEN-byte encoding
+     * @return the signature value
+     */
+    public static SignatureValue decode(byte[] in) {
+        return decode(in, 0);
+    }
+
+    /**
+     * @param in an array holding an encoding
+     * @param off the offset of the encoding
+     * @return the signature value
+     */
+    public static SignatureValue decode(byte[] in, int off) {
+        if (in.length - off < ENCODED_LEN) throw new IllegalArgumentException("Signature is too short");
+        return new SignatureValue(new BigInteger(1, in, off, H_LEN), new BigInteger(1, in, off + H_LEN, Z_LEN));
+    }
+
+    /**
+     * Read an encoding at the buffer's position, advancing it by ENCODED_LEN
+     * @param in the buffer (heap, direct or mapped)
+     * @return the signature value
+     */
+    public static SignatureValue decode(ByteBuffer in) {
+        if (in.hasArray()) {
+            SignatureValue v = decode(in.array(), in.arrayOffset() + in.position());
+            in.position(in.position() + ENCODED_LEN);
+            return v;
+        }
+        byte[] buf = new byte[ENCODED_LEN];
+        in.get(buf);
+        return decode(buf, 0);
+    }
+
+    /**
+     * Write the magnitude of v right-aligned into len bytes, zero-padded on the left
+     */
+    private static void putFixed(BigInteger v, byte[] out, int off, int len) {
+        byte[] mag = v.toByteArray();
+        int skip = mag.length > len ? mag.length - len : 0; // the sign byte of a full-width value
+        System.arraycopy(mag, skip, out, off + len - (mag.length - skip), mag.length - skip);
+    }
+}
@@ -0,0 +1,346 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Incremental Keccak sponge over a 25-lane long state.
+ *
+ * Unlike Symmetric.sponge, which needs the whole padded input up front, this sponge
+ * absorbs input a piece at a time (byte arrays or ByteBuffers) and squeezes output a
+ * piece at a time, so messages never have to be gathered into one array.
+ * The KMACXOF256 helpers produce exactly the same bytes as Symmetric.KMACXOF256.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class Sponge {
+
+    /** Reads 8 bytes of an array as one little-endian lane */
+    private static final VarHandle LANE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /** Keccak-f[1600] state as 25 little-endian lanes */
+    private final long[] state = new long[25];
+
+    /** Rate in bytes */
+    private final int rate;
+
+    /** Number of Keccak-p rounds per permutation */
+    private final int rounds;
+
+    /** Byte position inside the current rate-sized block */
+    private int pos;
+
+    /** Whether the sponge has been padded and is now squeezing */
+    private boolean squeezing;
+
+    /**
+     * Create an empty sponge
+     * @param rate the rate in bytes (136 for capacity 512, 168 for capacity 256)
+     * @param rounds the number of Keccak-p rounds (24 for Keccak-f[1600])
+     */
+    public Sponge(int rate, int rounds) {
+        if (rate <= 0 || rate >= 200 || rate % 8 != 0) throw new IllegalArgumentException("Invalid rate: " + rate);
+        this.rate = rate;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Create a sponge that has absorbed the KMACXOF256 prefix for key and customization S:
+     * bytepad(encode_string("KMAC") || encode_string(S), 136) || bytepad(encode_string(key), 136)
+     * @param key the key K
+     * @param divS the diversification string S
+     * @return the sponge, ready to absorb the data
+     */
+    public static Sponge kmacxof256(String key, String divS) {
+        return kmac(136, Symmetric.encode_string(key), divS);
+    }
+
+    /**
+     * Create a sponge that has absorbed the KMACXOF256 prefix for a binary key K, encoded
+     * byte for byte rather than through a String
+     * @param key the key K
+     * @param divS the diversification string S
+     * @return the sponge, ready to absorb the data
+     */
+    public static Sponge kmacxof256(byte[] key, String divS) {
+        return kmac(136, Symmetric.encode_string(key), divS);
+    }
+
+    /**
+     * Create a sponge that has absorbed the KMAC128 / KMACXOF128 prefix for key and customization S:
+     * bytepad(encode_string("KMAC") || encode_string(S), 168) || bytepad(encode_string(key), 168)
+     * @param key the key K
+     * @param divS the diversification string S
+     * @return the sponge, ready to absorb the data; finish it with finishKMAC
+     */
+    public static Sponge kmac128(String key, String divS) {
+        return kmac(168, Symmetric.encode_string(key), divS);
+    }
+
+    /**
+     * Create a sponge that has absorbed the KMAC128 / KMACXOF128 prefix for a binary key K,
+     * encoded byte for byte rather than through a String
+     * @param key the key K
+     * @param divS the diversification string S
+     * @return the sponge, ready to absorb the data; finish it with finishKMAC
+     */
+    public static Sponge kmac128(byte[] key, String divS) {
+        return kmac(168, Symmetric.encode_string(key), divS);
+    }
+
+    /**
+     * Create a sponge that has absorbed the cSHAKE256 prefix
+     * bytepad(encode_string(N) || encode_string(S), 136); finish the data with pad((byte) 0x04).
+     * pad always pads, as SP 800-185 specifies, so this differs from Symmetric.cSHAKE256 when
+     * the data and the suffix byte exactly fill the rate, where Symmetric.sponge skips the padding
+     * @param funcN the function name N
+     * @param customS the customization string S
+     * @return the sponge, ready to absorb X
+     */
+    public static Sponge cshake256(String funcN, String customS) {
+        Sponge sponge = new Sponge(136, 24);
+        sponge.absorb(Symmetric.bytepad(Symmetric.byteConcat(
+                Symmetric.encode_string(funcN), Symmetric.encode_string(customS)), 136));
+        return sponge;
+    }
+
+    private static Sponge kmac(int rate, byte[] encodedKey, String divS) {
+        Sponge sponge = new Sponge(rate, 24);
+        sponge.absorb(Symmetric.bytepad(Symmetric.byteConcat(
+                Symmetric.encode_string("KMAC"), Symmetric.encode_string(divS)), rate));
+        sponge.absorb(Symmetric.bytepad(encodedKey, rate));
+        return sponge;
+    }
+
+    /**
+     * Finish the data of a KMACXOF256 sponge: absorb right_encode(0) and the cSHAKE
+     * suffix and pad exactly the way Symmetric.cSHAKE256 does, then switch to squeezing.
+     * @return this sponge
+     */
+    public Sponge finishKMACXOF() {
+        // right_encode(0) = 00 01
+        absorb((byte) 0x00);
+        absorb((byte) 0x01);
+        absorb((byte) 0x04);
+        // Symmetric.sponge skips the 10*1 padding when the input is already a multiple of the rate
+        if (pos != 0) {
+            xorByte(rate - 1, (byte) 0x80);
+            Symmetric.keccakf(state, rounds);
+        }
+        pos = 0;
+        squeezing = true;
+        return this;
+    }
+
+    /**
+     * Finish the data of a KMAC sponge as NIST SP 800-185 specifies: absorb right_encode(L)
+     * (0 for the XOF variants) and pad with the cSHAKE suffix, then switch to squeezing.
+     * Unlike finishKMACXOF, this always pads, so it matches Symmetric.KMAC128 and
+     * Symmetric.KMACXOF128 for every input length.
+     * @param outBitLen the output length L in bits, or 0 for KMACXOF
+     * @return this sponge
+     */
+    public Sponge finishKMAC(long outBitLen) {
+        absorb(Symmetric.right_encode(BigInteger.valueOf(outBitLen)));
+        return pad((byte) 0x04);
+    }
+
+    /**
+     * Copy this sponge, so a prefix absorbed once (e.g. a KMAC key) can be reused
+     * @return an independent sponge in the same state
+     */
+    public Sponge copy() {
+        Sponge copy = new Sponge(rate, rounds);
+        System.arraycopy(state, 0, copy.state, 0, state.length);
+        copy.pos = pos;
+        copy.squeezing = squeezing;
+        return copy;
+    }
+
+    /**
+     * Overwrite this sponge with the state of another one without allocating, e.g. to
+     * restart from a precomputed KMAC prefix
+     * @param src a sponge with the same rate and number of rounds
+     * @return this sponge
+     */
+    public Sponge copyFrom(Sponge src) {
+        if (src.rate != rate || src.rounds != rounds) throw new IllegalArgumentException("Sponge parameters differ");
+        System.arraycopy(src.state, 0, state, 0, state.length);
+        pos = src.pos;
+        squeezing = src.squeezing;
+        return this;
+    }
+
+    /**
+     * Clear the state so the sponge can be used again
+     */
+    public void reset() {
+        Arrays.fill(state, 0L);
+        pos = 0;
+        squeezing = false;
+    }
+
+    /**
+     * Absorb a single byte
+     * @param b the byte
+     * @return this sponge
+     */
+    public Sponge absorb(byte b) {
+        if (squeezing) throw new IllegalStateException("Sponge is already squeezing");
+        xorByte(pos++, b);
+        if (pos == rate) {
+            Symmetric.keccakf(state, rounds);
+            pos = 0;
+        }
+        return this;
+    }
+
+    /**
+     * Absorb a whole byte array
+     * @param in the input
+     * @return this sponge
+     */
+    public Sponge absorb(byte[] in) {
+        return absorb(in, 0, in.length);
+    }
+
+    /**
+     * Absorb a range of a byte array
+     * @param in the input
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     * @return this sponge
+     */
+    public Sponge absorb(byte[] in, int off, int len) {
+        if (squeezing) throw new IllegalStateException("Sponge is already squeezing");
+        int end = off + len;
+        int i = off;
+        // bytes up to the next lane boundary
+        while (i < end && (pos & 7) != 0) {
+            absorbByte(in[i++]);
+        }
+        // whole lanes
+        while (end - i >= 8) {
+            state[pos >>> 3] ^= (long) LANE.get(in, i);
+            i += 8;
+            pos += 8;
+            if (pos == rate) {
+                Symmetric.keccakf(state, rounds);
+                pos = 0;
+            }
+        }
+        while (i < end) {
+            absorbByte(in[i++]);
+        }
+        return this;
+    }
+
+    private void absorbByte(byte b) {
+        xorByte(pos++, b);
+        if (pos == rate) {
+            Symmetric.keccakf(state, rounds);
+            pos = 0;
+        }
+    }
+
+    /**
+     * Absorb the remaining bytes of a buffer, advancing its position to its limit
+     * @param in the input buffer (heap or direct)
+     * @return this sponge
+     */
+    public Sponge absorb(ByteBuffer in) {
+        if (squeezing) throw new IllegalStateException("Sponge is already squeezing");
+        while (in.hasRemaining()) {
+            xorByte(pos++, in.get());
+            if (pos == rate) {
+                Symmetric.keccakf(state, rounds);
+                pos = 0;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Apply the FIPS 202 padding with the given domain separation byte
+     * (e.g. 0x1F for SHAKE, 0x04 for cSHAKE) and switch to squeezing.
+     * @param ds the domain separation bits followed by the first padding bit
+     * @return this sponge
+     */
+    public Sponge pad(byte ds) {
+        if (squeezing) throw new IllegalStateException("Sponge is already squeezing");
+        xorByte(pos, ds);
+        xorByte(rate - 1, (byte) 0x80);
+        Symmetric.keccakf(state, rounds);
+        pos = 0;
+        squeezing = true;
+        return this;
+    }
+
+    /**
+     * Squeeze a single byte
+     * @return the next output byte
+     */
+    public byte squeeze() {
+        if (!squeezing) throw new IllegalStateException("Sponge has not been padded");
+        if (pos == rate) {
+            Symmetric.keccakf(state, rounds);
+            pos = 0;
+        }
+        return getByte(pos++);
+    }
+
+    /**
+     * Squeeze into a range of a byte array
+     * @param out the output array
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     */
+    public void squeeze(byte[] out, int off, int len) {
+        for (int i = off; i < off + len; i++) out[i] = squeeze();
+    }
+
+    /**
+     * Squeeze a fresh byte array
+     * @param len the number of bytes
+     * @return the output
+     */
+    public byte[] squeeze(int len) {
+        byte[] out = new byte[len];
+        squeeze(out, 0, len);
+        return out;
+    }
+
+    /**
+     * Squeeze len bytes into a buffer, advancing its position
+     * @param out the output buffer (heap or direct)
+     * @param len the number of bytes
+     */
+    public void squeeze(ByteBuffer out, int len) {
+        for (int i = 0; i < len; i++) out.put(squeeze());
+    }
+
+    /**
+     * XOR the next len output bytes into a range of src, writing the result to dst
+     * (dst may be the same array as src)
+     * @param src the input array
+     * @param srcOff the offset of the first input byte
+     * @param dst the output array
+     * @param dstOff the offset of the first output byte
+     * @param len the number of bytes
+     */
+    public void squeezeXor(byte[] src, int srcOff, byte[] dst, int dstOff, int len) {
+        for (int i = 0; i < len; i++) dst[dstOff + i] = (byte) (src[srcOff + i] ^ squeeze());
+    }
+
+    private void xorByte(int index, byte b) {
+        state[index >>> 3] ^= (b & 0xFFL) << ((index & 7) << 3);
+    }
+
+    private byte getByte(int index) {
+        return (byte) (state[index >>> 3] >>> ((index & 7) << 3));
+    }
+}
@@ -1,7 +1,11 @@
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 /**
@@ -17,13 +21,26 @@ import java.util.stream.Stream;
   */
 public class Symmetric {
 
+    /** Mode byte of the encrypt-then-MAC cryptogram (mode || z || c || t) */
+    public static final byte MODE_ETM = 0x01;
+
+    /**
+     * Mode byte of the 128-bit-security encrypt-then-MAC cryptogram (mode || z || c || t),
+     * built on KMACXOF128 with a 256-bit nonce and a 256-bit tag
+     */
+    public static final byte MODE_ETM128 = 0x02;
+
     /**
      * Computing a cryptographic hash h of a byte array m:
      * @param m the input message
      * @return the cryptographic hash
      */
     public static byte[] computeHash(byte[] m) {
-        return KMACXOF256("", m, 512, "D");
+        long started = CryptoMetrics.HASH.begin();
+        byte[] h = new byte[64];
+        hash(m, 0, m.length, h, 0);
+        CryptoMetrics.HASH.end(started, m.length);
+        return h;
     }
 
     /**
@@ -33,7 +50,11 @@ public class Symmetric {
      * @return the authentication tag (MAC)
      */
     public static byte[] computeAuthTag(String pw, byte[] m) {
-        return KMACXOF256(pw, m, 512, "T");
+        long started = CryptoMetrics.MAC.begin();
+        byte[] t = new byte[64];
+        mac(pw, m, 0, m.length, t, 0);
+        CryptoMetrics.MAC.end(started, m.length);
+        return t;
     }
 
     /**
@@ -43,10 +64,11 @@ public class Symmetric {
      * @return the encrypted message
      */
     public static byte[] symmetricEncrypt(String pw, byte[] m) {
+        long started = CryptoMetrics.SYMMETRIC_ENCRYPT.begin();
+
         //z <- Random(512)
-        SecureRandom random = new SecureRandom();
         byte[] z = new byte[64]; // 512 bits
-        random.nextBytes(z);
+        DRBG.current().nextBytes(z);
         byte[] pwBytes = pw.getBytes();
 
         // (ke || ka) <- KMACXOF256(z || pw, "", 1024, "S")
@@ -63,7 +85,9 @@ public class Symmetric {
 
         // symmetric cryptogram (z, c, t)
         // (z || c || t)
-        return byteConcat(byteConcat(z, c), t);
+        byte[] zct = byteConcat(byteConcat(z, c), t);
+        CryptoMetrics.SYMMETRIC_ENCRYPT.end(started, m.length);
+        return zct;
     }
 
     /**
@@ -73,6 +97,8 @@ public class Symmetric {
      * @return the decrypted message
      */
     public static byte[] symmetricDecrypt(String pw, byte[] zct) {
+        long started = CryptoMetrics.SYMMETRIC_DECRYPT.begin();
+
         // Taking z, c, t apart
         byte[] z = Arrays.copyOfRange(zct, 0 ,64);
         byte[] c = Arrays.copyOfRange(zct, 64, zct.length - 64);
@@ -92,9 +118,406 @@ public class Symmetric {
 
         // accept if, and only if, t’ = t
         // if t = tPrime returns decrypted message, else return cryptogram
+        CryptoMetrics.SYMMETRIC_DECRYPT.end(started, zct.length);
         return Arrays.equals(t, tPrime) ? m : c;
     }
 
+    /**
+     * Encrypting a byte array m symmetrically under passphrase pw in encrypt-then-MAC mode,
+     * where the tag authenticates the ciphertext instead of the message:
+     * @param pw the passphrase
+     * @param m the input message
+     * @return the cryptogram (MODE_ETM || z || c || t)
+     */
+    public static byte[] symmetricEncryptEtM(String pw, byte[] m) {
+        return symmetricEncryptEtM(pw, m, false);
+    }
+
+    /**
+     * Encrypting a byte array m symmetrically under passphrase pw in encrypt-then-MAC mode,
+     * optionally compressing it first (see Compression); the mode byte carries
+     * Compression.FLAG_COMPRESSED if the compressed stream was shorter and was encrypted:
+     * @param pw the passphrase
+     * @param m the input message
+     * @param compress whether to try compressing m; the cryptogram length then depends on
+     *                 the content (see Compression)
+     * @return the cryptogram (mode || z || c || t)
+     */
+    public static byte[] symmetricEncryptEtM(String pw, byte[] m, boolean compress) {
+        return encryptEtM(MODE_ETM, pw, m, compress);
+    }
+
+    /**
+     * Encrypting a byte array m under passphrase pw in the 128-bit-security encrypt-then-MAC
+     * mode, which uses KMACXOF128 (rate 168) throughout and a 256-bit nonce and tag:
+     * @param pw the passphrase
+     * @param m the input message
+     * @return the cryptogram (MODE_ETM128 || z || c || t)
+     */
+    public static byte[] symmetricEncryptEtM128(String pw, byte[] m) {
+        return symmetricEncryptEtM128(pw, m, false);
+    }
+
+    /**
+     * Encrypting a byte array m under passphrase pw in the 128-bit-security encrypt-then-MAC
+     * mode, optionally compressing it first (see Compression):
+     * @param pw the passphrase
+     * @param m the input message
+     * @param compress whether to try compressing m; the cryptogram length then depends on
+     *                 the content (see Compression)
+     * @return the cryptogram (mode || z || c || t)
+     */
+    public static byte[] symmetricEncryptEtM128(String pw, byte[] m, boolean compress) {
+        return encryptEtM(MODE_ETM128, pw, m, compress);
+    }
+
+    /**
+     * z <- Random(|z|); (ke || ka) <- KMACXOF(z || pw, "", 2|z|, "SE");
+     * c <- KMACXOF(ke, "", |m|, "SKE") xor m; t <- KMACXOF(ka, mode || z || c, |z|, "SKA"),
+     * with KMACXOF256 and |z| = 512 for MODE_ETM, KMACXOF128 and |z| = 256 for MODE_ETM128
+     */
+    private static byte[] encryptEtM(byte mode, String pw, byte[] m, boolean compress) {
+        long started = CryptoMetrics.SYMMETRIC_ENCRYPT.begin();
+        int inputLen = m.length;
+        int zLen = etmNonceLength(mode);
+        byte[] packed = compress ? Compression.compress(m) : null;
+        if (packed != null) {
+            m = packed;
+            mode |= Compression.FLAG_COMPRESSED;
+        }
+        byte[] out = new byte[1 + zLen + m.length + zLen];
+        out[0] = mode;
+
+        // z <- Random(|z|)
+        DRBG.current().nextBytes(out, 1, zLen);
+        byte[] z = Arrays.copyOfRange(out, 1, 1 + zLen);
+
+        // (ke || ka) <- KMACXOF(z || pw, "", 2|z|, "SE")
+        Sponge[] sponges = etmSponges(mode, z, pw);
+
+        // c <- KMACXOF(ke, "", |m|, "SKE") xor m
+        sponges[0].squeezeXor(m, 0, out, 1 + zLen, m.length);
+
+        // t <- KMACXOF(ka, mode || z || c, |z|, "SKA")
+        sponges[1].absorb(out, 0, 1 + zLen + m.length);
+        etmFinish(mode, sponges[1]).squeeze(out, 1 + zLen + m.length, zLen);
+
+        CryptoMetrics.SYMMETRIC_ENCRYPT.end(started, inputLen);
+        return out;
+    }
+
+    /**
+     * Decrypting an encrypt-then-MAC cryptogram (mode, z, c, t) under passphrase pw.
+     * The tag is checked with a single MAC pass over the ciphertext before any keystream
+     * is generated or the message is allocated, so a forged or corrupted cryptogram costs
+     * one MAC pass to reject.
+     *
+     * @param pw the passphrase
+     * @param zct the cryptogram (mode || z || c || t), mode MODE_ETM or MODE_ETM128 with or
+     *            without Compression.FLAG_COMPRESSED
+     * @return the message, or empty if the cryptogram is malformed or the tag does not match
+     */
+    public static Optional<byte[]> symmetricDecryptEtM(String pw, byte[] zct) {
+        if (zct.length == 0) return Optional.empty();
+        byte mode = (byte) (zct[0] & ~Compression.FLAG_COMPRESSED);
+        if (mode != MODE_ETM && mode != MODE_ETM128) return Optional.empty();
+        int zLen = etmNonceLength(mode);
+        if (zct.length < 1 + 2 * zLen) return Optional.empty();
+        long started = CryptoMetrics.SYMMETRIC_DECRYPT.begin();
+        int cLen = zct.length - 1 - 2 * zLen;
+
+        // (ke || ka) <- KMACXOF(z || pw, "", 2|z|, "SE")
+        Sponge[] sponges = etmSponges(mode, Arrays.copyOfRange(zct, 1, 1 + zLen), pw);
+
+        // accept if, and only if, KMACXOF(ka, mode || z || c, |z|, "SKA") = t
+        sponges[1].absorb(zct, 0, 1 + zLen + cLen);
+        byte[] tPrime = etmFinish(mode, sponges[1]).squeeze(zLen);
+        boolean accepted = MessageDigest.isEqual(tPrime, Arrays.copyOfRange(zct, 1 + zLen + cLen, zct.length));
+
+        // m <- KMACXOF(ke, "", |c|, "SKE") xor c
+        byte[] m = null;
+        if (accepted) {
+            m = new byte[cLen];
+            sponges[0].squeezeXor(zct, 1 + zLen, m, 0, cLen);
+            if ((zct[0] & Compression.FLAG_COMPRESSED) != 0) m = Compression.decompress(m);
+        }
+        CryptoMetrics.SYMMETRIC_DECRYPT.end(started, zct.length);
+        return Optional.ofNullable(m);
+    }
+
+    /**
+     * Derive (ke || ka) <- KMACXOF256(z || pw, "", 1024, "SE") for the encrypt-then-MAC mode;
+     * the distinct customization keeps its keys apart from the (z, c, t) mode. The keys are
+     * the raw bytes, not the lossy UTF-8 String the (z, c, t) mode passes to KMACXOF256.
+     *
+     * @param z the 512-bit nonce
+     * @param pw the passphrase
+     * @return the keystream sponge (squeezing) and the tag sponge (absorbing)
+     */
+    static Sponge[] etmSponges(byte[] z, String pw) {
+        byte[] keyGen = Sponge.kmacxof256(byteConcat(z, pw.getBytes()), "SE").finishKMACXOF().squeeze(128);
+        return new Sponge[] {
+                Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 0, 64), "SKE").finishKMACXOF(),
+                Sponge.kmacxof256(Arrays.copyOfRange(keyGen, 64, 128), "SKA")
+        };
+    }
+
+    /**
+     * Derive (ke || ka) <- KMACXOF128(z || pw, "", 512, "SE") for the 128-bit encrypt-then-MAC mode.
+     *
+     * @param z the 256-bit nonce
+     * @param pw the passphrase
+     * @return the keystream sponge (squeezing) and the tag sponge (absorbing)
+     */
+    static Sponge[] etm128Sponges(byte[] z, String pw) {
+        byte[] keyGen = Sponge.kmac128(byteConcat(z, pw.getBytes()), "SE").finishKMAC(0).squeeze(64);
+        return new Sponge[] {
+                Sponge.kmac128(Arrays.copyOfRange(keyGen, 0, 32), "SKE").finishKMAC(0),
+                Sponge.kmac128(Arrays.copyOfRange(keyGen, 32, 64), "SKA")
+        };
+    }
+
+    /** @return the nonce and tag length in bytes of an encrypt-then-MAC mode (flags cleared) */
+    private static int etmNonceLength(byte mode) {
+        return mode == MODE_ETM128 ? 32 : 64;
+    }
+
+    private static Sponge[] etmSponges(byte mode, byte[] z, String pw) {
+        return (mode & ~Compression.FLAG_COMPRESSED) == MODE_ETM128 ? etm128Sponges(z, pw) : etmSponges(z, pw);
+    }
+
+    private static Sponge etmFinish(byte mode, Sponge mac) {
+        return (mode & ~Compression.FLAG_COMPRESSED) == MODE_ETM128 ? mac.finishKMAC(0) : mac.finishKMACXOF();
+    }
+
+    // ---------------------------ByteBuffer variants-----------------------------------------
+    // These read the remaining bytes of the source buffer and write into the destination
+    // buffer (heap or direct) through Sponge, without copying the message into arrays.
+
+    /**
+     * Computing a cryptographic hash h of the remaining bytes of in, written to out:
+     * @param in the input message, consumed up to its limit
+     * @param out receives the 64-byte hash
+     */
+    public static void computeHash(ByteBuffer in, ByteBuffer out) {
+        if (out.remaining() < 64) throw new BufferOverflowException();
+        long started = CryptoMetrics.HASH.begin();
+        int len = in.remaining();
+        Sponge.kmacxof256("", "D").absorb(in).finishKMACXOF().squeeze(out, 64);
+        CryptoMetrics.HASH.end(started, len);
+    }
+
+    /**
+     * Compute an authentication tag t of the remaining bytes of in under passphrase pw:
+     * @param pw the passphrase
+     * @param in the input message, consumed up to its limit
+     * @param out receives the 64-byte authentication tag
+     */
+    public static void computeAuthTag(String pw, ByteBuffer in, ByteBuffer out) {
+        if (out.remaining() < 64) throw new BufferOverflowException();
+        long started = CryptoMetrics.MAC.begin();
+        int len = in.remaining();
+        Sponge.kmacxof256(pw, "T").absorb(in).finishKMACXOF().squeeze(out, 64);
+        CryptoMetrics.MAC.end(started, len);
+    }
+
+    /**
+     * Encrypting the remaining bytes of src symmetrically under passphrase pw,
+     * writing the cryptogram (z || c || t) to dst:
+     * @param pw the passphrase
+     * @param src the input message, consumed up to its limit
+     * @param dst receives the cryptogram, which is 128 bytes longer than the message
+     */
+    public static void symmetricEncrypt(String pw, ByteBuffer src, ByteBuffer dst) {
+        if (dst.remaining() < src.remaining() + 128) throw new BufferOverflowException();
+        long started = CryptoMetrics.SYMMETRIC_ENCRYPT.begin();
+        int len = src.remaining();
+
+        //z <- Random(512)
+        byte[] z = new byte[64];
+        DRBG.current().nextBytes(z);
+        dst.put(z);
+
+        // (ke || ka) <- KMACXOF256(z || pw, "", 1024, "S")
+        Sponge[] sponges = symmetricSponges(z, pw);
+        Sponge keystream = sponges[0];
+        Sponge mac = sponges[1];
+
+        // c <- KMACXOF256(ke, "", |m|, "SKE") xor m; t <- KMACXOF256(ka, m, 512, "SKA")
+        xorStream(src, dst, keystream, mac, false);
+        mac.finishKMACXOF().squeeze(dst, 64);
+        CryptoMetrics.SYMMETRIC_ENCRYPT.end(started, len);
+    }
+
+    /**
+     * Decrypting the symmetric cryptogram (z, c, t) in the remaining bytes of src under
+     * passphrase pw, writing the message to dst:
+     * @param pw the passphrase
+     * @param src the cryptogram, consumed up to its limit
+     * @param dst receives the message; left unchanged if the tag does not match
+     * @return true if, and only if, the tag matched and the message was written
+     */
+    public static boolean symmetricDecrypt(String pw, ByteBuffer src, ByteBuffer dst) {
+        if (src.remaining() < 128) throw new IllegalArgumentException("Cryptogram is too short");
+        int cLen = src.remaining() - 128;
+        if (dst.remaining() < cLen) throw new BufferOverflowException();
+        long started = CryptoMetrics.SYMMETRIC_DECRYPT.begin();
+        int len = src.remaining();
+
+        // Taking z, c, t apart
+        byte[] z = new byte[64];
+        src.get(z);
+        ByteBuffer c = src.slice();
+        c.limit(cLen);
+        src.position(src.position() + cLen);
+        byte[] t = new byte[64];
+        src.get(t);
+
+        // (ke || ka) <- KMACXOF256(z || pw, "", 1024, "S")
+        Sponge[] sponges = symmetricSponges(z, pw);
+        Sponge keystream = sponges[0];
+        Sponge mac = sponges[1];
+
+        // m <- KMACXOF256(ke, "", |c|, "SKE") xor c; t' <- KMACXOF256(ka, m, 512, "SKA")
+        int start = dst.position();
+        xorStream(c, dst, keystream, mac, true);
+        byte[] tPrime = mac.finishKMACXOF().squeeze(64);
+        CryptoMetrics.SYMMETRIC_DECRYPT.end(started, len);
+
+        // accept if, and only if, t' = t
+        if (MessageDigest.isEqual(t, tPrime)) return true;
+        for (int i = start; i < dst.position(); i++) dst.put(i, (byte) 0);
+        dst.position(start);
+        return false;
+    }
+
+    /**
+     * Derive (ke || ka) <- KMACXOF256(z || pw, "", 1024, "S") and set up the sponges for
+     * KMACXOF256(ke, "", |m|, "SKE") (already squeezing) and KMACXOF256(ka, m, 512, "SKA")
+     * (ready to absorb m).
+     *
+     * @param z the 512-bit nonce
+     * @param pw the passphrase
+     * @return the keystream sponge and the tag sponge
+     */
+    static Sponge[] symmetricSponges(byte[] z, String pw) {
+        byte[] keyGen = KMACXOF256(byteArrayToString(byteConcat(z, pw.getBytes())), new byte[]{}, 1024, "S");
+        return new Sponge[] {
+                Sponge.kmacxof256(byteArrayToString(Arrays.copyOfRange(keyGen, 0, 64)), "SKE").finishKMACXOF(),
+                Sponge.kmacxof256(byteArrayToString(Arrays.copyOfRange(keyGen, 64, 128)), "SKA")
+        };
+    }
+
+    /**
+     * XOR the remaining bytes of src with the keystream into dst, absorbing either the
+     * input bytes or the output bytes into mac.
+     *
+     * @param src the input, consumed up to its limit
+     * @param dst receives |src| bytes
+     * @param keystream a squeezing sponge supplying the keystream
+     * @param mac an absorbing sponge computing the tag
+     * @param macOutput true to authenticate the output (decryption), false for the input
+     */
+    static void xorStream(ByteBuffer src, ByteBuffer dst, Sponge keystream, Sponge mac, boolean macOutput) {
+        while (src.hasRemaining()) {
+            byte in = src.get();
+            byte out = (byte) (in ^ keystream.squeeze());
+            mac.absorb(macOutput ? out : in);
+            dst.put(out);
+        }
+    }
+
+    // ---------------------------Allocation-free variants------------------------------------
+    // These write into caller-supplied arrays and restart per-thread sponges from a
+    // precomputed KMAC prefix, so a steady stream of calls allocates nothing.
+
+    /**
+     * Per-thread sponges: the hash prefix, the prefix for the last MAC key, and a work sponge.
+     * The work sponge is cleared after every output. The last passphrase and its keyed prefix
+     * stay until the thread MACs under another passphrase, which overwrites the prefix in
+     * place, or calls clearMacKey; a String cannot be wiped, so the passphrase itself lives
+     * until it is collected, as it does in the caller.
+     */
+    private static final class ThreadSponges {
+        final Sponge hashPrefix = Sponge.kmacxof256("", "D");
+        final Sponge work = new Sponge(136, 24);
+        final Sponge macPrefix = new Sponge(136, 24);
+        String macKey;
+    }
+
+    private static final ThreadLocal<ThreadSponges> THREAD_SPONGES = ThreadLocal.withInitial(ThreadSponges::new);
+
+    /**
+     * Computing a cryptographic hash h of in[off, off + len), written to out[outOff, outOff + 64);
+     * the same bytes as computeHash:
+     * @param in the input message array
+     * @param off the offset of the first message byte
+     * @param len the message length
+     * @param out receives the 64-byte hash
+     * @param outOff the offset of the first hash byte
+     */
+    public static void hashInto(byte[] in, int off, int len, byte[] out, int outOff) {
+        Objects.checkFromIndexSize(off, len, in.length);
+        Objects.checkFromIndexSize(outOff, 64, out.length);
+        long start = System.nanoTime();
+        hash(in, off, len, out, outOff);
+        CryptoMetrics.HASH.record(start, len);
+    }
+
+    /**
+     * Compute an authentication tag t of in[off, off + len) under passphrase pw, written to
+     * out[outOff, outOff + 64); the same bytes as computeAuthTag. The key prefix is kept per
+     * thread for the most recent passphrase, so repeated calls with one passphrase allocate nothing;
+     * clearMacKey drops it:
+     * @param pw the passphrase
+     * @param in the input message array
+     * @param off the offset of the first message byte
+     * @param len the message length
+     * @param out receives the 64-byte authentication tag
+     * @param outOff the offset of the first tag byte
+     */
+    public static void macInto(String pw, byte[] in, int off, int len, byte[] out, int outOff) {
+        Objects.checkFromIndexSize(off, len, in.length);
+        Objects.checkFromIndexSize(outOff, 64, out.length);
+        long start = System.nanoTime();
+        mac(pw, in, off, len, out, outOff);
+        CryptoMetrics.MAC.record(start, len);
+    }
+
+    /**
+     * h <- KMACXOF256("", m, 512, "D") on the calling thread's sponges
+     */
+    private static void hash(byte[] in, int off, int len, byte[] out, int outOff) {
+        ThreadSponges sponges = THREAD_SPONGES.get();
+        sponges.work.copyFrom(sponges.hashPrefix).absorb(in, off, len).finishKMACXOF().squeeze(out, outOff, 64);
+        sponges.work.reset();
+    }
+
+    /**
+     * t <- KMACXOF256(pw, m, 512, "T") on the calling thread's sponges
+     */
+    private static void mac(String pw, byte[] in, int off, int len, byte[] out, int outOff) {
+        ThreadSponges sponges = THREAD_SPONGES.get();
+        if (!pw.equals(sponges.macKey)) {
+            Sponge keyed = Sponge.kmacxof256(pw, "T");
+            sponges.macPrefix.copyFrom(keyed);
+            keyed.reset();
+            sponges.macKey = pw;
+        }
+        sponges.work.copyFrom(sponges.macPrefix).absorb(in, off, len).finishKMACXOF().squeeze(out, outOff, 64);
+        sponges.work.reset();
+    }
+
+    /**
+     * Clear the calling thread's cached MAC prefix and drop its reference to the passphrase
+     * last given to macInto
+     */
+    public static void clearMacKey() {
+        ThreadSponges sponges = THREAD_SPONGES.get();
+        sponges.macPrefix.reset();
+        sponges.macKey = null;
+    }
+
      /**
       * Implementation of KMACXOF256 based on specification described by NIST.SP.800-185
       * Section 4.3.1
@@ -146,6 +569,77 @@ public class Symmetric {
         return sponge(newIn, len, 512);
     }
 
+    // ---------------------------128-BIT SECURITY (CAPACITY 256, RATE 168)------------------
+
+     /**
+      * Implementation of KMAC128 based on specification described by NIST.SP.800-185
+      * Section 4.3.1; unlike KMACXOF128, the output depends on the requested length
+      *
+      * @param key the key k
+      * @param authM the authenticated data m
+      * @param outBitLen the output bit length L
+      * @param divS the diversification string S
+      * @return the output of length L
+      */
+    public static byte[] KMAC128(String key, byte[] authM, int outBitLen, String divS) {
+        byte[] newIn = byteConcat(bytepad(encode_string(key), 168), authM);
+        newIn = byteConcat(newIn, right_encode(BigInteger.valueOf(outBitLen)));
+        return cSHAKE128(newIn, outBitLen, "KMAC", divS);
+    }
+
+     /**
+      * Implementation of KMACXOF128 based on specification described by NIST.SP.800-185
+      * Section 4.3.1
+      *
+      * @param key the key k
+      * @param authM the authenticated data m
+      * @param outBitLen the output bit length L
+      * @param divS the diversification string S
+      * @return the variable-length output
+      */
+    public static byte[] KMACXOF128(String key, byte[] authM, int outBitLen, String divS) {
+        byte[] newIn = byteConcat(bytepad(encode_string(key), 168), authM);
+        newIn = byteConcat(newIn, right_encode(BigInteger.ZERO));
+        return cSHAKE128(newIn, outBitLen, "KMAC", divS);
+    }
+
+     /**
+      * Implementation of cSHAKE128 based on specification described by NIST.SP.800-185
+      * Section 3.3
+      *
+      * @param inX the main input bit string X
+      * @param lenL the requested output length in bits L
+      * @param funcN the function name bit string N
+      * @param customS the customization string S
+      * @return the output digest
+      */
+    public static byte[] cSHAKE128(byte[] inX, int lenL, String funcN, String customS) {
+        if (funcN.equals("") && customS.equals("")) return SHAKE128(inX, lenL);
+
+        byte[] processIn = byteConcat(encode_string(funcN), encode_string(customS));
+        processIn = byteConcat(bytepad(processIn, 168), inX);
+        // suffix 00 and the first padding bit; it shares the last byte with the final padding bit
+        int bytesToPad = 168 - processIn.length % 168;
+        processIn = byteConcat(processIn, new byte[] {bytesToPad == 1 ? (byte) 0x84 : 0x04});
+
+        return sponge(processIn, lenL, 256);
+    }
+
+     /**
+      * Implementation of SHAKE128 based on specification described by NIST.FIPS.202
+      * Section 6.3
+      *
+      * @param in the message
+      * @param len the output length
+      * @return the output digest
+      */
+    public static byte[] SHAKE128(byte[] in, int len) {
+        byte[] newIn = Arrays.copyOf(in, in.length + 1);
+        int bytesToPad = 168 - in.length % 168;
+        newIn[in.length] = bytesToPad == 1 ? (byte) 0x9f : 0x1f;
+        return sponge(newIn, len, 256);
+    }
+
     // ---------------------------KECCAK CONSTANTS-------------------------------
     private static final long[] rConst = {
             0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL,
@@ -174,6 +668,7 @@ public class Symmetric {
     // --------------------------------------------------------------------------------
 
     private static byte[] sponge(byte[] in, int bitLen, int cap) {
+        long started = CryptoMetrics.SPONGE.begin();
         int rate = 1600 - cap;
         byte[] pad = in.length % (rate / 8) == 0 ? in : padTenOne(rate, in);
         BigInteger[][] states = byteArrToStates(pad, cap);
@@ -193,7 +688,9 @@ public class Symmetric {
             stcml = keccakp(stcml, 1600, 24);
         } while (result.length * 64 < bitLen);
 
-        return stateToByteArray(result, bitLen);
+        byte[] out = stateToByteArray(result, bitLen);
+        CryptoMetrics.SPONGE.end(started, in.length);
+        return out;
     }
 
     private static BigInteger[] xorStates(BigInteger[] s1, BigInteger[] s2) {
@@ -271,6 +768,7 @@ public class Symmetric {
      * @return the state after applying the Keccak-p permutation.
      */
     private static BigInteger[] keccakp(BigInteger[] stateIn, int bitLen, int rounds) {
+        CryptoMetrics.permutation();
         BigInteger[] stateOut = stateIn.clone();
         int l = floorLog(bitLen/25);
         for (int i = 12 + 2*l - rounds; i < 12 + 2*l; i++) {
@@ -365,6 +863,59 @@ public class Symmetric {
         return BigInteger.valueOf(newX << ofs | (newX >>> (Long.SIZE - ofs)));
     }
 
+    /**
+     * In-place Keccak-p[1600, rounds] permutation over 25 long lanes, used by Sponge.
+     * Same round function as keccakp, without the per-step BigInteger arrays.
+     *
+     * @param a the state lanes, permuted in place
+     * @param rounds the number of rounds (the last rounds of Keccak-f[1600] are used)
+     */
+    static void keccakf(long[] a, int rounds) {
+        CryptoMetrics.permutation();
+        for (int round = 24 - rounds; round < 24; round++) {
+            // theta
+            long c0 = a[0] ^ a[5] ^ a[10] ^ a[15] ^ a[20];
+            long c1 = a[1] ^ a[6] ^ a[11] ^ a[16] ^ a[21];
+            long c2 = a[2] ^ a[7] ^ a[12] ^ a[17] ^ a[22];
+            long c3 = a[3] ^ a[8] ^ a[13] ^ a[18] ^ a[23];
+            long c4 = a[4] ^ a[9] ^ a[14] ^ a[19] ^ a[24];
+            long d0 = c4 ^ Long.rotateLeft(c1, 1);
+            long d1 = c0 ^ Long.rotateLeft(c2, 1);
+            long d2 = c1 ^ Long.rotateLeft(c3, 1);
+            long d3 = c2 ^ Long.rotateLeft(c4, 1);
+            long d4 = c3 ^ Long.rotateLeft(c0, 1);
+            for (int j = 0; j < 25; j += 5) {
+                a[j] ^= d0;
+                a[j + 1] ^= d1;
+                a[j + 2] ^= d2;
+                a[j + 3] ^= d3;
+                a[j + 4] ^= d4;
+            }
+
+            // rho and pi
+            long t = a[1];
+            for (int i = 0; i < 24; i++) {
+                int j = piLane[i];
+                long temp = a[j];
+                a[j] = Long.rotateLeft(t, rotOffset[i]);
+                t = temp;
+            }
+
+            // chi
+            for (int j = 0; j < 25; j += 5) {
+                long a0 = a[j], a1 = a[j + 1], a2 = a[j + 2], a3 = a[j + 3], a4 = a[j + 4];
+                a[j] = a0 ^ (~a1 & a2);
+                a[j + 1] = a1 ^ (~a2 & a3);
+                a[j + 2] = a2 ^ (~a3 & a4);
+                a[j + 3] = a3 ^ (~a4 & a0);
+                a[j + 4] = a4 ^ (~a0 & a1);
+            }
+
+            // iota
+            a[0] ^= rConst[round];
+        }
+    }
+
     private static int floorLog(int n) {
         if (n < 0) throw new IllegalArgumentException("Log undefined for negative number");
         int exp = -1;
@@ -434,7 +985,7 @@ public class Symmetric {
      * @param x The input integer of type int
      * @return The right encoded byte string representation of the input x
      */
-    private static byte[] right_encode(BigInteger x) {
+    static byte[] right_encode(BigInteger x) {
         // Validity conditions: 0 <= x < 2^(2040)
         // 1. Let n be the smallest positive integer for which 2^(8n) > x.
         // 2. Let x1, x2,…, xn be the base-256 encoding of x satisfying:
@@ -478,7 +1029,7 @@ public class Symmetric {
      * @param s The input bit string
      * @return The left encoded byte string from the length of the input bit string
      */
-    private static byte[] encode_string(String s) {
+    static byte[] encode_string(String s) {
         // Validity Conditions: 0 ≤ len(s) < 2^(2040)
         // 1. Return left_encode(len(s)) || s.
 
@@ -492,6 +1043,15 @@ public class Symmetric {
         return byteConcat(inputLength,addBytes);
     }
 
+    /**
+     * encode_string(s) = left_encode(len(s)) || s for a byte string s, taken as is
+     * @param s The input byte string
+     * @return The left encoded length of s in bits, followed by s
+     */
+    static byte[] encode_string(byte[] s) {
+        return byteConcat(left_encode(BigInteger.valueOf(s.length * 8L)), s);
+    }
+
     /**
      * The bytepad(X, w) function prepends an encoding of the integer w to an input string
      * X, then pads the result with zeros until it is a byte string whose length in bytes
@@ -504,7 +1064,7 @@ public class Symmetric {
      * @param w the encoding factor (the output length must be a multiple of w)
      * @return the byte-padded byte array X with encoding factor w.
      */
-    private static byte[] bytepad(byte[] X, int w) {
+    static byte[] bytepad(byte[] X, int w) {
         // Validity Conditions: w > 0
         // 1. z = left_encode(w) || X
         // 2. while len(z) mod 8 != 0:
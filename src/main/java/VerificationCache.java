@@ -0,0 +1,145 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of successful signature verifications, for ingest paths that replay
+ * the same (m, h, z, V) many times. Used through Signature.verifySignature(hz, m, V, cache).
+ *
+ *   key <- KMACXOF256("", compressed(V) || h || z || m, 256, "VC")   ((h, z) as SignatureValue)
+ *
+ * Only positive results are stored, so a cache can never turn a bad signature into a
+ * good one unless the 256-bit key collides; a failed verification is recomputed every
+ * time. Entries expire after the TTL, and once the map exceeds maxEntries the inserting
+ * thread drops expired entries and then arbitrary ones down to 3/4 of the limit. The map
+ * is a ConcurrentHashMap, so lookups do not lock. Hits and misses are counted per cache
+ * and as the CryptoMetrics operations "verifyCache.hit" and "verifyCache.miss".
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class VerificationCache {
+
+    /** Length of a cache key in bytes */
+    private static final int KEY_LEN = 32;
+
+    /** Expiry time in System.nanoTime units by key */
+    private final ConcurrentHashMap<ByteBuffer, Long> entries = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    /** Set while one thread evicts */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache
+     * @param maxEntries the largest number of entries kept
+     * @param ttl how long a verification stays cached
+     */
+    public VerificationCache(int maxEntries, Duration ttl) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("Invalid maximum size: " + maxEntries);
+        if (ttl.isNegative() || ttl.isZero()) throw new IllegalArgumentException("Invalid TTL: " + ttl);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * @param hz the signature (h, z)
+     * @param m the message
+     * @param V the public key
+     * @return the cache key, or null if (h, z) has no canonical encoding and must not be cached
+     */
+    static ByteBuffer key(BigInteger[] hz, byte[] m, E521 V) {
+        byte[] sig;
+        try {
+            sig = SignatureValue.of(hz).encode();
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+        byte[] key = Sponge.kmacxof256("", "VC")
+                .absorb(V.getCompressedBytes())
+                .absorb(sig)
+                .absorb(m)
+                .finishKMACXOF()
+                .squeeze(KEY_LEN);
+        return ByteBuffer.wrap(key);
+    }
+
+    /**
+     * @param key a key from key()
+     * @return whether the key holds an unexpired successful verification
+     */
+    boolean contains(ByteBuffer key) {
+        long started = CryptoMetrics.VERIFY_CACHE_HIT.begin();
+        Long expiry = entries.get(key);
+        boolean hit = expiry != null && expiry - System.nanoTime() > 0;
+        if (expiry != null && !hit) entries.remove(key, expiry);
+        if (hit) {
+            hits.increment();
+            CryptoMetrics.VERIFY_CACHE_HIT.end(started, 0);
+        }
+        else {
+            misses.increment();
+            CryptoMetrics.VERIFY_CACHE_MISS.end(started, 0);
+        }
+        return hit;
+    }
+
+    /**
+     * Record a successful verification
+     * @param key a key from key()
+     */
+    void put(ByteBuffer key) {
+        long now = System.nanoTime();
+        entries.put(key, now + ttlNanos);
+        if (entries.size() > maxEntries && evicting.compareAndSet(false, true)) {
+            try {
+                evict(now);
+            }
+            finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    private void evict(long now) {
+        entries.values().removeIf(expiry -> expiry - now <= 0);
+        int target = maxEntries - maxEntries / 4;
+        Iterator<Map.Entry<ByteBuffer, Long>> it = entries.entrySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /** @return the number of lookups that found a cached verification */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** @return the number of lookups that had to verify */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** @return the number of cached verifications, including expired ones not yet removed */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Drop every cached verification */
+    public void clear() {
+        entries.clear();
+    }
+}
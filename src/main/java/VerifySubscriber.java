@@ -0,0 +1,46 @@
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Flow subscriber verifying a signature (h, z) over a streamed message.
+ * U <- z*G + h*V is computed up front, so the message only has to be absorbed once
+ * into KMACXOF256(U_x, m, 512, "T").
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+public class VerifySubscriber extends HashSubscriber {
+
+    /** The expected challenge h */
+    private final BigInteger h;
+
+    /**
+     * Create a subscriber verifying the signature hz under the public key V
+     * @param hz the signature (h, z)
+     * @param V the public key
+     */
+    public VerifySubscriber(BigInteger[] hz, E521 V) {
+        super(challengeKey(hz, V), "T");
+        this.h = hz[0];
+    }
+
+    /**
+     * Whether the signature is valid, available once the stream completes
+     * @return the future verification result
+     */
+    public CompletableFuture<Boolean> verified() {
+        return result().thenApply(tempH -> {
+            byte[] hArr = new byte[65];
+            System.arraycopy(tempH, 0, hArr, 1, tempH.length);
+            return new BigInteger(hArr).equals(h);
+        });
+    }
+
+    private static String challengeKey(BigInteger[] hz, E521 V) {
+        // U <- z*G + h*V
+        E521 U = ECKey.G.multiply(hz[1]).add(V.multiply(hz[0]));
+        return Symmetric.byteArrayToString(U.getX().toByteArray());
+    }
+}
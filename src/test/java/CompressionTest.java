@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compression round trips across chunk boundaries and for incompressible input, and
+ * rejection of every kind of malformed chunk framing by decompress.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class CompressionTest {
+
+    private static final byte STORED = 0;
+    private static final byte DEFLATED = 1;
+
+    /** Text-like input that deflates well */
+    private static byte[] compressible(int n) {
+        byte[] line = "the quick brown fox jumps over the lazy dog 0123456789\n".getBytes();
+        byte[] m = new byte[n];
+        for (int i = 0; i < n; i++) m[i] = line[i % line.length];
+        return m;
+    }
+
+    private static byte[] random(int n, long seed) {
+        byte[] m = new byte[n];
+        new Random(seed).nextBytes(m);
+        return m;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] out = new byte[raw.length + 64];
+        int n = 0;
+        while (!deflater.finished()) n += deflater.deflate(out, n, out.length - n);
+        deflater.end();
+        return Arrays.copyOf(out, n);
+    }
+
+    /** A DEFLATED chunk claiming rawLen bytes with the given data */
+    private static byte[] deflatedChunk(int rawLen, byte[] data) {
+        return ByteBuffer.allocate(9 + data.length).put(DEFLATED).putInt(rawLen).putInt(data.length).put(data).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int len = 0;
+        for (byte[] p : parts) len += p.length;
+        ByteBuffer b = ByteBuffer.allocate(len);
+        for (byte[] p : parts) b.put(p);
+        return b.array();
+    }
+
+    @Test
+    void roundTrip() {
+        int chunk = Compression.CHUNK_SIZE;
+        for (int len : new int[] {1, 100, chunk - 1, chunk, chunk + 1, 3 * chunk + 17}) {
+            byte[] m = compressible(len);
+            byte[] stream = Compression.compress(m);
+            if (len > 100) assertNotNull(stream, len + " bytes");
+            if (stream != null) {
+                assertTrue(stream.length < m.length);
+                assertArrayEquals(m, Compression.decompress(stream), len + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void incompressibleChunksAreStored() {
+        assertNull(Compression.compress(new byte[0]));
+        assertNull(Compression.compress(random(1000, 1)), "nothing to gain");
+
+        // one random chunk between compressible ones is stored, the stream still shrinks
+        int chunk = Compression.CHUNK_SIZE;
+        byte[] m = concat(compressible(chunk), random(chunk, 2), compressible(chunk));
+        byte[] stream = Compression.compress(m);
+        assertNotNull(stream);
+        assertArrayEquals(m, Compression.decompress(stream));
+    }
+
+    @Test
+    void rejectsMalformedFraming() {
+        byte[] raw = compressible(1000);
+        byte[] data = deflate(raw);
+        byte[] good = deflatedChunk(raw.length, data);
+        assertArrayEquals(raw, Compression.decompress(good));
+        assertArrayEquals(new byte[0], Compression.decompress(new byte[0]));
+
+        byte[][] malformed = {
+                {STORED},                                                              // truncated header
+                {STORED, 0, 0, 0},
+                ByteBuffer.allocate(5).put((byte) 7).putInt(1).array(),                // unknown type
+                ByteBuffer.allocate(5).put(STORED).putInt(0).array(),                  // empty chunk
+                ByteBuffer.allocate(5).put(STORED).putInt(-1).array(),                 // negative length
+                ByteBuffer.allocate(6).put(STORED).putInt(Compression.CHUNK_SIZE + 1).put((byte) 0).array(),
+                ByteBuffer.allocate(7).put(STORED).putInt(3).put(new byte[2]).array(), // stored bytes missing
+                ByteBuffer.allocate(7).put(DEFLATED).putInt(3).put(new byte[2]).array(), // dataLen missing
+                ByteBuffer.allocate(9).put(DEFLATED).putInt(3).putInt(-1).array(),    // negative dataLen
+                deflatedChunk(raw.length, Arrays.copyOf(data, data.length - 1)),         // truncated deflate
+                Arrays.copyOf(good, good.length - 1),                                 // dataLen past the end
+                deflatedChunk(raw.length + 1, data),                                  // inflates to fewer bytes
+                deflatedChunk(raw.length - 1, data),                                  // inflates to more bytes
+                deflatedChunk(raw.length, concat(data, new byte[] {1, 2, 3})),        // bytes after the deflate end
+                deflatedChunk(raw.length, random(200, 3)),                            // not deflate data
+                concat(good, new byte[] {STORED, 0, 0}),                              // a truncated second chunk
+        };
+        for (int i = 0; i < malformed.length; i++) assertNull(Compression.decompress(malformed[i]), "case " + i);
+    }
+}
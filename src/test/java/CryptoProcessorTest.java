@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import javax.crypto.AEADBadTagException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The streaming processors driven by hand: outputs follow demand, a failure is reported as
+ * soon as the upstream finishes and drops what is still buffered, and a modified tag fails
+ * the stream.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class CryptoProcessorTest {
+
+    private static final String PW = "correct horse battery staple";
+
+    /** A downstream subscriber that records what it receives and requests on demand */
+    private static final class Collector implements Flow.Subscriber<ByteBuffer> {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            byte[] b = new byte[item.remaining()];
+            item.get(b);
+            received.writeBytes(b);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    /** An upstream subscription that counts requests */
+    private static final class Upstream implements Flow.Subscription {
+        long requested;
+        boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /** Feed data through processor in pieces of the given size, requesting everything */
+    private static Collector run(CryptoProcessor processor, byte[] data, int piece) {
+        Collector collector = new Collector();
+        processor.subscribe(collector);
+        processor.onSubscribe(new Upstream());
+        collector.subscription.request(Long.MAX_VALUE);
+        for (int off = 0; off < data.length; off += piece) {
+            processor.onNext(ByteBuffer.wrap(data, off, Math.min(piece, data.length - off)));
+        }
+        processor.onComplete();
+        return collector;
+    }
+
+    @Test
+    void roundTrip() {
+        byte[] m = TestBytes.ptn(10_000);
+        byte[] cryptogram = run(EncryptProcessor.symmetric(PW), m, 1000).received.toByteArray();
+        Collector decrypted = run(DecryptProcessor.symmetric(PW), cryptogram, 777);
+        assertTrue(decrypted.completed);
+        assertArrayEquals(m, decrypted.received.toByteArray());
+    }
+
+    @Test
+    void modifiedTagFailsTheStream() {
+        byte[] cryptogram = run(EncryptProcessor.symmetric(PW), TestBytes.ptn(1000), 1000).received.toByteArray();
+        cryptogram[cryptogram.length - 1] ^= 1;
+        Collector decrypted = run(DecryptProcessor.symmetric(PW), cryptogram, 100);
+        assertFalse(decrypted.completed);
+        assertInstanceOf(AEADBadTagException.class, decrypted.error);
+    }
+
+    @Test
+    void failureDropsPendingOutputs() {
+        byte[] cryptogram = run(EncryptProcessor.symmetric(PW), TestBytes.ptn(1000), 1000).received.toByteArray();
+        DecryptProcessor processor = DecryptProcessor.symmetric(PW);
+        Collector collector = new Collector();
+        processor.subscribe(collector);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+
+        // no demand yet: the decrypted item stays buffered
+        processor.onNext(ByteBuffer.wrap(cryptogram, 0, 500));
+        assertEquals(1, processor.queueDepth());
+
+        processor.onError(new IllegalStateException("upstream failed"));
+        assertInstanceOf(IllegalStateException.class, collector.error);
+        assertEquals(0, processor.queueDepth());
+        assertEquals(0, collector.received.size());
+
+        collector.subscription.request(1);
+        assertEquals(0, collector.received.size());
+    }
+}
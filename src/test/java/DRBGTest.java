@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * DRBG seeding and reseeding, driven by a scripted entropy source: twin generators agree
+ * until their entropy differs, a reseed happens after exactly RESEED_INTERVAL requests,
+ * and the output entry points agree with each other.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class DRBGTest {
+
+    /** An entropy source that fills each request with a fixed byte and counts the requests */
+    private static final class ScriptedEntropy extends SecureRandom {
+        private final byte[] script;
+        int calls;
+
+        /** @param script the fill byte of each request; the last one repeats */
+        ScriptedEntropy(int... script) {
+            this.script = new byte[script.length];
+            for (int i = 0; i < script.length; i++) this.script[i] = (byte) script[i];
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            Arrays.fill(bytes, script[Math.min(calls, script.length - 1)]);
+            calls++;
+        }
+    }
+
+    private static byte[] next(DRBG drbg, int n) {
+        byte[] out = new byte[n];
+        drbg.nextBytes(out);
+        return out;
+    }
+
+    @Test
+    void sameEntropySameOutput() {
+        DRBG a = new DRBG(new ScriptedEntropy(1));
+        DRBG b = new DRBG(new ScriptedEntropy(1));
+        for (int n : new int[] {0, 1, 64, 136, 1000, 70_000}) assertArrayEquals(next(a, n), next(b, n), n + " bytes");
+        assertFalse(Arrays.equals(next(new DRBG(new ScriptedEntropy(2)), 64), next(new DRBG(new ScriptedEntropy(1)), 64)));
+    }
+
+    @Test
+    void outputsNeverRepeat() {
+        DRBG drbg = new DRBG(new ScriptedEntropy(1));
+        byte[] first = next(drbg, 64);
+        for (int i = 0; i < 100; i++) assertFalse(Arrays.equals(first, next(drbg, 64)), "request " + i);
+    }
+
+    @Test
+    void explicitReseedMixesInEntropyAndTheOldKey() {
+        ScriptedEntropy entropyA = new ScriptedEntropy(1, 2);
+        ScriptedEntropy entropyB = new ScriptedEntropy(1, 2);
+        DRBG a = new DRBG(entropyA);
+        DRBG b = new DRBG(entropyB);
+        next(a, 10);
+        a.reseed();
+        assertEquals(2, entropyA.calls);
+        assertFalse(Arrays.equals(next(a, 64), next(b, 64)), "a reseeded, b did not");
+
+        // the same entropy on top of different keys still gives different generators
+        DRBG c = new DRBG(new ScriptedEntropy(1, 2));
+        DRBG d = new DRBG(new ScriptedEntropy(1, 2));
+        next(c, 10);
+        c.reseed();
+        d.reseed();
+        assertFalse(Arrays.equals(next(c, 64), next(d, 64)));
+    }
+
+    @Test
+    void reseedsAfterTheInterval() {
+        // twins whose entropy differs only from the first reseed on
+        ScriptedEntropy entropyA = new ScriptedEntropy(1, 2);
+        ScriptedEntropy entropyB = new ScriptedEntropy(1, 3);
+        DRBG a = new DRBG(entropyA);
+        DRBG b = new DRBG(entropyB);
+        byte[] one = new byte[1];
+        byte[] other = new byte[1];
+        for (int i = 0; i < DRBG.RESEED_INTERVAL; i++) {
+            a.nextBytes(one);
+            b.nextBytes(other);
+            assertEquals(one[0], other[0], "request " + i);
+        }
+        assertEquals(1, entropyA.calls);
+        assertFalse(Arrays.equals(next(a, 64), next(b, 64)));
+        assertEquals(2, entropyA.calls);
+        assertEquals(2, entropyB.calls);
+    }
+
+    @Test
+    void arrayRangeAndBufferAgree() {
+        DRBG a = new DRBG(new ScriptedEntropy(7));
+        DRBG b = new DRBG(new ScriptedEntropy(7));
+        DRBG c = new DRBG(new ScriptedEntropy(7));
+        for (int n : new int[] {1, 100, 1 << 16, (1 << 16) + 1}) {
+            byte[] expected = next(a, n);
+            byte[] range = new byte[n + 6];
+            b.nextBytes(range, 3, n);
+            assertArrayEquals(expected, Arrays.copyOfRange(range, 3, 3 + n), n + " bytes");
+            ByteBuffer direct = ByteBuffer.allocateDirect(n);
+            c.nextBytes(direct);
+            byte[] buffered = new byte[n];
+            direct.flip().get(buffered);
+            assertArrayEquals(expected, buffered, n + " bytes");
+        }
+    }
+}
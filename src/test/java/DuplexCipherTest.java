@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trips and tamper rejection for the duplex mode, with and without associated data
+ * and across the 135-byte block boundaries of both the message and the associated data.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class DuplexCipherTest {
+
+    private static final String PW = "correct horse battery staple";
+
+    private static final int[] LENGTHS = {0, 1, 134, 135, 136, 270, 271, 1000};
+
+    @Test
+    void roundTrip() {
+        for (int len : LENGTHS) {
+            byte[] m = TestBytes.ptn(len);
+            byte[] zct = DuplexCipher.encrypt(PW, m);
+            assertEquals(DuplexCipher.MODE_DUPLEX, zct[0]);
+            assertEquals(1 + 64 + len + 64, zct.length);
+            assertArrayEquals(m, DuplexCipher.decrypt(PW, zct).orElseThrow(), len + " bytes");
+        }
+    }
+
+    @Test
+    void roundTripWithAssociatedData() {
+        for (int adLen : LENGTHS) {
+            byte[] ad = Symmetric.SHAKE128(TestBytes.ptn(adLen), 8 * adLen);
+            byte[] m = TestBytes.ptn(300);
+            byte[] zct = DuplexCipher.encrypt(PW, m, ad);
+            assertArrayEquals(m, DuplexCipher.decrypt(PW, zct, ad).orElseThrow(), adLen + " bytes of AD");
+        }
+    }
+
+    @Test
+    void rejectsTampering() {
+        byte[] m = TestBytes.ptn(200);
+        byte[] ad = "header".getBytes();
+        byte[] zct = DuplexCipher.encrypt(PW, m, ad);
+        TestBytes.assertTamperRejected(zct, c -> DuplexCipher.decrypt(PW, c, ad));
+        assertFalse(DuplexCipher.decrypt(PW + "!", zct, ad).isPresent());
+        assertFalse(DuplexCipher.decrypt(PW, new byte[0]).isPresent());
+    }
+
+    @Test
+    void rejectsDifferentAssociatedData() {
+        byte[] m = TestBytes.ptn(200);
+        byte[] zct = DuplexCipher.encrypt(PW, m, "header".getBytes());
+        assertFalse(DuplexCipher.decrypt(PW, zct).isPresent());
+        assertFalse(DuplexCipher.decrypt(PW, zct, "Header".getBytes()).isPresent());
+        assertFalse(DuplexCipher.decrypt(PW, zct, "header\0".getBytes()).isPresent());
+
+        // a final empty AD block and a missing one are distinct
+        byte[] ad135 = TestBytes.ptn(135);
+        zct = DuplexCipher.encrypt(PW, m, ad135);
+        assertFalse(DuplexCipher.decrypt(PW, zct, TestBytes.ptn(136)).isPresent());
+        assertFalse(DuplexCipher.decrypt(PW, zct, TestBytes.ptn(134)).isPresent());
+    }
+}
@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trips and tamper rejection for the encrypt-then-MAC modes: symmetric MODE_ETM and
+ * MODE_ETM128, with and without compression, and CryptEC.MODE_ETM, including a Z that is
+ * not on the curve.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class EncryptThenMacTest {
+
+    private static final String PW = "correct horse battery staple";
+
+    /** Lengths around the rates of KMACXOF256 (136) and KMACXOF128 (168) */
+    private static final int[] LENGTHS = {0, 1, 135, 136, 137, 167, 168, 169, 1000};
+
+    @Test
+    void etmRoundTrip() {
+        for (int len : LENGTHS) {
+            byte[] m = TestBytes.ptn(len);
+            byte[] zct = Symmetric.symmetricEncryptEtM(PW, m);
+            assertEquals(Symmetric.MODE_ETM, zct[0]);
+            assertEquals(1 + 64 + len + 64, zct.length);
+            assertArrayEquals(m, Symmetric.symmetricDecryptEtM(PW, zct).orElseThrow(), len + " bytes");
+        }
+    }
+
+    @Test
+    void etm128RoundTrip() {
+        for (int len : LENGTHS) {
+            byte[] m = TestBytes.ptn(len);
+            byte[] zct = Symmetric.symmetricEncryptEtM128(PW, m);
+            assertEquals(Symmetric.MODE_ETM128, zct[0]);
+            assertEquals(1 + 32 + len + 32, zct.length);
+            assertArrayEquals(m, Symmetric.symmetricDecryptEtM(PW, zct).orElseThrow(), len + " bytes");
+        }
+    }
+
+    @Test
+    void etmRejectsTampering() {
+        byte[] m = TestBytes.ptn(200);
+        TestBytes.assertTamperRejected(Symmetric.symmetricEncryptEtM(PW, m), zct -> Symmetric.symmetricDecryptEtM(PW, zct));
+        TestBytes.assertTamperRejected(Symmetric.symmetricEncryptEtM128(PW, m), zct -> Symmetric.symmetricDecryptEtM(PW, zct));
+        assertFalse(Symmetric.symmetricDecryptEtM(PW + "!", Symmetric.symmetricEncryptEtM(PW, m)).isPresent());
+        assertFalse(Symmetric.symmetricDecryptEtM(PW + "!", Symmetric.symmetricEncryptEtM128(PW, m)).isPresent());
+        assertFalse(Symmetric.symmetricDecryptEtM(PW, new byte[0]).isPresent());
+    }
+
+    @Test
+    void keysUseEveryNonceByte() {
+        // 80 and 81 are both invalid UTF-8 and would decode to the same U+FFFD String
+        byte[] z1 = new byte[64];
+        byte[] z2 = new byte[64];
+        Arrays.fill(z1, (byte) 0x80);
+        Arrays.fill(z2, (byte) 0x81);
+        assertFalse(Arrays.equals(Symmetric.etmSponges(z1, PW)[0].squeeze(64), Symmetric.etmSponges(z2, PW)[0].squeeze(64)));
+    }
+
+    @Test
+    void nonceMakesCryptogramsDistinct() {
+        byte[] m = TestBytes.ptn(64);
+        assertFalse(Arrays.equals(Symmetric.symmetricEncryptEtM(PW, m), Symmetric.symmetricEncryptEtM(PW, m)));
+    }
+
+    @Test
+    void compressedRoundTrip() {
+        byte[] m = new byte[4096];
+        Arrays.fill(m, (byte) 'a');
+        for (byte[] zct : new byte[][] {Symmetric.symmetricEncryptEtM(PW, m, true),
+                Symmetric.symmetricEncryptEtM128(PW, m, true)}) {
+            assertNotEquals(0, zct[0] & Compression.FLAG_COMPRESSED);
+            assertTrue(zct.length < m.length);
+            assertArrayEquals(m, Symmetric.symmetricDecryptEtM(PW, zct).orElseThrow());
+
+            // the flag is covered by the tag
+            byte[] cleared = zct.clone();
+            cleared[0] &= ~Compression.FLAG_COMPRESSED;
+            assertFalse(Symmetric.symmetricDecryptEtM(PW, cleared).isPresent());
+        }
+    }
+
+    @Test
+    void incompressibleMessageIsStoredRaw() {
+        byte[] m = Symmetric.SHAKE128(new byte[0], 8 * 1000);
+        byte[] zct = Symmetric.symmetricEncryptEtM(PW, m, true);
+        assertEquals(Symmetric.MODE_ETM, zct[0]);
+        assertArrayEquals(m, Symmetric.symmetricDecryptEtM(PW, zct).orElseThrow());
+    }
+
+    @Test
+    void ellipticRoundTripAndTampering() {
+        E521 V = new ECKey(PW.getBytes()).getPublicKey();
+        for (int len : new int[] {0, 1, 136, 1000}) {
+            byte[] m = TestBytes.ptn(len);
+            byte[] zct = CryptEC.encryptEtM(m, V);
+            assertEquals(CryptEC.MODE_ETM, zct[0]);
+            assertArrayEquals(m, CryptEC.decryptEtM(zct, PW).orElseThrow(), len + " bytes");
+        }
+        byte[] zct = CryptEC.encryptEtM(TestBytes.ptn(100), V);
+        assertFalse(CryptEC.decryptEtM(zct, PW + "!").isPresent());
+        assertFalse(CryptEC.decryptEtM(TestBytes.flip(zct, 0), PW).isPresent());
+        assertFalse(CryptEC.decryptEtM(TestBytes.flip(zct, zct.length - 100 - 64), PW).isPresent());
+        assertFalse(CryptEC.decryptEtM(TestBytes.flip(zct, zct.length - 1), PW).isPresent());
+        assertFalse(CryptEC.decryptEtM(Arrays.copyOf(zct, zct.length - 1), PW).isPresent());
+    }
+
+    @Test
+    void ellipticRejectsZOffTheCurve() {
+        E521 V = new ECKey(PW.getBytes()).getPublicKey();
+        byte[] zct = CryptEC.encryptEtM(TestBytes.ptn(100), V);
+        byte[] offCurve = new E521(BigInteger.ONE, BigInteger.TWO).getBytes();
+        assertFalse(new E521(BigInteger.ONE, BigInteger.TWO).isOnCurve());
+        System.arraycopy(offCurve, 0, zct, 1, offCurve.length);
+        assertFalse(CryptEC.decryptEtM(zct, PW).isPresent());
+    }
+}
@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * EphemeralKeyPool hands out every pair once, refills above the low-water mark after takes,
+ * and is configured from the crypto.ephemeralPool property.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class EphemeralKeyPoolTest {
+
+    private static final int CAPACITY = 16;
+    private static final int LOW_WATER = 4;
+
+    /** Wait up to 30 seconds for the pool to hold at least n pairs */
+    private static void awaitAvailable(EphemeralKeyPool pool, int n) throws InterruptedException {
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (pool.available() < n && System.nanoTime() < deadline) Thread.sleep(10);
+        assertTrue(pool.available() >= n, pool.available() + " pairs ready, expected " + n);
+    }
+
+    @Test
+    void everyPairIsHandedOutOnce() throws InterruptedException {
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(CAPACITY, LOW_WATER, 2)) {
+            awaitAvailable(pool, CAPACITY);
+            Set<BigInteger> seen = new HashSet<>();
+            for (int i = 0; i < 3 * CAPACITY; i++) {
+                EphemeralKeyPool.Ephemeral e = pool.take();
+                assertTrue(seen.add(e.k()), "pair " + i + " handed out twice");
+                assertTrue(e.Z().equals(ECKey.G.multiply(e.k())), "Z = k*G");
+            }
+            assertEquals(3L * CAPACITY, pool.hits() + pool.misses());
+        }
+    }
+
+    @Test
+    void refillStaysAboveLowWater() throws InterruptedException {
+        try (EphemeralKeyPool pool = new EphemeralKeyPool(CAPACITY, LOW_WATER, 1)) {
+            awaitAvailable(pool, CAPACITY);
+            for (int round = 0; round < 3; round++) {
+                // take down to the low-water mark; the last take starts the refill
+                while (pool.available() > LOW_WATER) pool.take();
+                awaitAvailable(pool, CAPACITY);
+            }
+            assertTrue(pool.hits() > 0);
+            assertEquals(0, pool.misses(), "a take found the pool empty");
+        }
+    }
+
+    @Test
+    void closedPoolStillComputesPairs() {
+        EphemeralKeyPool pool = new EphemeralKeyPool(CAPACITY, LOW_WATER, 1);
+        pool.close();
+        assertEquals(0, pool.available());
+        EphemeralKeyPool.Ephemeral e = pool.take();
+        assertTrue(e.Z().equals(ECKey.G.multiply(e.k())));
+    }
+
+    @Test
+    void systemProperty() {
+        String saved = System.getProperty("crypto.ephemeralPool");
+        try {
+            System.clearProperty("crypto.ephemeralPool");
+            assertNull(EphemeralKeyPool.fromSystemProperties());
+
+            System.setProperty("crypto.ephemeralPool", "8, 2, 1");
+            try (EphemeralKeyPool pool = EphemeralKeyPool.fromSystemProperties()) {
+                assertNotNull(pool);
+            }
+
+            for (String bad : new String[] {"8,2", "8,x,1", "8,8,1", "0,0,1"}) {
+                System.setProperty("crypto.ephemeralPool", bad);
+                assertThrows(IllegalArgumentException.class, EphemeralKeyPool::fromSystemProperties, bad);
+            }
+        }
+        finally {
+            if (saved == null) System.clearProperty("crypto.ephemeralPool");
+            else System.setProperty("crypto.ephemeralPool", saved);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Field521 limb arithmetic and the decompression chain against BigInteger, on edge values
+ * and on seeded random values, including inputs left unreduced by a previous operation.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class Field521Test {
+
+    private static final BigInteger P = E521.P;
+
+    private static final BigInteger[] EDGES = {
+            BigInteger.ZERO, BigInteger.ONE, BigInteger.TWO, P.subtract(BigInteger.ONE), P.subtract(BigInteger.TWO),
+            BigInteger.ONE.shiftLeft(520), BigInteger.ONE.shiftLeft(58), BigInteger.ONE.shiftLeft(58).subtract(BigInteger.ONE)
+    };
+
+    private static BigInteger[] values() {
+        Random random = new Random(521);
+        BigInteger[] values = new BigInteger[EDGES.length + 200];
+        System.arraycopy(EDGES, 0, values, 0, EDGES.length);
+        for (int i = EDGES.length; i < values.length; i++) values[i] = new BigInteger(521, random).mod(P);
+        return values;
+    }
+
+    private static long[] limbs(BigInteger a) {
+        return Field521.fromBigInteger(a);
+    }
+
+    @Test
+    void roundTrip() {
+        for (BigInteger a : values()) assertEquals(a, Field521.toBigInteger(limbs(a)));
+    }
+
+    @Test
+    void mulAndSqr() {
+        BigInteger[] values = values();
+        for (int i = 0; i < values.length; i++) {
+            BigInteger a = values[i];
+            BigInteger b = values[(i * 7 + 3) % values.length];
+            long[] out = new long[Field521.LIMBS];
+            Field521.mul(limbs(a), limbs(b), out);
+            assertEquals(a.multiply(b).mod(P), Field521.toBigInteger(out), "a * b");
+            Field521.sqr(limbs(a), out);
+            assertEquals(a.multiply(a).mod(P), Field521.toBigInteger(out), "a^2");
+        }
+    }
+
+    @Test
+    void chainedUnreducedValues() {
+        for (BigInteger a : values()) {
+            long[] t = limbs(a);
+            BigInteger expected = a;
+            for (int i = 0; i < 20; i++) {
+                Field521.sqr(t, t);
+                Field521.mul(t, limbs(a), t);
+                expected = expected.multiply(expected).multiply(a).mod(P);
+            }
+            assertEquals(expected, Field521.toBigInteger(t));
+        }
+    }
+
+    @Test
+    void powOnes() {
+        BigInteger[] values = values();
+        for (int k : new int[] {1, 2, 3, 5, 8, 13, 64, 519}) {
+            BigInteger e = BigInteger.ONE.shiftLeft(k).subtract(BigInteger.ONE);
+            for (int i = 0; i < 20; i++) {
+                long[] out = new long[Field521.LIMBS];
+                Field521.powOnes(limbs(values[i]), k, out);
+                assertEquals(values[i].modPow(e, P), Field521.toBigInteger(out), "k = " + k);
+            }
+        }
+    }
+
+    @Test
+    void recoverYMatchesModularSquareRoot() {
+        Random random = new Random(41);
+        for (int i = 0; i < 100; i++) {
+            BigInteger x = i == 0 ? BigInteger.ZERO : new BigInteger(521, random).mod(P);
+            BigInteger x2 = x.multiply(x);
+            BigInteger u = BigInteger.ONE.subtract(x2).mod(P);
+            BigInteger v = BigInteger.ONE.subtract(E521.D.multiply(x2)).mod(P);
+            for (boolean lsb : new boolean[] {false, true}) {
+                // y = sqrt((1 - x^2) / (1 - d x^2)) mod p with BigInteger.modPow and modInverse
+                BigInteger expected = E521.sqrt(u.multiply(v.modInverse(P)).mod(P), P, lsb);
+                BigInteger y = E521.recoverY(x, lsb);
+                if (expected == null) assertNull(y, "x has no point");
+                else assertEquals(expected, y);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Fixed-base multiplication through the generator table against plain double-and-add on a
+ * copy of G, for random scalars and the edges 0, r and the 528-bit boundary, and the
+ * fallback to a rebuilt table when the resource fails its CRC or holds a point off the curve.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class GeneratorTableTest {
+
+    /** A copy of G, which E521.multiply never sends to the table */
+    private static final E521 PLAIN_G = new E521(ECKey.G);
+
+    /** Offset of the first coordinate in the resource, after the header */
+    private static final int HEADER_LEN = 8;
+
+    private static void assertSameAsDoubleAndAdd(BigInteger s, E521 V) {
+        E521 expected = PLAIN_G.multiply(s);
+        assertTrue(expected.equals(V), "s = " + s.toString(16));
+    }
+
+    private static BigInteger[] scalars() {
+        Random random = new Random(528);
+        BigInteger two528 = BigInteger.ONE.shiftLeft(GeneratorTable.BITS);
+        BigInteger[] edges = {
+                BigInteger.ZERO, BigInteger.ONE, BigInteger.valueOf(15), BigInteger.valueOf(16),
+                E521.R, E521.R.subtract(BigInteger.ONE), E521.R.add(BigInteger.ONE), E521.R.shiftLeft(2),
+                two528.subtract(BigInteger.ONE), two528.shiftRight(1), two528, two528.add(BigInteger.ONE)
+        };
+        BigInteger[] scalars = new BigInteger[edges.length + 40];
+        System.arraycopy(edges, 0, scalars, 0, edges.length);
+        for (int i = edges.length; i < scalars.length; i++) {
+            scalars[i] = new BigInteger(1 + random.nextInt(GeneratorTable.BITS), random);
+        }
+        return scalars;
+    }
+
+    @Test
+    void tableMatchesDoubleAndAdd() {
+        for (BigInteger s : scalars()) assertSameAsDoubleAndAdd(s, ECKey.G.multiply(s));
+    }
+
+    @Test
+    void intactResourceIsUsed() {
+        byte[] resource = GeneratorTable.read();
+        assertNotNull(resource);
+        GeneratorTable table = new GeneratorTable(resource);
+        BigInteger s = BigInteger.ONE.shiftLeft(GeneratorTable.BITS).subtract(BigInteger.ONE);
+        assertSameAsDoubleAndAdd(s, table.times(s));
+        assertFalse(table.isRebuilt());
+    }
+
+    @Test
+    void corruptedCrcFallsBackToRebuilding() {
+        byte[] resource = GeneratorTable.read().clone();
+        resource[HEADER_LEN + 1000] ^= 1;
+        GeneratorTable table = new GeneratorTable(resource);
+        for (BigInteger s : scalars()) {
+            if (s.signum() > 0 && s.bitLength() <= GeneratorTable.BITS) assertSameAsDoubleAndAdd(s, table.times(s));
+        }
+        assertTrue(table.isRebuilt());
+
+        assertTrue(rebuiltAfterOne(null), "missing resource");
+        assertTrue(rebuiltAfterOne(new byte[100]), "truncated resource");
+    }
+
+    @Test
+    void entryOffTheCurveFallsBackToRebuilding() {
+        // damage entry (0, 1) = 2G and fix up the CRC, so only the curve check can catch it
+        byte[] resource = GeneratorTable.read().clone();
+        resource[HEADER_LEN + 2 * E521.COMPRESSED_LEN + 10] ^= 1;
+        CRC32C crc = new CRC32C();
+        crc.update(resource, 0, resource.length - 4);
+        ByteBuffer.wrap(resource).putInt(resource.length - 4, (int) crc.getValue());
+
+        GeneratorTable table = new GeneratorTable(resource);
+        assertSameAsDoubleAndAdd(BigInteger.ONE, table.times(BigInteger.ONE));
+        assertFalse(table.isRebuilt(), "G itself is intact");
+        assertSameAsDoubleAndAdd(BigInteger.TWO, table.times(BigInteger.TWO));
+        assertTrue(table.isRebuilt());
+    }
+
+    private static boolean rebuiltAfterOne(byte[] resource) {
+        GeneratorTable table = new GeneratorTable(resource);
+        assertSameAsDoubleAndAdd(BigInteger.ONE, table.times(BigInteger.ONE));
+        return table.isRebuilt();
+    }
+}
@@ -0,0 +1,177 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * HashCache persistence and recovery: reopening, a torn or damaged record and everything
+ * after it dropped and overwritten, compaction of replaced records, eviction of the least
+ * recently stored entries, and strict mode.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class HashCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private static HashCache.Key key(int i) {
+        return new HashCache.Key("/data/file" + i, "KMACXOF256", 1000 + i, 1_700_000_000_000L + i, "(dev=1,ino=" + i + ")");
+    }
+
+    private static byte[] digest(int i) {
+        byte[] d = new byte[64];
+        Arrays.fill(d, (byte) i);
+        return d;
+    }
+
+    private static void assertHas(HashCache cache, int... is) {
+        for (int i : is) assertArrayEquals(digest(i), cache.lookup(key(i)), "entry " + i);
+    }
+
+    @Test
+    void storeAndReopen() throws IOException {
+        Path file = dir.resolve("cache");
+        HashCache cache = new HashCache(file, false, 100);
+        for (int i = 0; i < 5; i++) assertTrue(cache.store(key(i), digest(i)));
+        assertHas(cache, 0, 1, 2, 3, 4);
+
+        HashCache reopened = new HashCache(file, false, 100);
+        assertEquals(5, reopened.size());
+        assertHas(reopened, 0, 1, 2, 3, 4);
+
+        // a changed file (new size and mtime) misses, its new digest replaces the old one
+        HashCache.Key changed = new HashCache.Key(key(2).path(), key(2).algorithm(), 5, 6, key(2).fileKey());
+        assertNull(reopened.lookup(changed));
+        reopened.store(changed, digest(9));
+        assertNull(reopened.lookup(key(2)));
+        assertArrayEquals(digest(9), new HashCache(file, false, 100).lookup(changed));
+    }
+
+    @Test
+    void tornRecordIsTruncatedAndOverwritten() throws IOException {
+        Path file = dir.resolve("cache");
+        HashCache cache = new HashCache(file, false, 100);
+        for (int i = 0; i < 3; i++) cache.store(key(i), digest(i));
+        long complete = Files.size(file);
+
+        // a crash part-way through the fourth append
+        cache.store(key(3), digest(3));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, (int) complete + (bytes.length - (int) complete) / 2));
+
+        HashCache reopened = new HashCache(file, false, 100);
+        assertEquals(3, reopened.size());
+        assertNull(reopened.lookup(key(3)));
+        reopened.store(key(4), digest(4));
+
+        HashCache again = new HashCache(file, false, 100);
+        assertEquals(4, again.size());
+        assertHas(again, 0, 1, 2, 4);
+    }
+
+    @Test
+    void damagedRecordDropsEverythingAfterIt() throws IOException {
+        Path file = dir.resolve("cache");
+        HashCache cache = new HashCache(file, false, 100);
+        cache.store(key(0), digest(0));
+        long first = Files.size(file);
+        for (int i = 1; i < 4; i++) cache.store(key(i), digest(i));
+
+        // flip a byte inside the second record's payload, which fails its CRC
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) first + 20] ^= 1;
+        Files.write(file, bytes);
+
+        HashCache reopened = new HashCache(file, false, 100);
+        assertEquals(1, reopened.size());
+        assertHas(reopened, 0);
+        reopened.store(key(5), digest(5));
+        assertHas(new HashCache(file, false, 100), 0, 5);
+    }
+
+    @Test
+    void foreignFileStartsOver() throws IOException {
+        Path file = Files.write(dir.resolve("cache"), "not a cache".getBytes());
+        HashCache cache = new HashCache(file, false, 100);
+        assertEquals(0, cache.size());
+        cache.store(key(1), digest(1));
+        assertHas(new HashCache(file, false, 100), 1);
+    }
+
+    @Test
+    void replacedRecordsAreCompacted() throws IOException {
+        Path file = dir.resolve("cache");
+        HashCache cache = new HashCache(file, false, 100);
+        cache.store(key(0), digest(0));
+        long oneRecord = Files.size(file);
+
+        // the same path re-hashed after every modification: one live entry, many records
+        for (int i = 1; i <= 1100; i++) {
+            HashCache.Key k = new HashCache.Key("/data/log", "KMACXOF256", i, i, "");
+            cache.store(k, digest(i & 0x7f));
+        }
+        assertEquals(2, cache.size());
+        assertTrue(Files.size(file) < 200 * oneRecord, "compacted to " + Files.size(file) + " bytes");
+
+        HashCache reopened = new HashCache(file, false, 100);
+        assertEquals(2, reopened.size());
+        assertHas(reopened, 0);
+        assertArrayEquals(digest(1100 & 0x7f), reopened.lookup(new HashCache.Key("/data/log", "KMACXOF256", 1100, 1100, "")));
+    }
+
+    @Test
+    void leastRecentlyStoredEntriesAreEvicted() throws IOException, InterruptedException {
+        Path file = dir.resolve("cache");
+        HashCache cache = new HashCache(file, false, 3);
+        for (int i = 0; i < 5; i++) {
+            cache.store(key(i), digest(i));
+            Thread.sleep(5); // distinct stamps
+        }
+        assertEquals(3, cache.size());
+        assertNull(cache.lookup(key(0)));
+        assertNull(cache.lookup(key(1)));
+        assertHas(cache, 2, 3, 4);
+
+        HashCache reopened = new HashCache(file, false, 3);
+        assertEquals(3, reopened.size());
+        assertHas(reopened, 2, 3, 4);
+    }
+
+    @Test
+    void strictModeAlwaysMissesAndReportsMismatches() throws IOException {
+        Path file = dir.resolve("cache");
+        new HashCache(file, false, 100).store(key(1), digest(1));
+
+        HashCache strict = new HashCache(file, true, 100);
+        assertNull(strict.lookup(key(1)));
+        assertTrue(strict.store(key(1), digest(1)));
+        assertFalse(strict.store(key(1), digest(2)));
+        assertEquals(1, strict.mismatches());
+    }
+
+    @Test
+    void keysSnapshotRealFiles() throws IOException {
+        Path data = Files.write(dir.resolve("data"), new byte[10]);
+        HashCache cache = new HashCache(dir.resolve("cache"), false, 100);
+        HashCache.Key before = cache.key(data, "KMACXOF256");
+        assertEquals(10, before.size());
+        cache.store(before, digest(1));
+        assertArrayEquals(digest(1), cache.lookup(cache.key(data, "KMACXOF256")));
+
+        Files.write(data, new byte[1], StandardOpenOption.APPEND);
+        assertNull(cache.lookup(cache.key(data, "KMACXOF256")));
+    }
+}
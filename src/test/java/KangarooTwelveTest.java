@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * KangarooTwelve (KT128) against the test vectors of RFC 9861, Section 5, covering the
+ * single-node case, the tree case and the customization string.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class KangarooTwelveTest {
+
+    private static byte[] ptn(int n) {
+        return TestBytes.ptn(n);
+    }
+
+    private static byte[] hex(String s) {
+        return TestBytes.hex(s);
+    }
+
+    private static byte[] ff(int n) {
+        byte[] b = new byte[n];
+        Arrays.fill(b, (byte) 0xFF);
+        return b;
+    }
+
+    @Test
+    void emptyMessage() {
+        assertArrayEquals(hex("1AC2D450FC3B4205 D19DA7BFCA1B3751 3C0803577AC7167F 06FE2CE1F0EF39E5"),
+                KangarooTwelve.hash(new byte[0], new byte[0], 32));
+        assertArrayEquals(hex("1AC2D450FC3B4205 D19DA7BFCA1B3751 3C0803577AC7167F 06FE2CE1F0EF39E5"
+                        + "4269C056B8C82E48 276038B6D292966C C07A3D4645272E31 FF38508139EB0A71"),
+                KangarooTwelve.hash(new byte[0], new byte[0], 64));
+        assertArrayEquals(hex("E8DC563642F7228C 84684C898405D3A8 34799158C079B128 80277A1D28E2FF6D"),
+                TestBytes.last(KangarooTwelve.hash(new byte[0], new byte[0], 10032), 32));
+    }
+
+    @Test
+    void singleNode() {
+        assertArrayEquals(hex("2BDA92450E8B147F 8A7CB629E784A058 EFCA7CF7D8218E02 D345DFAA65244A1F"),
+                KangarooTwelve.hash(ptn(1), new byte[0], 32));
+        assertArrayEquals(hex("6BF75FA2239198DB 4772E36478F8E19B 0F371205F6A9A93A 273F51DF37122888"),
+                KangarooTwelve.hash(ptn(17), new byte[0], 32));
+        assertArrayEquals(hex("0C315EBCDEDBF614 26DE7DCF8FB725D1 E74675D7F5327A50 67F367B108ECB67C"),
+                KangarooTwelve.hash(ptn(17 * 17), new byte[0], 32));
+        assertArrayEquals(hex("1B577636F723643E 990CC7D6A6598374 36FD6A103626600E B8301CD1DBE553D6"),
+                KangarooTwelve.hash(ptn(8191), new byte[0], 32));
+    }
+
+    @Test
+    void tree() {
+        assertArrayEquals(hex("48F256F6772F9EDF B6A8B661EC92DC93 B95EBD05A08A17B3 9AE3490870C926C3"),
+                KangarooTwelve.hash(ptn(8192), new byte[0], 32));
+        assertArrayEquals(hex("8701045E22205345 FF4DDA05555CBB5C 3AF1A771C2B89BAE F37DB43D9998B9FE"),
+                KangarooTwelve.hash(ptn(17 * 17 * 17 * 17), new byte[0], 32));
+    }
+
+    @Test
+    void customization() {
+        assertArrayEquals(hex("FAB658DB63E94A24 6188BF7AF69A1330 45F46EE984C56E3C 3328CAAF1AA1A583"),
+                KangarooTwelve.hash(new byte[0], ptn(1), 32));
+        assertArrayEquals(hex("D848C5068CED736F 4462159B9867FD4C 20B808ACC3D5BC48 E0B06BA0A3762EC4"),
+                KangarooTwelve.hash(ff(1), ptn(41), 32));
+        assertArrayEquals(hex("C389E5009AE57120 854C2E8C64670AC0 1358CF4C1BAF8944 7A724234DC7CED74"),
+                KangarooTwelve.hash(ff(3), ptn(41 * 41), 32));
+        assertArrayEquals(hex("3ED12F70FB05DDB5 8689510AB3E4D23C 6C6033849AA01E1D 8C220A297FEDCD0B"),
+                KangarooTwelve.hash(ptn(8192), ptn(8189), 32));
+        assertArrayEquals(hex("6A7C1B6A5CD0D8C9 CA943A4A216CC646 04559A2EA45F7857 0A15253D67BA00AE"),
+                KangarooTwelve.hash(ptn(8192), ptn(8190), 32));
+    }
+
+    @Test
+    void streamingMatchesOneShot() {
+        byte[] m = ptn(3 * KangarooTwelve.CHUNK * 70 + 123);
+        KangarooTwelve k12 = new KangarooTwelve();
+        for (int off = 0; off < m.length; ) {
+            int n = Math.min(m.length - off, 1 + off % 20011);
+            k12.update(m, off, n);
+            off += n;
+        }
+        assertArrayEquals(KangarooTwelve.hash(m, ptn(5), 32), k12.digest(ptn(5), 32));
+    }
+}
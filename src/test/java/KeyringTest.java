@@ -0,0 +1,175 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Keyring lookups across reopening, index growth, and recovery from the states a crash
+ * can leave behind: a torn record at the end of the data file, and an index that is
+ * missing, damaged or behind the data file.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class KeyringTest {
+
+    /** Length of a data record: id || compressed point */
+    private static final int RECORD_LEN = Keyring.ID_LEN + E521.COMPRESSED_LEN;
+
+    @TempDir
+    Path dir;
+
+    /** The points 2G, 3G, .., (n + 1)G, by repeated addition */
+    private static E521[] points(int n) {
+        E521[] points = new E521[n];
+        E521 P = ECKey.G;
+        for (int i = 0; i < n; i++) {
+            P = P.add(ECKey.G);
+            points[i] = P;
+        }
+        return points;
+    }
+
+    private static void assertHasAll(Keyring ring, E521[] points) throws IOException {
+        assertEquals(points.length, ring.size());
+        for (E521 V : points) {
+            E521 found = ring.get(Keyring.keyId(V));
+            assertTrue(found != null && found.equals(V));
+        }
+    }
+
+    private Path index(Path data) {
+        return data.resolveSibling(data.getFileName() + ".idx");
+    }
+
+    @Test
+    void addAndReopen() throws IOException {
+        Path path = dir.resolve("ring");
+        E521[] points = points(20);
+        try (Keyring ring = Keyring.open(path)) {
+            for (E521 V : points) assertArrayEquals(Keyring.keyId(V), ring.add(V));
+            ring.add(points[3]);
+            assertHasAll(ring, points);
+            assertNull(ring.get(new byte[Keyring.ID_LEN]));
+        }
+        try (Keyring ring = Keyring.open(path)) {
+            assertHasAll(ring, points);
+            ring.preload();
+            assertHasAll(ring, points);
+        }
+        assertEquals(8 + 20L * RECORD_LEN, Files.size(path));
+    }
+
+    @Test
+    void indexGrowsPastHalfFull() throws IOException {
+        Path path = dir.resolve("ring");
+        E521[] points = points(1500);
+        try (Keyring ring = Keyring.open(path)) {
+            for (E521 V : points) ring.add(V);
+            assertHasAll(ring, points);
+        }
+        try (Keyring ring = Keyring.open(path)) {
+            assertHasAll(ring, points);
+        }
+    }
+
+    @Test
+    void tornRecordIsIgnoredAndOverwritten() throws IOException {
+        Path path = dir.resolve("ring");
+        E521[] points = points(6);
+        try (Keyring ring = Keyring.open(path)) {
+            for (int i = 0; i < 5; i++) ring.add(points[i]);
+        }
+
+        // a crash part-way through appending a record
+        byte[] torn = new byte[RECORD_LEN / 2];
+        Arrays.fill(torn, (byte) 0x5A);
+        Files.write(path, torn, StandardOpenOption.APPEND);
+
+        E521[] first = Arrays.copyOf(points, 5);
+        try (Keyring ring = Keyring.open(path)) {
+            assertHasAll(ring, first);
+            ring.add(points[5]);
+            assertHasAll(ring, points);
+        }
+        assertEquals(8 + 6L * RECORD_LEN, Files.size(path));
+        try (Keyring ring = Keyring.open(path)) {
+            assertHasAll(ring, points);
+        }
+    }
+
+    @Test
+    void missingOrDamagedIndexIsRebuilt() throws IOException {
+        Path path = dir.resolve("ring");
+        E521[] points = points(10);
+        try (Keyring ring = Keyring.open(path)) {
+            for (E521 V : points) ring.add(V);
+        }
+
+        Files.delete(index(path));
+        try (Keyring ring = Keyring.open(path)) {
+            assertHasAll(ring, points);
+        }
+
+        Files.write(index(path), new byte[100]);
+        try (Keyring ring = Keyring.open(path)) {
+            assertHasAll(ring, points);
+        }
+    }
+
+    @Test
+    void indexBehindTheDataFileIsCompleted() throws IOException {
+        Path path = dir.resolve("ring");
+        Path saved = dir.resolve("saved.idx");
+        E521[] points = points(10);
+        try (Keyring ring = Keyring.open(path)) {
+            for (int i = 0; i < 4; i++) ring.add(points[i]);
+        }
+        Files.copy(index(path), saved);
+        try (Keyring ring = Keyring.open(path)) {
+            for (int i = 4; i < 10; i++) ring.add(points[i]);
+        }
+
+        // the data appends reached the disk, the index updates did not
+        Files.copy(saved, index(path), StandardCopyOption.REPLACE_EXISTING);
+        try (Keyring ring = Keyring.open(path)) {
+            assertHasAll(ring, points);
+        }
+    }
+
+    @Test
+    void indexRebuildAndPreloadSpanSeveralChunks() throws IOException {
+        Path path = dir.resolve("ring");
+        E521[] points = points(9000);
+        try (Keyring ring = Keyring.open(path)) {
+            for (E521 V : points) ring.add(V);
+        }
+
+        Files.delete(index(path));
+        try (Keyring ring = Keyring.open(path)) {
+            assertHasAll(ring, points);
+        }
+        try (Keyring ring = Keyring.open(path)) {
+            ring.preload();
+            assertHasAll(ring, points);
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path path = Files.write(dir.resolve("not-a-ring"), "hello, world".getBytes());
+        assertThrows(IllegalArgumentException.class, () -> Keyring.open(path));
+    }
+}
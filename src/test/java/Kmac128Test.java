@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SHAKE128, cSHAKE128, KMAC128 and KMACXOF128 against the NIST SP 800-185 samples, and
+ * the Sponge forms (binary keys, 167-byte inputs that share the padding byte) against the
+ * one-shot functions.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class Kmac128Test {
+
+    /** 00 01 02 03 */
+    private static final byte[] X4 = {0, 1, 2, 3};
+
+    /** 00 01 .. C7 */
+    private static final byte[] X200 = TestBytes.ptn(200);
+
+    /** The sample key 40 41 .. 5F */
+    private static final byte[] KEY = new byte[32];
+
+    static {
+        for (int i = 0; i < KEY.length; i++) KEY[i] = (byte) (0x40 + i);
+    }
+
+    /** The sample key as a String; every byte is printable ASCII */
+    private static final String KEY_STRING = new String(KEY);
+
+    private static byte[] hex(String s) {
+        return TestBytes.hex(s);
+    }
+
+    @Test
+    void shake128() {
+        assertArrayEquals(hex("7F9C2BA4E88F827D 616045507605853E D73B8093F6EFBC88 EB1A6EACFA66EF26"),
+                Symmetric.SHAKE128(new byte[0], 256));
+    }
+
+    @Test
+    void cshake128Samples() {
+        assertArrayEquals(hex("C1C36925B6409A04 F1B504FCBCA9D82B 4017277CB5ED2B20 65FC1D3814D5AAF5"),
+                Symmetric.cSHAKE128(X4, 256, "", "Email Signature"));
+        assertArrayEquals(hex("C5221D50E4F822D9 6A2E8881A961420F 294B7B24FE3D2094 BAED2C6524CC166B"),
+                Symmetric.cSHAKE128(X200, 256, "", "Email Signature"));
+    }
+
+    @Test
+    void kmac128Samples() {
+        assertArrayEquals(hex("E5780B0D3EA6F7D3 A429C5706AA43A00 FADBD7D49628839E 3187243F456EE14E"),
+                Symmetric.KMAC128(KEY_STRING, X4, 256, ""));
+        assertArrayEquals(hex("3B1FBA963CD8B0B5 9E8C1A6D71888B71 43651AF8BA0A7070 C0979E2811324AA5"),
+                Symmetric.KMAC128(KEY_STRING, X4, 256, "My Tagged Application"));
+        assertArrayEquals(hex("1F5B4E6CCA02209E 0DCB5CA635B89A15 E271ECC760071DFD 805FAA38F9729230"),
+                Symmetric.KMAC128(KEY_STRING, X200, 256, "My Tagged Application"));
+    }
+
+    @Test
+    void kmacxof128Samples() {
+        assertArrayEquals(hex("CD83740BBD92CCC8 CF032B1481A0F446 0E7CA9DD12B08A0C 4031178BACD6EC35"),
+                Symmetric.KMACXOF128(KEY_STRING, X4, 256, ""));
+        assertArrayEquals(hex("31A44527B4ED9F5C 6101D11DE6D26F06 20AA5C341DEF4129 9657FE9DF1A3B16C"),
+                Symmetric.KMACXOF128(KEY_STRING, X4, 256, "My Tagged Application"));
+        assertArrayEquals(hex("47026C7CD793084A A0283C253EF65849 0C0DB61438B8326F E9BDDF281B83AE0F"),
+                Symmetric.KMACXOF128(KEY_STRING, X200, 256, "My Tagged Application"));
+    }
+
+    @Test
+    void spongeWithBinaryKeyMatchesSamples() {
+        assertArrayEquals(hex("1F5B4E6CCA02209E 0DCB5CA635B89A15 E271ECC760071DFD 805FAA38F9729230"),
+                Sponge.kmac128(KEY, "My Tagged Application").absorb(X200).finishKMAC(256).squeeze(32));
+        assertArrayEquals(hex("47026C7CD793084A A0283C253EF65849 0C0DB61438B8326F E9BDDF281B83AE0F"),
+                Sponge.kmac128(KEY, "My Tagged Application").absorb(X200).finishKMAC(0).squeeze(32));
+    }
+
+    @Test
+    void spongeMatchesOneShotAtThePaddingBoundary() {
+        for (int len : new int[] {0, 1, 166, 167, 168, 169, 335, 336}) {
+            byte[] m = TestBytes.ptn(len);
+            assertArrayEquals(Symmetric.SHAKE128(m, 512),
+                    new Sponge(168, 24).absorb(m).pad((byte) 0x1F).squeeze(64), "SHAKE128, " + len + " bytes");
+            assertArrayEquals(Symmetric.KMACXOF128(KEY_STRING, m, 512, "S"),
+                    Sponge.kmac128(KEY, "S").absorb(m).finishKMAC(0).squeeze(64), "KMACXOF128, " + len + " bytes");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * MerkleHash with a sidecar against a full pass without one, after appends, truncations
+ * and in-place edits: every change of leaf count from 1 to 20 leaves to 1 to 20 leaves
+ * (odd and even levels, lone last nodes appearing and disappearing, shrinking and growing
+ * across powers of two), and counts of the leaves actually re-hashed.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class MerkleHashTest {
+
+    private static final int LEAF = 16;
+
+    @TempDir
+    Path dir;
+
+    private long mtime = 1_000_000_000_000L;
+
+    /** Write the file and give it a new modification time, as a real edit would */
+    private void write(Path file, byte[] content) throws IOException {
+        Files.write(file, content);
+        mtime += 2000;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtime));
+    }
+
+    /** The sidecar root of file, checked against a full pass, and the number of leaves re-hashed */
+    private long assertMatchesFullPass(Path file, Path index, String message) throws IOException {
+        long before = CryptoMetrics.MERKLE_LEAF.count();
+        byte[] incremental = MerkleHash.hash(file, index, LEAF);
+        long hashed = CryptoMetrics.MERKLE_LEAF.count() - before;
+        assertArrayEquals(MerkleHash.hash(file, LEAF), incremental, message);
+        return hashed;
+    }
+
+    @Test
+    void everyLeafCountChange() throws IOException {
+        Path file = dir.resolve("data");
+        Path index = MerkleHash.sidecar(file);
+        byte[] content = TestBytes.ptn(20 * LEAF);
+        for (int from = 1; from <= 20; from++) {
+            for (int to = 1; to <= 20; to++) {
+                Files.deleteIfExists(index);
+                write(file, Arrays.copyOf(content, from * LEAF - 3));
+                assertMatchesFullPass(file, index, from + " leaves");
+                write(file, Arrays.copyOf(content, to * LEAF - 3));
+                assertMatchesFullPass(file, index, from + " -> " + to + " leaves");
+            }
+        }
+    }
+
+    @Test
+    void appendOnlyHashesNewAndChangedLeaves() throws IOException {
+        Path file = dir.resolve("data");
+        Path index = MerkleHash.sidecar(file);
+        byte[] content = TestBytes.ptn(40 * LEAF);
+
+        write(file, Arrays.copyOf(content, 8 * LEAF));
+        assertEquals(8, assertMatchesFullPass(file, index, "8 leaves"));
+        write(file, Arrays.copyOf(content, 9 * LEAF));
+        assertEquals(1, assertMatchesFullPass(file, index, "9 leaves"));
+        // the partial last leaf grows, and 16 full leaves follow
+        write(file, Arrays.copyOf(content, 9 * LEAF + 5));
+        assertEquals(1, assertMatchesFullPass(file, index, "10 leaves, the last partial"));
+        write(file, Arrays.copyOf(content, 26 * LEAF));
+        assertEquals(17, assertMatchesFullPass(file, index, "26 leaves"));
+    }
+
+    @Test
+    void truncationAndInPlaceEdits() throws IOException {
+        Path file = dir.resolve("data");
+        Path index = MerkleHash.sidecar(file);
+        byte[] content = TestBytes.ptn(17 * LEAF);
+
+        write(file, content);
+        assertEquals(17, assertMatchesFullPass(file, index, "17 leaves"));
+        write(file, Arrays.copyOf(content, 15 * LEAF));
+        assertEquals(0, assertMatchesFullPass(file, index, "truncated to 15 leaves"));
+        write(file, Arrays.copyOf(content, 8 * LEAF + 1));
+        assertEquals(1, assertMatchesFullPass(file, index, "truncated to 9 leaves, the last partial"));
+
+        byte[] edited = Arrays.copyOf(content, 8 * LEAF + 1);
+        edited[3 * LEAF + 7] ^= 1;
+        edited[0] ^= 1;
+        write(file, edited);
+        assertEquals(2, assertMatchesFullPass(file, index, "two leaves edited"));
+
+        // the same bytes again: the leaves are reused even though the file was rewritten
+        write(file, edited);
+        assertEquals(0, assertMatchesFullPass(file, index, "rewritten unchanged"));
+    }
+
+    @Test
+    void unchangedFileUsesTheStoredRoot() throws IOException {
+        Path file = dir.resolve("data");
+        Path index = MerkleHash.sidecar(file);
+        write(file, TestBytes.ptn(5 * LEAF));
+        byte[] root = MerkleHash.hash(file, index, LEAF);
+
+        long before = CryptoMetrics.MERKLE_LEAF.count();
+        assertArrayEquals(root, MerkleHash.hash(file, index, LEAF));
+        assertEquals(before, CryptoMetrics.MERKLE_LEAF.count());
+    }
+
+    @Test
+    void damagedOrForeignSidecarIsRebuilt() throws IOException {
+        Path file = dir.resolve("data");
+        Path index = MerkleHash.sidecar(file);
+        write(file, TestBytes.ptn(5 * LEAF));
+        byte[] root = MerkleHash.hash(file, LEAF);
+
+        Files.write(index, new byte[100]);
+        assertArrayEquals(root, MerkleHash.hash(file, index, LEAF));
+
+        // a sidecar for another leaf size is not reused
+        MerkleHash.hash(file, index, 2 * LEAF);
+        assertArrayEquals(root, MerkleHash.hash(file, index, LEAF));
+        assertFalse(Arrays.equals(root, MerkleHash.hash(file, 2 * LEAF)));
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path file = dir.resolve("data");
+        write(file, new byte[0]);
+        assertMatchesFullPass(file, MerkleHash.sidecar(file), "empty");
+        write(file, TestBytes.ptn(3));
+        assertMatchesFullPass(file, MerkleHash.sidecar(file), "3 bytes");
+    }
+}
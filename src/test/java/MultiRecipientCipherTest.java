@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trips and tamper rejection for the multi-recipient envelope: every recipient
+ * recovers the message, anyone else and any modified envelope is rejected.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class MultiRecipientCipherTest {
+
+    private static final String[] PWS = {"alice", "bob", "carol"};
+
+    /** Offset of the recipient count, after the mode byte and Z */
+    private static final int COUNT_OFF = 1 + E521.P.toByteArray().length * 2;
+
+    private static E521[] recipients() {
+        return Arrays.stream(PWS).map(pw -> new ECKey(pw.getBytes()).getPublicKey()).toArray(E521[]::new);
+    }
+
+    @Test
+    void everyRecipientDecrypts() {
+        E521[] recipients = recipients();
+        for (int len : new int[] {0, 1, 136, 1000}) {
+            byte[] m = TestBytes.ptn(len);
+            byte[] envelope = MultiRecipientCipher.encrypt(m, recipients);
+            assertEquals(MultiRecipientCipher.MODE_MULTI, envelope[0]);
+            assertEquals(PWS.length, MultiRecipientCipher.recipientCount(envelope));
+            for (String pw : PWS) {
+                assertArrayEquals(m, MultiRecipientCipher.decrypt(envelope, pw).orElseThrow(), pw + ", " + len + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void outsiderIsRejected() {
+        byte[] envelope = MultiRecipientCipher.encrypt(TestBytes.ptn(100), recipients());
+        assertFalse(MultiRecipientCipher.decrypt(envelope, "mallory").isPresent());
+    }
+
+    @Test
+    void rejectsTampering() {
+        byte[] m = TestBytes.ptn(100);
+        byte[] envelope = MultiRecipientCipher.encrypt(m, recipients());
+        int headerLen = envelope.length - m.length - 64;
+        int[] offsets = {
+                0,                           // mode
+                COUNT_OFF + 1,               // recipient count
+                COUNT_OFF + 2 + 80 + 3,      // bob's id: carol still finds hers, the tag covers the index
+                COUNT_OFF + 2 + 160 + 20,    // carol's wrapped key
+                headerLen,                   // first ciphertext byte
+                envelope.length - 65,        // last ciphertext byte
+                envelope.length - 1          // tag
+        };
+        for (int off : offsets) {
+            assertFalse(MultiRecipientCipher.decrypt(TestBytes.flip(envelope, off), "carol").isPresent(),
+                    "byte " + off + " flipped");
+        }
+        assertFalse(MultiRecipientCipher.decrypt(Arrays.copyOf(envelope, envelope.length - 1), "carol").isPresent());
+        assertFalse(MultiRecipientCipher.decrypt(new byte[0], "carol").isPresent());
+    }
+
+    @Test
+    void rejectsZOffTheCurve() {
+        byte[] envelope = MultiRecipientCipher.encrypt(TestBytes.ptn(100), recipients());
+        byte[] offCurve = new E521(BigInteger.ONE, BigInteger.TWO).getBytes();
+        System.arraycopy(offCurve, 0, envelope, 1, offCurve.length);
+        assertFalse(MultiRecipientCipher.decrypt(envelope, "alice").isPresent());
+    }
+
+    @Test
+    void requiresAtLeastOneRecipient() {
+        assertThrows(IllegalArgumentException.class, () -> MultiRecipientCipher.encrypt(new byte[1]));
+    }
+}
@@ -0,0 +1,159 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips through the stream, parallel and random-access paths of SegmentedCipher,
+ * and rejection of tampered, truncated and reordered segments.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class SegmentedCipherTest {
+
+    private static final String PW = "correct horse battery staple";
+
+    /** Small segments, so short messages span several of them */
+    private static final int SEGMENT = 100;
+
+    private static final int STRIDE = SEGMENT + SegmentedCipher.TAG_LEN;
+
+    private static final int[] LENGTHS = {0, 1, 99, 100, 101, 200, 1000, 1001};
+
+    @TempDir
+    Path dir;
+
+    private static byte[] encryptStream(byte[] m) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SegmentedCipher.encrypt(PW, new ByteArrayInputStream(m), out, SEGMENT);
+        return out.toByteArray();
+    }
+
+    @Test
+    void parallelRoundTrip() {
+        for (int len : LENGTHS) {
+            byte[] m = TestBytes.ptn(len);
+            byte[] cryptogram = SegmentedCipher.encryptParallel(PW, m, SEGMENT);
+            int segments = Math.max(1, (len + SEGMENT - 1) / SEGMENT);
+            assertEquals(SegmentedCipher.HEADER_LEN + len + segments * SegmentedCipher.TAG_LEN, cryptogram.length);
+            assertArrayEquals(m, SegmentedCipher.decryptParallel(PW, cryptogram).orElseThrow(), len + " bytes");
+        }
+    }
+
+    @Test
+    void streamAndParallelShareTheFormat() throws IOException {
+        for (int len : LENGTHS) {
+            byte[] m = TestBytes.ptn(len);
+            assertArrayEquals(m, SegmentedCipher.decryptParallel(PW, encryptStream(m)).orElseThrow(), len + " bytes");
+        }
+    }
+
+    @Test
+    void fileRoundTrip() throws IOException {
+        byte[] m = TestBytes.ptn(1001);
+        Path plain = Files.write(dir.resolve("m"), m);
+        Path cryptogram = dir.resolve("m.seg");
+        Path decrypted = dir.resolve("m.out");
+        SegmentedCipher.encryptParallel(PW, plain, cryptogram, SEGMENT);
+        assertTrue(SegmentedCipher.decryptParallel(PW, cryptogram, decrypted));
+        assertArrayEquals(m, Files.readAllBytes(decrypted));
+
+        assertFalse(SegmentedCipher.decryptParallel(PW + "!", cryptogram, decrypted));
+        assertFalse(Files.exists(decrypted));
+    }
+
+    @Test
+    void randomAccessReads() throws IOException {
+        byte[] m = TestBytes.ptn(1001);
+        Path file = Files.write(dir.resolve("m.seg"), encryptStream(m));
+        try (SegmentedDecryptChannel ch = SegmentedCipher.open(Files.newByteChannel(file), PW)) {
+            assertEquals(m.length, ch.size());
+            for (int pos : new int[] {950, 0, 99, 100, 450, 1000}) {
+                ByteBuffer buf = ByteBuffer.allocate(120);
+                ch.position(pos);
+                int n = ch.read(buf);
+                assertEquals(Math.min(120, m.length - pos), n);
+                assertArrayEquals(Arrays.copyOfRange(m, pos, pos + n), Arrays.copyOf(buf.array(), n), "at " + pos);
+            }
+            ch.position(m.length);
+            assertEquals(-1, ch.read(ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    void rejectsTampering() {
+        byte[] cryptogram = SegmentedCipher.encryptParallel(PW, TestBytes.ptn(250), SEGMENT);
+
+        // z and every segment byte; the magic, version and size are rejected as malformed
+        int zOff = SegmentedCipher.HEADER_LEN - 64;
+        for (int i = zOff; i < cryptogram.length; i++) {
+            assertFalse(SegmentedCipher.decryptParallel(PW, TestBytes.flip(cryptogram, i)).isPresent(),
+                    "byte " + i + " flipped");
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> SegmentedCipher.decryptParallel(PW, TestBytes.flip(cryptogram, 0)));
+        assertFalse(SegmentedCipher.decryptParallel(PW + "!", cryptogram).isPresent());
+    }
+
+    @Test
+    void rejectsTruncationAndReordering() {
+        byte[] cryptogram = SegmentedCipher.encryptParallel(PW, TestBytes.ptn(250), SEGMENT);
+        int h = SegmentedCipher.HEADER_LEN;
+
+        // dropping the final segment leaves a last segment whose final flag is 0
+        byte[] truncated = Arrays.copyOf(cryptogram, h + 2 * STRIDE);
+        assertFalse(SegmentedCipher.decryptParallel(PW, truncated).isPresent());
+
+        // cutting into the final segment
+        assertFalse(SegmentedCipher.decryptParallel(PW, Arrays.copyOf(cryptogram, cryptogram.length - 1)).isPresent());
+
+        // swapping the first two segments
+        byte[] swapped = cryptogram.clone();
+        System.arraycopy(cryptogram, h, swapped, h + STRIDE, STRIDE);
+        System.arraycopy(cryptogram, h + STRIDE, swapped, h, STRIDE);
+        assertFalse(SegmentedCipher.decryptParallel(PW, swapped).isPresent());
+
+        // a segment of another cryptogram under the same passphrase
+        byte[] other = SegmentedCipher.encryptParallel(PW, TestBytes.ptn(250), SEGMENT);
+        byte[] spliced = cryptogram.clone();
+        System.arraycopy(other, h + STRIDE, spliced, h + STRIDE, STRIDE);
+        assertFalse(SegmentedCipher.decryptParallel(PW, spliced).isPresent());
+    }
+
+    @Test
+    void channelFailsOnlyTheTamperedSegment() throws IOException {
+        byte[] m = TestBytes.ptn(250);
+        byte[] cryptogram = encryptStream(m);
+        Path file = Files.write(dir.resolve("m.seg"), TestBytes.flip(cryptogram, SegmentedCipher.HEADER_LEN + STRIDE + 5));
+        try (SeekableByteChannel ch = SegmentedCipher.open(Files.newByteChannel(file), PW)) {
+            ByteBuffer first = ByteBuffer.allocate(SEGMENT);
+            ch.read(first);
+            assertArrayEquals(Arrays.copyOf(m, SEGMENT), first.array());
+
+            IOException e = assertThrows(IOException.class, () -> ch.read(ByteBuffer.allocate(10)));
+            assertInstanceOf(AEADBadTagException.class, e.getCause());
+
+            ByteBuffer last = ByteBuffer.allocate(50);
+            ch.position(200);
+            ch.read(last);
+            assertArrayEquals(Arrays.copyOfRange(m, 200, 250), last.array());
+        }
+    }
+}
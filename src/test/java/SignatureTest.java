@@ -0,0 +1,58 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The ByteBuffer signature entry points against the byte[] ones, and prehash signature
+ * round trips and rejection of another key, another message and a modified signature.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class SignatureTest {
+
+    private static final String PW = "alice";
+    private static final E521 V = new ECKey(PW.getBytes()).getPublicKey();
+
+    @Test
+    void byteBufferMatchesByteArray() {
+        for (int len : new int[] {0, 1, 136, 1000}) {
+            byte[] m = TestBytes.ptn(len);
+            BigInteger[] hz = Signature.generateSignature(m, PW);
+            ByteBuffer direct = ByteBuffer.allocateDirect(len).put(m).flip();
+            assertArrayEquals(hz, Signature.generateSignature(direct, PW), len + " bytes");
+            assertTrue(Signature.verifySignature(hz, ByteBuffer.wrap(m), V), len + " bytes");
+        }
+    }
+
+    @Test
+    void prehashRoundTrip() throws IOException {
+        byte[] m = TestBytes.ptn(200_000);
+        BigInteger[] hz = Signature.generatePrehashSignature(new ByteArrayInputStream(m), PW);
+        assertTrue(Signature.verifyPrehashSignature(hz, new ByteArrayInputStream(m), V));
+
+        E521 other = new ECKey("bob".getBytes()).getPublicKey();
+        assertFalse(Signature.verifyPrehashSignature(hz, new ByteArrayInputStream(m), other), "another key");
+        byte[] m2 = m.clone();
+        m2[m2.length - 1] ^= 1;
+        assertFalse(Signature.verifyPrehashSignature(hz, new ByteArrayInputStream(m2), V), "another message");
+        BigInteger[] modified = {hz[0], hz[1].add(BigInteger.ONE)};
+        assertFalse(Signature.verifyPrehashSignature(modified, new ByteArrayInputStream(m), V), "modified z");
+    }
+
+    @Test
+    void prehashSignatureIsNotASignatureOverTheDigest() throws IOException {
+        byte[] m = TestBytes.ptn(1000);
+        BigInteger[] hz = Signature.generatePrehashSignature(new ByteArrayInputStream(m), PW);
+        byte[] d = Signature.prehash(new ByteArrayInputStream(m));
+        assertFalse(Signature.verifySignature(hz, d, V));
+    }
+}
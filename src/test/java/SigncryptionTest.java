@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Signcryption round trips, and rejection of a wrong sender key, a wrong recipient and
+ * modified cryptograms.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class SigncryptionTest {
+
+    private static final String ALICE = "alice";
+    private static final String BOB = "bob";
+    private static final String CAROL = "carol";
+
+    private static final E521 V_ALICE = new ECKey(ALICE.getBytes()).getPublicKey();
+    private static final E521 V_BOB = new ECKey(BOB.getBytes()).getPublicKey();
+    private static final E521 V_CAROL = new ECKey(CAROL.getBytes()).getPublicKey();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() {
+        for (int len : new int[] {0, 1, 136, 1000}) {
+            byte[] m = TestBytes.ptn(len);
+            byte[] cryptogram = CryptEC.signcrypt(m, ALICE, V_BOB);
+            assertEquals(CryptEC.MODE_SIGNCRYPT, cryptogram[0]);
+            assertArrayEquals(m, CryptEC.unsigncrypt(cryptogram, BOB, V_ALICE).orElseThrow(), len + " bytes");
+        }
+    }
+
+    @Test
+    void fileRoundTrip() throws IOException {
+        byte[] m = TestBytes.ptn(200_000);
+        Path file = Files.write(dir.resolve("m.sc"), CryptEC.signcrypt(m, ALICE, V_BOB));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(CryptEC.unsigncrypt(file, out, BOB, V_ALICE));
+        assertArrayEquals(m, out.toByteArray());
+
+        assertFalse(CryptEC.unsigncrypt(file, new ByteArrayOutputStream(), BOB, V_CAROL));
+    }
+
+    @Test
+    void rejectsWrongSenderOrRecipient() {
+        byte[] cryptogram = CryptEC.signcrypt(TestBytes.ptn(100), ALICE, V_BOB);
+        assertFalse(CryptEC.unsigncrypt(cryptogram, BOB, V_CAROL).isPresent(), "attributed to another sender");
+        assertFalse(CryptEC.unsigncrypt(cryptogram, CAROL, V_ALICE).isPresent(), "opened by another recipient");
+        assertFalse(CryptEC.unsigncrypt(cryptogram, ALICE, V_ALICE).isPresent(), "opened by the sender");
+    }
+
+    @Test
+    void rejectsTampering() {
+        byte[] m = TestBytes.ptn(100);
+        byte[] cryptogram = CryptEC.signcrypt(m, ALICE, V_BOB);
+        int[] offsets = {0, 1, m.length, 1 + m.length, 1 + m.length + 63, cryptogram.length - 1};
+        for (int off : offsets) {
+            assertFalse(CryptEC.unsigncrypt(TestBytes.flip(cryptogram, off), BOB, V_ALICE).isPresent(),
+                    "byte " + off + " flipped");
+        }
+        assertFalse(CryptEC.unsigncrypt(Arrays.copyOf(cryptogram, cryptogram.length - 1), BOB, V_ALICE).isPresent());
+        assertFalse(CryptEC.unsigncrypt(new byte[0], BOB, V_ALICE).isPresent());
+    }
+}
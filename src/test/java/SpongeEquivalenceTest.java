@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The long-lane Sponge against the BigInteger-state Symmetric.sponge it replaces on the hot
+ * paths: every message length over two rate blocks (including those whose padded input
+ * fills the rate exactly, which Symmetric.sponge leaves unpadded), outputs longer than the
+ * rate, and input and output split into pieces. Sponge.pad always pads, so plain cSHAKE256
+ * only matches where the rate is not filled exactly; finishKMACXOF reproduces the quirk.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class SpongeEquivalenceTest {
+
+    private static final String PW = "correct horse battery staple";
+
+    /** Two rate blocks of KMACXOF256 and then some */
+    private static final int MAX_LEN = 2 * 136 + 8;
+
+    @Test
+    void kmacxof256() {
+        for (int len = 0; len <= MAX_LEN; len++) {
+            byte[] m = TestBytes.ptn(len);
+            assertArrayEquals(Symmetric.KMACXOF256(PW, m, 512, "T"),
+                    Sponge.kmacxof256(PW, "T").absorb(m).finishKMACXOF().squeeze(64), len + " bytes");
+            assertArrayEquals(Symmetric.KMACXOF256("", m, 512, "D"),
+                    Sponge.kmacxof256("", "D").absorb(m).finishKMACXOF().squeeze(64), len + " bytes");
+        }
+    }
+
+    @Test
+    void cshake256AndShake256() {
+        for (int len = 0; len <= MAX_LEN; len++) {
+            byte[] m = TestBytes.ptn(len);
+            byte[] legacy = Symmetric.cSHAKE256(m, 512, "N", "S");
+            byte[] padded = Sponge.cshake256("N", "S").absorb(m).pad((byte) 0x04).squeeze(64);
+            if ((len + 1) % 136 != 0) assertArrayEquals(legacy, padded, len + " bytes");
+            // m || 04 fills the rate: Symmetric.sponge skips the 10*1 padding, pad does not
+            else assertFalse(Arrays.equals(legacy, padded), len + " bytes");
+            assertArrayEquals(Symmetric.SHAKE256(m, 512),
+                    new Sponge(136, 24).absorb(m).pad((byte) 0x1F).squeeze(64), len + " bytes");
+        }
+    }
+
+    @Test
+    void longOutput() {
+        for (int len : new int[] {0, 133, 134, 135, 136, 1000}) {
+            byte[] m = TestBytes.ptn(len);
+            assertArrayEquals(Symmetric.KMACXOF256(PW, m, 8 * 1000, "SKE"),
+                    Sponge.kmacxof256(PW, "SKE").absorb(m).finishKMACXOF().squeeze(1000), len + " bytes");
+        }
+    }
+
+    @Test
+    void piecewiseAbsorbAndSqueeze() {
+        byte[] m = TestBytes.ptn(1000);
+        byte[] expected = Symmetric.KMACXOF256(PW, m, 8 * 500, "T");
+        for (int piece : new int[] {1, 7, 135, 136, 137, 999}) {
+            Sponge sponge = Sponge.kmacxof256(PW, "T");
+            for (int off = 0; off < m.length; off += piece) sponge.absorb(m, off, Math.min(piece, m.length - off));
+            sponge.finishKMACXOF();
+            byte[] out = new byte[500];
+            for (int off = 0; off < out.length; off += piece) sponge.squeeze(out, off, Math.min(piece, out.length - off));
+            assertArrayEquals(expected, out, "pieces of " + piece);
+        }
+    }
+
+    @Test
+    void byteBufferAbsorb() {
+        byte[] m = TestBytes.ptn(1000);
+        byte[] expected = Symmetric.KMACXOF256(PW, m, 512, "T");
+        ByteBuffer direct = ByteBuffer.allocateDirect(m.length).put(m).flip();
+        assertArrayEquals(expected, Sponge.kmacxof256(PW, "T").absorb(direct).finishKMACXOF().squeeze(64));
+
+        // a heap buffer whose position and limit leave bytes on both sides
+        byte[] framed = new byte[m.length + 10];
+        System.arraycopy(m, 0, framed, 3, m.length);
+        ByteBuffer heap = ByteBuffer.wrap(framed, 3, m.length);
+        assertArrayEquals(expected, Sponge.kmacxof256(PW, "T").absorb(heap).finishKMACXOF().squeeze(64));
+    }
+
+    @Test
+    void publicEntryPoints() {
+        for (int len : new int[] {0, 1, 133, 134, 135, 136, 137, 1000}) {
+            byte[] m = TestBytes.ptn(len);
+            byte[] h = Symmetric.KMACXOF256("", m, 512, "D");
+            byte[] t = Symmetric.KMACXOF256(PW, m, 512, "T");
+            assertArrayEquals(h, Symmetric.computeHash(m), len + " bytes");
+            assertArrayEquals(t, Symmetric.computeAuthTag(PW, m), len + " bytes");
+
+            byte[] out = new byte[70];
+            Symmetric.hashInto(Arrays.copyOf(m, len + 5), 0, len, out, 3);
+            assertArrayEquals(h, Arrays.copyOfRange(out, 3, 67), len + " bytes");
+            Symmetric.macInto(PW, m, 0, len, out, 6);
+            assertArrayEquals(t, Arrays.copyOfRange(out, 6, 70), len + " bytes");
+
+            ByteBuffer buf = ByteBuffer.allocate(64);
+            Symmetric.computeHash(ByteBuffer.wrap(m), buf);
+            assertArrayEquals(h, buf.array(), len + " bytes");
+            buf.clear();
+            Symmetric.computeAuthTag(PW, ByteBuffer.wrap(m), buf);
+            assertArrayEquals(t, buf.array(), len + " bytes");
+        }
+    }
+
+    @Test
+    void macIntoAcrossPassphraseChanges() {
+        byte[] m = TestBytes.ptn(200);
+        byte[] out = new byte[64];
+        for (String pw : new String[] {PW, "", PW, "another", "another"}) {
+            Symmetric.macInto(pw, m, 0, m.length, out, 0);
+            assertArrayEquals(Symmetric.KMACXOF256(pw, m, 512, "T"), out, pw);
+            Symmetric.hashInto(m, 0, m.length, out, 0);
+            assertArrayEquals(Symmetric.KMACXOF256("", m, 512, "D"), out, pw);
+        }
+        Symmetric.clearMacKey();
+        Symmetric.macInto("another", m, 0, m.length, out, 0);
+        assertArrayEquals(Symmetric.KMACXOF256("another", m, 512, "T"), out);
+    }
+}
@@ -0,0 +1,52 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Byte helpers shared by the tests: the RFC 9861 test pattern, hex vectors, and tampering
+ * with cryptograms.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+final class TestBytes {
+
+    private TestBytes() { }
+
+    /** ptn(n): the bytes 00 01 .. FA repeated and truncated to n bytes */
+    static byte[] ptn(int n) {
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) b[i] = (byte) (i % 251);
+        return b;
+    }
+
+    /** The bytes of a hex string, which may contain spaces */
+    static byte[] hex(String s) {
+        return Symmetric.hexStringToByte(s.replace(" ", ""));
+    }
+
+    /** The last n bytes of b */
+    static byte[] last(byte[] b, int n) {
+        return Arrays.copyOfRange(b, b.length - n, b.length);
+    }
+
+    /** A copy of b with the low bit of byte i flipped */
+    static byte[] flip(byte[] b, int i) {
+        byte[] copy = b.clone();
+        copy[i] ^= 1;
+        return copy;
+    }
+
+    /** Every byte of the cryptogram, or every 17th byte of a long one, flipped in turn is rejected */
+    static void assertTamperRejected(byte[] zct, Function<byte[], Optional<byte[]>> decrypt) {
+        int step = zct.length > 300 ? 17 : 1;
+        for (int i = 0; i < zct.length; i += step) {
+            assertFalse(decrypt.apply(flip(zct, i)).isPresent(), "byte " + i + " flipped");
+        }
+        assertFalse(decrypt.apply(Arrays.copyOf(zct, zct.length - 1)).isPresent(), "truncated");
+        assertFalse(decrypt.apply(Arrays.copyOf(zct, zct.length + 1)).isPresent(), "extended");
+    }
+}
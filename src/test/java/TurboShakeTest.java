@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * TurboSHAKE128 and TurboSHAKE256 against the test vectors of RFC 9861, Section 5.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class TurboShakeTest {
+
+    private static byte[] ptn(int n) {
+        return TestBytes.ptn(n);
+    }
+
+    private static byte[] hex(String s) {
+        return TestBytes.hex(s);
+    }
+
+    private static byte[] last(byte[] b, int n) {
+        return TestBytes.last(b, n);
+    }
+
+    @Test
+    void turboShake128EmptyMessage() {
+        assertArrayEquals(hex("1E415F1C5983AFF2 169217277D17BB53 8CD945A397DDEC54 1F1CE41AF2C1B74C"),
+                TurboShake.turboShake128(new byte[0], (byte) 0x1F, 32));
+        assertArrayEquals(hex("1E415F1C5983AFF2 169217277D17BB53 8CD945A397DDEC54 1F1CE41AF2C1B74C"
+                        + "3E8CCAE2A4DAE56C 84A04C2385C03C15 E8193BDF58737363 321691C05462C8DF"),
+                TurboShake.turboShake128(new byte[0], (byte) 0x1F, 64));
+        assertArrayEquals(hex("A3B9B0385900CE76 1F22AED548E754DA 10A5242D62E8C658 E3F3A923A7555607"),
+                last(TurboShake.turboShake128(new byte[0], (byte) 0x1F, 10032), 32));
+    }
+
+    @Test
+    void turboShake128Pattern() {
+        assertArrayEquals(hex("55CEDD6F60AF7BB2 9A4042AE832EF3F5 8DB7299F893EBB92 47247D856958DAA9"),
+                TurboShake.turboShake128(ptn(1), (byte) 0x1F, 32));
+        assertArrayEquals(hex("9C97D036A3BAC819 DB70EDE0CA554EC6 E4C2A1A4FFBFD9EC 269CA6A111161233"),
+                TurboShake.turboShake128(ptn(17), (byte) 0x1F, 32));
+        assertArrayEquals(hex("96C77C279E0126F7 FC07C9B07F5CDAE1 E0BE60BDBE106200 40E75D7223A624D2"),
+                TurboShake.turboShake128(ptn(17 * 17), (byte) 0x1F, 32));
+    }
+
+    @Test
+    void turboShake128DomainSeparation() {
+        assertArrayEquals(hex("BF323F940494E88E E1C540FE660BE8A0 C93F43D15EC00699 8462FA994EED5DAB"),
+                TurboShake.turboShake128(new byte[] {-1, -1, -1}, (byte) 0x01, 32));
+        assertArrayEquals(hex("8EC9C66465ED0D4A 6C35D13506718D68 7A25CB05C74CCA1E 42501ABD83874A67"),
+                TurboShake.turboShake128(new byte[] {-1}, (byte) 0x06, 32));
+    }
+
+    @Test
+    void turboShake256() {
+        assertArrayEquals(hex("367A329DAFEA871C 7802EC67F905AE13 C57695DC2C6663C6 1035F59A18F8E7DB"
+                        + "11EDC0E12E91EA60 EB6B32DF06DD7F00 2FBAFABB6E13EC1C C20D995547600DB0"),
+                TurboShake.turboShake256(new byte[0], (byte) 0x1F, 64));
+        assertArrayEquals(hex("ABEFA11630C66126 9249742685EC082F 207265DCCF2F4353 4E9C61BA0C9D1D75"),
+                last(TurboShake.turboShake256(new byte[0], (byte) 0x1F, 10032), 32));
+        assertArrayEquals(hex("3E1712F928F8EAF1 054632B2AA0A246E D8B0C378728F60BC 970410155C28820E"
+                        + "90CC90D8A3006AA2 372C5C5EA176B068 2BF22BAE7467AC94 F74D43D39B0482E2"),
+                TurboShake.turboShake256(ptn(1), (byte) 0x1F, 64));
+    }
+
+    @Test
+    void rejectsInvalidDomainByte() {
+        assertThrows(IllegalArgumentException.class, () -> TurboShake.turboShake128(new byte[0], (byte) 0x00, 32));
+        assertThrows(IllegalArgumentException.class, () -> TurboShake.turboShake128(new byte[0], (byte) 0x80, 32));
+    }
+}
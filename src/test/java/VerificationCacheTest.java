@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * VerificationCache expiry and eviction on synthetic keys, and its use through
+ * Signature.verifySignature: only successful verifications are cached, and a key covers
+ * the message, the signature and the public key.
+ *
+ * @author Daniel Jiang
+ * @author Lam Mai
+ * @author David Shcherbina
+ */
+class VerificationCacheTest {
+
+    private static final String PW = "alice";
+    private static final E521 V = new ECKey(PW.getBytes()).getPublicKey();
+
+    private static ByteBuffer key(int i) {
+        return ByteBuffer.wrap(new byte[32]).putInt(0, i);
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() throws InterruptedException {
+        VerificationCache cache = new VerificationCache(100, Duration.ofMillis(100));
+        cache.put(key(1));
+        assertTrue(cache.contains(key(1)));
+        Thread.sleep(200);
+        assertFalse(cache.contains(key(1)));
+        assertEquals(0, cache.size(), "an expired entry is removed when it is looked up");
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void evictionKeepsThreeQuartersOfTheLimit() {
+        VerificationCache cache = new VerificationCache(8, Duration.ofHours(1));
+        for (int i = 0; i < 8; i++) cache.put(key(i));
+        assertEquals(8, cache.size());
+        cache.put(key(8));
+        assertEquals(6, cache.size());
+        for (int i = 9; i < 100; i++) {
+            cache.put(key(i));
+            assertTrue(cache.size() <= 8, "size " + cache.size());
+        }
+    }
+
+    @Test
+    void expiredEntriesAreEvictedFirst() throws InterruptedException {
+        VerificationCache cache = new VerificationCache(8, Duration.ofMillis(100));
+        for (int i = 0; i < 4; i++) cache.put(key(i));
+        Thread.sleep(200);
+        for (int i = 4; i < 9; i++) cache.put(key(i));
+        assertEquals(5, cache.size());
+        for (int i = 4; i < 9; i++) assertTrue(cache.contains(key(i)), "fresh entry " + i);
+    }
+
+    @Test
+    void cachesOnlySuccessfulVerifications() {
+        VerificationCache cache = new VerificationCache(100, Duration.ofHours(1));
+        byte[] m = TestBytes.ptn(100);
+        BigInteger[] hz = Signature.generateSignature(m, PW);
+
+        assertTrue(Signature.verifySignature(hz, m, V, cache));
+        assertEquals(1, cache.size());
+        assertTrue(Signature.verifySignature(hz, m, V, cache));
+        assertEquals(1, cache.hits());
+
+        byte[] other = TestBytes.flip(m, 0);
+        assertFalse(Signature.verifySignature(hz, other, V, cache));
+        assertFalse(Signature.verifySignature(hz, other, V, cache));
+        assertEquals(1, cache.size(), "a failed verification is not cached");
+
+        E521 otherKey = new ECKey("bob".getBytes()).getPublicKey();
+        assertFalse(Signature.verifySignature(hz, m, otherKey, cache));
+        BigInteger[] otherZ = {hz[0], hz[1].add(BigInteger.ONE).mod(E521.R)};
+        assertFalse(Signature.verifySignature(otherZ, m, V, cache));
+        assertEquals(1, cache.hits());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void keysAreCanonical() {
+        byte[] m = TestBytes.ptn(10);
+        BigInteger[] hz = {BigInteger.ONE, BigInteger.TWO};
+        assertNotNull(VerificationCache.key(hz, m, V));
+        assertEquals(VerificationCache.key(hz, m, V), VerificationCache.key(hz.clone(), m.clone(), V));
+        // no SignatureValue encoding, so never cached
+        assertNull(VerificationCache.key(new BigInteger[] {BigInteger.ONE, BigInteger.ONE.negate()}, m, V));
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new VerificationCache(0, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new VerificationCache(1, Duration.ZERO));
+    }
+}